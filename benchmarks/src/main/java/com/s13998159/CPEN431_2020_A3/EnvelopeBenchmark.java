@@ -0,0 +1,86 @@
+package com.s13998159.CPEN431_2020_A3;
+
+import ca.NetSysLab.ProtocolBuffers.KeyValueRequest;
+import ca.NetSysLab.ProtocolBuffers.Message;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Protocol buffer work of every request: the Msg envelope in and out, and
+ * the KVRequest inside it, for a put of each value size.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EnvelopeBenchmark {
+    @Param({"8", "32", "2048", "10000"})
+    int valueSize;
+
+    private Message.Msg msg;
+    private byte[] msg_bytes;
+    private byte[] payload;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(431);
+        byte[] key = new byte[32];
+        byte[] value = new byte[valueSize];
+        byte[] msg_id = new byte[16];
+        random.nextBytes(key);
+        random.nextBytes(value);
+        random.nextBytes(msg_id);
+
+        payload = KeyValueRequest.KVRequest.newBuilder()
+                .setCommand(Commands.Put)
+                .setKey(ByteString.copyFrom(key))
+                .setValue(ByteString.copyFrom(value))
+                .setVersion(1)
+                .build().toByteArray();
+
+        CRC32 checksum = new CRC32();
+        checksum.update(msg_id);
+        checksum.update(payload);
+        msg = Message.Msg.newBuilder()
+                .setMessageID(ByteString.copyFrom(msg_id))
+                .setPayload(ByteString.copyFrom(payload))
+                .setCheckSum(checksum.getValue())
+                .build();
+        msg_bytes = msg.toByteArray();
+    }
+
+    @Benchmark
+    public Message.Msg parseMsg() throws InvalidProtocolBufferException {
+        return Message.Msg.parseFrom(msg_bytes);
+    }
+
+    @Benchmark
+    public byte[] serializeMsg() {
+        return msg.toByteArray();
+    }
+
+    /* The way the server parses, straight out of the receive buffer */
+    @Benchmark
+    public KeyValueRequest.KVRequest parseRequest()
+            throws InvalidProtocolBufferException {
+        return KeyValueRequest.KVRequest.PARSER.parseFrom(
+                payload, 0, payload.length);
+    }
+}
@@ -0,0 +1,107 @@
+package com.s13998159.CPEN431_2020_A3;
+
+import ca.NetSysLab.ProtocolBuffers.KeyValueRequest;
+import ca.NetSysLab.ProtocolBuffers.KeyValueResponse;
+import com.google.protobuf.ByteString;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executing Put, Get and Remove against a standalone server's storage, for
+ * every value size. Override the engine with e.g. -p storage=compact.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HandleCommandBenchmark {
+    /* Keys the requests go round, all stored */
+    private static final int KEYS = 1024;
+
+    @Param({"8", "32", "2048", "10000"})
+    int valueSize;
+
+    @Param({"striped"})
+    String storage;
+
+    private KVServer server;
+    private final RequestContext ctx = new RequestContext();
+
+    private final KeyValueRequest.KVRequest[] puts =
+            new KeyValueRequest.KVRequest[KEYS];
+    private final KeyValueRequest.KVRequest[] gets =
+            new KeyValueRequest.KVRequest[KEYS];
+    private final KeyValueRequest.KVRequest[] removes =
+            new KeyValueRequest.KVRequest[KEYS];
+    private int next = 0;
+
+    @Setup
+    public void setup() {
+        server = new KVServer(ServerConfig.parse(new String[] {
+            "--port=0", "--servers=/nonexistent", "--workers=4",
+            "--storage=" + storage, "--log=off"}));
+
+        Random random = new Random(431);
+        for (int i = 0; i < KEYS; i++) {
+            byte[] key = new byte[32];
+            byte[] value = new byte[valueSize];
+            random.nextBytes(key);
+            random.nextBytes(value);
+            puts[i] = KeyValueRequest.KVRequest.newBuilder()
+                    .setCommand(Commands.Put)
+                    .setKey(ByteString.copyFrom(key))
+                    .setValue(ByteString.copyFrom(value))
+                    .setVersion(1)
+                    .build();
+            gets[i] = KeyValueRequest.KVRequest.newBuilder()
+                    .setCommand(Commands.Get)
+                    .setKey(ByteString.copyFrom(key))
+                    .build();
+            removes[i] = KeyValueRequest.KVRequest.newBuilder()
+                    .setCommand(Commands.Remove)
+                    .setKey(ByteString.copyFrom(key))
+                    .build();
+            server.handleCommand(puts[i], ctx);
+        }
+    }
+
+    /* Puts back the key the next remove takes out, outside the timing */
+    @State(Scope.Thread)
+    public static class Removal {
+        @Setup(Level.Invocation)
+        public void restore(HandleCommandBenchmark b) {
+            b.server.handleCommand(b.puts[b.next & (KEYS - 1)], b.ctx);
+        }
+    }
+
+    /* Overwrites a stored key */
+    @Benchmark
+    public KeyValueResponse.KVResponse.Builder put() {
+        return server.handleCommand(puts[next++ & (KEYS - 1)], ctx);
+    }
+
+    @Benchmark
+    public KeyValueResponse.KVResponse.Builder get() {
+        return server.handleCommand(gets[next++ & (KEYS - 1)], ctx);
+    }
+
+    @Benchmark
+    public KeyValueResponse.KVResponse.Builder remove(Removal removal) {
+        return server.handleCommand(removes[next++ & (KEYS - 1)], ctx);
+    }
+}
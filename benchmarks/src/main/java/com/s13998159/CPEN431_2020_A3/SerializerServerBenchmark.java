@@ -0,0 +1,136 @@
+package com.s13998159.CPEN431_2020_A3;
+
+import ca.NetSysLab.ProtocolBuffers.KeyValueRequest;
+import ca.NetSysLab.ProtocolBuffers.Message;
+import com.google.protobuf.ByteString;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.InetAddress;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Envelope checks SerializerServer makes before a request is serviced: the
+ * checksum over the receive buffer, and the reply cache lookup by message ID
+ * for both a retransmission and a new request.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SerializerServerBenchmark {
+    /* Replies in the cache during the lookups */
+    private static final int CACHED = 4096;
+
+    @Param({"8", "32", "2048", "10000"})
+    int valueSize;
+
+    private SerializerServer serializer;
+    private final RequestContext ctx = new RequestContext();
+
+    private final long[] cached_hi = new long[CACHED];
+    private final long[] cached_lo = new long[CACHED];
+    private int next_cached = 0;
+    private long next_new = 0;
+
+    /* Nothing is ever received or sent */
+    private static class NoTransport implements Transport {
+        @Override
+        public int lanes() {
+            return 1;
+        }
+
+        @Override
+        public void receive(int lane, RequestContext ctx) {
+        }
+
+        @Override
+        public boolean poll(int lane, RequestContext ctx) {
+            return false;
+        }
+
+        @Override
+        public boolean send(RequestContext ctx, int length) {
+            return true;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        long cache_capacity = 64L << 20;
+        MemoryBudget budget = new MemoryBudget(1L << 30, cache_capacity);
+        serializer = new SerializerServer(new NoTransport(), budget,
+            cache_capacity, new LoadMonitor(1024), new Metrics(),
+            Collections.<InetAddress>emptySet());
+
+        Random random = new Random(431);
+        byte[] key = new byte[32];
+        byte[] value = new byte[valueSize];
+        byte[] msg_id = new byte[16];
+        random.nextBytes(key);
+        random.nextBytes(value);
+        random.nextBytes(msg_id);
+        byte[] payload = KeyValueRequest.KVRequest.newBuilder()
+                .setCommand(Commands.Put)
+                .setKey(ByteString.copyFrom(key))
+                .setValue(ByteString.copyFrom(value))
+                .setVersion(1)
+                .build().toByteArray();
+        CRC32 checksum = new CRC32();
+        checksum.update(msg_id);
+        checksum.update(payload);
+        byte[] datagram = Message.Msg.newBuilder()
+                .setMessageID(ByteString.copyFrom(msg_id))
+                .setPayload(ByteString.copyFrom(payload))
+                .setCheckSum(checksum.getValue())
+                .build().toByteArray();
+
+        /* As the transport leaves it, decoded the way the receiver does */
+        System.arraycopy(datagram, 0, ctx.data, 0, datagram.length);
+        ctx.length = datagram.length;
+        serializer.peekCommand(ctx);
+
+        byte[] reply = ErrCode.general_fail_message;
+        for (int i = 0; i < CACHED; i++) {
+            cached_hi[i] = random.nextLong();
+            cached_lo[i] = random.nextLong();
+            serializer.msg_id_cache.begin(cached_hi[i], cached_lo[i], ctx);
+            serializer.msg_id_cache.complete(cached_hi[i], cached_lo[i], reply);
+        }
+    }
+
+    @Benchmark
+    public boolean verifyID() {
+        return serializer.verifyID(ctx);
+    }
+
+    /* A retransmission, answered from the cache */
+    @Benchmark
+    public byte[] cacheHit() {
+        int i = next_cached++ & (CACHED - 1);
+        return serializer.msg_id_cache.begin(cached_hi[i], cached_lo[i], ctx);
+    }
+
+    /* A new request, marked in flight and given up on again */
+    @Benchmark
+    public byte[] cacheMiss() {
+        long id = next_new++;
+        byte[] reply = serializer.msg_id_cache.begin(id, ~id, ctx);
+        serializer.msg_id_cache.cancel(id, ~id);
+        return reply;
+    }
+}
@@ -47,6 +47,93 @@ public final class KeyValueRequest {
      * <code>optional int32 version = 4;</code>
      */
     int getVersion();
+
+    /**
+     * <code>optional uint32 quorum = 5;</code>
+     *
+     * <pre>
+     * Replicas that have to answer a read or acknowledge a write before
+     * the client is answered. Defaults to the server's R or W.
+     * </pre>
+     */
+    boolean hasQuorum();
+    /**
+     * <code>optional uint32 quorum = 5;</code>
+     *
+     * <pre>
+     * Replicas that have to answer a read or acknowledge a write before
+     * the client is answered. Defaults to the server's R or W.
+     * </pre>
+     */
+    int getQuorum();
+
+    /**
+     * <code>optional int64 stamp = 6;</code>
+     *
+     * <pre>
+     * Set by the node coordinating an update, orders updates to a key that
+     * carry the same version
+     * </pre>
+     */
+    boolean hasStamp();
+    /**
+     * <code>optional int64 stamp = 6;</code>
+     *
+     * <pre>
+     * Set by the node coordinating an update, orders updates to a key that
+     * carry the same version
+     * </pre>
+     */
+    long getStamp();
+
+    /**
+     * <code>repeated .KVRequest.Entry entries = 7;</code>
+     *
+     * <pre>
+     * Operations of a MultiPut, MultiGet or MultiRemove, in the order they
+     * are answered in. key, value and version above are then unused.
+     * </pre>
+     */
+    java.util.List<ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry> 
+        getEntriesList();
+    /**
+     * <code>repeated .KVRequest.Entry entries = 7;</code>
+     *
+     * <pre>
+     * Operations of a MultiPut, MultiGet or MultiRemove, in the order they
+     * are answered in. key, value and version above are then unused.
+     * </pre>
+     */
+    ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry getEntries(int index);
+    /**
+     * <code>repeated .KVRequest.Entry entries = 7;</code>
+     *
+     * <pre>
+     * Operations of a MultiPut, MultiGet or MultiRemove, in the order they
+     * are answered in. key, value and version above are then unused.
+     * </pre>
+     */
+    int getEntriesCount();
+    /**
+     * <code>repeated .KVRequest.Entry entries = 7;</code>
+     *
+     * <pre>
+     * Operations of a MultiPut, MultiGet or MultiRemove, in the order they
+     * are answered in. key, value and version above are then unused.
+     * </pre>
+     */
+    java.util.List<? extends ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.EntryOrBuilder> 
+        getEntriesOrBuilderList();
+    /**
+     * <code>repeated .KVRequest.Entry entries = 7;</code>
+     *
+     * <pre>
+     * Operations of a MultiPut, MultiGet or MultiRemove, in the order they
+     * are answered in. key, value and version above are then unused.
+     * </pre>
+     */
+    ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.EntryOrBuilder getEntriesOrBuilder(
+        int index);
   }
   /**
    * Protobuf type {@code KVRequest}
@@ -120,6 +207,24 @@ public final class KeyValueRequest {
               version_ = input.readInt32();
               break;
             }
+            case 40: {
+              bitField0_ |= 0x00000010;
+              quorum_ = input.readUInt32();
+              break;
+            }
+            case 48: {
+              bitField0_ |= 0x00000020;
+              stamp_ = input.readInt64();
+              break;
+            }
+            case 58: {
+              if (!((mutable_bitField0_ & 0x00000040) == 0x00000040)) {
+                entries_ = new java.util.ArrayList<ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry>();
+                mutable_bitField0_ |= 0x00000040;
+              }
+              entries_.add(input.readMessage(ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry.PARSER, extensionRegistry));
+              break;
+            }
           }
         }
       } catch (com.google.protobuf.InvalidProtocolBufferException e) {
@@ -128,6 +233,9 @@ public final class KeyValueRequest {
         throw new com.google.protobuf.InvalidProtocolBufferException(
             e.getMessage()).setUnfinishedMessage(this);
       } finally {
+        if (((mutable_bitField0_ & 0x00000040) == 0x00000040)) {
+          entries_ = java.util.Collections.unmodifiableList(entries_);
+        }
         this.unknownFields = unknownFields.build();
         makeExtensionsImmutable();
       }
@@ -159,6 +267,573 @@ public final class KeyValueRequest {
       return PARSER;
     }
 
+    public interface EntryOrBuilder extends
+        // @@protoc_insertion_point(interface_extends:KVRequest.Entry)
+        com.google.protobuf.MessageOrBuilder {
+
+      /**
+       * <code>required bytes key = 1;</code>
+       */
+      boolean hasKey();
+      /**
+       * <code>required bytes key = 1;</code>
+       */
+      com.google.protobuf.ByteString getKey();
+
+      /**
+       * <code>optional bytes value = 2;</code>
+       */
+      boolean hasValue();
+      /**
+       * <code>optional bytes value = 2;</code>
+       */
+      com.google.protobuf.ByteString getValue();
+
+      /**
+       * <code>optional int32 version = 3;</code>
+       */
+      boolean hasVersion();
+      /**
+       * <code>optional int32 version = 3;</code>
+       */
+      int getVersion();
+    }
+    /**
+     * Protobuf type {@code KVRequest.Entry}
+     */
+    public static final class Entry extends
+        com.google.protobuf.GeneratedMessage implements
+        // @@protoc_insertion_point(message_implements:KVRequest.Entry)
+        EntryOrBuilder {
+      // Use Entry.newBuilder() to construct.
+      private Entry(com.google.protobuf.GeneratedMessage.Builder<?> builder) {
+        super(builder);
+        this.unknownFields = builder.getUnknownFields();
+      }
+      private Entry(boolean noInit) { this.unknownFields = com.google.protobuf.UnknownFieldSet.getDefaultInstance(); }
+
+      private static final Entry defaultInstance;
+      public static Entry getDefaultInstance() {
+        return defaultInstance;
+      }
+
+      public Entry getDefaultInstanceForType() {
+        return defaultInstance;
+      }
+
+      private final com.google.protobuf.UnknownFieldSet unknownFields;
+      @java.lang.Override
+      public final com.google.protobuf.UnknownFieldSet
+          getUnknownFields() {
+        return this.unknownFields;
+      }
+      private Entry(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws com.google.protobuf.InvalidProtocolBufferException {
+        initFields();
+        int mutable_bitField0_ = 0;
+        com.google.protobuf.UnknownFieldSet.Builder unknownFields =
+            com.google.protobuf.UnknownFieldSet.newBuilder();
+        try {
+          boolean done = false;
+          while (!done) {
+            int tag = input.readTag();
+            switch (tag) {
+              case 0:
+                done = true;
+                break;
+              default: {
+                if (!parseUnknownField(input, unknownFields,
+                                       extensionRegistry, tag)) {
+                  done = true;
+                }
+                break;
+              }
+              case 10: {
+                bitField0_ |= 0x00000001;
+                key_ = input.readBytes();
+                break;
+              }
+              case 18: {
+                bitField0_ |= 0x00000002;
+                value_ = input.readBytes();
+                break;
+              }
+              case 24: {
+                bitField0_ |= 0x00000004;
+                version_ = input.readInt32();
+                break;
+              }
+            }
+          }
+        } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+          throw e.setUnfinishedMessage(this);
+        } catch (java.io.IOException e) {
+          throw new com.google.protobuf.InvalidProtocolBufferException(
+              e.getMessage()).setUnfinishedMessage(this);
+        } finally {
+          this.unknownFields = unknownFields.build();
+          makeExtensionsImmutable();
+        }
+      }
+      public static final com.google.protobuf.Descriptors.Descriptor
+          getDescriptor() {
+        return ca.NetSysLab.ProtocolBuffers.KeyValueRequest.internal_static_KVRequest_Entry_descriptor;
+      }
+
+      protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+          internalGetFieldAccessorTable() {
+        return ca.NetSysLab.ProtocolBuffers.KeyValueRequest.internal_static_KVRequest_Entry_fieldAccessorTable
+            .ensureFieldAccessorsInitialized(
+                ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry.class, ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry.Builder.class);
+      }
+
+      public static com.google.protobuf.Parser<Entry> PARSER =
+          new com.google.protobuf.AbstractParser<Entry>() {
+        public Entry parsePartialFrom(
+            com.google.protobuf.CodedInputStream input,
+            com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+            throws com.google.protobuf.InvalidProtocolBufferException {
+          return new Entry(input, extensionRegistry);
+        }
+      };
+
+      @java.lang.Override
+      public com.google.protobuf.Parser<Entry> getParserForType() {
+        return PARSER;
+      }
+
+      private int bitField0_;
+      public static final int KEY_FIELD_NUMBER = 1;
+      private com.google.protobuf.ByteString key_;
+      /**
+       * <code>required bytes key = 1;</code>
+       */
+      public boolean hasKey() {
+        return ((bitField0_ & 0x00000001) == 0x00000001);
+      }
+      /**
+       * <code>required bytes key = 1;</code>
+       */
+      public com.google.protobuf.ByteString getKey() {
+        return key_;
+      }
+
+      public static final int VALUE_FIELD_NUMBER = 2;
+      private com.google.protobuf.ByteString value_;
+      /**
+       * <code>optional bytes value = 2;</code>
+       */
+      public boolean hasValue() {
+        return ((bitField0_ & 0x00000002) == 0x00000002);
+      }
+      /**
+       * <code>optional bytes value = 2;</code>
+       */
+      public com.google.protobuf.ByteString getValue() {
+        return value_;
+      }
+
+      public static final int VERSION_FIELD_NUMBER = 3;
+      private int version_;
+      /**
+       * <code>optional int32 version = 3;</code>
+       */
+      public boolean hasVersion() {
+        return ((bitField0_ & 0x00000004) == 0x00000004);
+      }
+      /**
+       * <code>optional int32 version = 3;</code>
+       */
+      public int getVersion() {
+        return version_;
+      }
+
+      private void initFields() {
+        key_ = com.google.protobuf.ByteString.EMPTY;
+        value_ = com.google.protobuf.ByteString.EMPTY;
+        version_ = 0;
+      }
+      private byte memoizedIsInitialized = -1;
+      public final boolean isInitialized() {
+        byte isInitialized = memoizedIsInitialized;
+        if (isInitialized == 1) return true;
+        if (isInitialized == 0) return false;
+
+        if (!hasKey()) {
+          memoizedIsInitialized = 0;
+          return false;
+        }
+        memoizedIsInitialized = 1;
+        return true;
+      }
+
+      public void writeTo(com.google.protobuf.CodedOutputStream output)
+                          throws java.io.IOException {
+        getSerializedSize();
+        if (((bitField0_ & 0x00000001) == 0x00000001)) {
+          output.writeBytes(1, key_);
+        }
+        if (((bitField0_ & 0x00000002) == 0x00000002)) {
+          output.writeBytes(2, value_);
+        }
+        if (((bitField0_ & 0x00000004) == 0x00000004)) {
+          output.writeInt32(3, version_);
+        }
+        getUnknownFields().writeTo(output);
+      }
+
+      private int memoizedSerializedSize = -1;
+      public int getSerializedSize() {
+        int size = memoizedSerializedSize;
+        if (size != -1) return size;
+
+        size = 0;
+        if (((bitField0_ & 0x00000001) == 0x00000001)) {
+          size += com.google.protobuf.CodedOutputStream
+            .computeBytesSize(1, key_);
+        }
+        if (((bitField0_ & 0x00000002) == 0x00000002)) {
+          size += com.google.protobuf.CodedOutputStream
+            .computeBytesSize(2, value_);
+        }
+        if (((bitField0_ & 0x00000004) == 0x00000004)) {
+          size += com.google.protobuf.CodedOutputStream
+            .computeInt32Size(3, version_);
+        }
+        size += getUnknownFields().getSerializedSize();
+        memoizedSerializedSize = size;
+        return size;
+      }
+
+      private static final long serialVersionUID = 0L;
+      @java.lang.Override
+      protected java.lang.Object writeReplace()
+          throws java.io.ObjectStreamException {
+        return super.writeReplace();
+      }
+
+      public static ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry parseFrom(
+          com.google.protobuf.ByteString data)
+          throws com.google.protobuf.InvalidProtocolBufferException {
+        return PARSER.parseFrom(data);
+      }
+      public static ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry parseFrom(
+          com.google.protobuf.ByteString data,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws com.google.protobuf.InvalidProtocolBufferException {
+        return PARSER.parseFrom(data, extensionRegistry);
+      }
+      public static ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry parseFrom(byte[] data)
+          throws com.google.protobuf.InvalidProtocolBufferException {
+        return PARSER.parseFrom(data);
+      }
+      public static ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry parseFrom(
+          byte[] data,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws com.google.protobuf.InvalidProtocolBufferException {
+        return PARSER.parseFrom(data, extensionRegistry);
+      }
+      public static ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry parseFrom(java.io.InputStream input)
+          throws java.io.IOException {
+        return PARSER.parseFrom(input);
+      }
+      public static ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry parseFrom(
+          java.io.InputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws java.io.IOException {
+        return PARSER.parseFrom(input, extensionRegistry);
+      }
+      public static ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry parseDelimitedFrom(java.io.InputStream input)
+          throws java.io.IOException {
+        return PARSER.parseDelimitedFrom(input);
+      }
+      public static ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry parseDelimitedFrom(
+          java.io.InputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws java.io.IOException {
+        return PARSER.parseDelimitedFrom(input, extensionRegistry);
+      }
+      public static ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry parseFrom(
+          com.google.protobuf.CodedInputStream input)
+          throws java.io.IOException {
+        return PARSER.parseFrom(input);
+      }
+      public static ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry parseFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws java.io.IOException {
+        return PARSER.parseFrom(input, extensionRegistry);
+      }
+
+      public static Builder newBuilder() { return Builder.create(); }
+      public Builder newBuilderForType() { return newBuilder(); }
+      public static Builder newBuilder(ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry prototype) {
+        return newBuilder().mergeFrom(prototype);
+      }
+      public Builder toBuilder() { return newBuilder(this); }
+
+      @java.lang.Override
+      protected Builder newBuilderForType(
+          com.google.protobuf.GeneratedMessage.BuilderParent parent) {
+        Builder builder = new Builder(parent);
+        return builder;
+      }
+      /**
+       * Protobuf type {@code KVRequest.Entry}
+       */
+      public static final class Builder extends
+          com.google.protobuf.GeneratedMessage.Builder<Builder> implements
+          // @@protoc_insertion_point(builder_implements:KVRequest.Entry)
+          ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.EntryOrBuilder {
+        public static final com.google.protobuf.Descriptors.Descriptor
+            getDescriptor() {
+          return ca.NetSysLab.ProtocolBuffers.KeyValueRequest.internal_static_KVRequest_Entry_descriptor;
+        }
+
+        protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+            internalGetFieldAccessorTable() {
+          return ca.NetSysLab.ProtocolBuffers.KeyValueRequest.internal_static_KVRequest_Entry_fieldAccessorTable
+              .ensureFieldAccessorsInitialized(
+                  ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry.class, ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry.Builder.class);
+        }
+
+        // Construct using ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry.newBuilder()
+        private Builder() {
+          maybeForceBuilderInitialization();
+        }
+
+        private Builder(
+            com.google.protobuf.GeneratedMessage.BuilderParent parent) {
+          super(parent);
+          maybeForceBuilderInitialization();
+        }
+        private void maybeForceBuilderInitialization() {
+          if (com.google.protobuf.GeneratedMessage.alwaysUseFieldBuilders) {
+          }
+        }
+        private static Builder create() {
+          return new Builder();
+        }
+
+        public Builder clear() {
+          super.clear();
+          key_ = com.google.protobuf.ByteString.EMPTY;
+          bitField0_ = (bitField0_ & ~0x00000001);
+          value_ = com.google.protobuf.ByteString.EMPTY;
+          bitField0_ = (bitField0_ & ~0x00000002);
+          version_ = 0;
+          bitField0_ = (bitField0_ & ~0x00000004);
+          return this;
+        }
+
+        public Builder clone() {
+          return create().mergeFrom(buildPartial());
+        }
+
+        public com.google.protobuf.Descriptors.Descriptor
+            getDescriptorForType() {
+          return ca.NetSysLab.ProtocolBuffers.KeyValueRequest.internal_static_KVRequest_Entry_descriptor;
+        }
+
+        public ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry getDefaultInstanceForType() {
+          return ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry.getDefaultInstance();
+        }
+
+        public ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry build() {
+          ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry result = buildPartial();
+          if (!result.isInitialized()) {
+            throw newUninitializedMessageException(result);
+          }
+          return result;
+        }
+
+        public ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry buildPartial() {
+          ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry result = new ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry(this);
+          int from_bitField0_ = bitField0_;
+          int to_bitField0_ = 0;
+          if (((from_bitField0_ & 0x00000001) == 0x00000001)) {
+            to_bitField0_ |= 0x00000001;
+          }
+          result.key_ = key_;
+          if (((from_bitField0_ & 0x00000002) == 0x00000002)) {
+            to_bitField0_ |= 0x00000002;
+          }
+          result.value_ = value_;
+          if (((from_bitField0_ & 0x00000004) == 0x00000004)) {
+            to_bitField0_ |= 0x00000004;
+          }
+          result.version_ = version_;
+          result.bitField0_ = to_bitField0_;
+          onBuilt();
+          return result;
+        }
+
+        public Builder mergeFrom(com.google.protobuf.Message other) {
+          if (other instanceof ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry) {
+            return mergeFrom((ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry)other);
+          } else {
+            super.mergeFrom(other);
+            return this;
+          }
+        }
+
+        public Builder mergeFrom(ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry other) {
+          if (other == ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry.getDefaultInstance()) return this;
+          if (other.hasKey()) {
+            setKey(other.getKey());
+          }
+          if (other.hasValue()) {
+            setValue(other.getValue());
+          }
+          if (other.hasVersion()) {
+            setVersion(other.getVersion());
+          }
+          this.mergeUnknownFields(other.getUnknownFields());
+          return this;
+        }
+
+        public final boolean isInitialized() {
+          if (!hasKey()) {
+            
+            return false;
+          }
+          return true;
+        }
+
+        public Builder mergeFrom(
+            com.google.protobuf.CodedInputStream input,
+            com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+            throws java.io.IOException {
+          ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry parsedMessage = null;
+          try {
+            parsedMessage = PARSER.parsePartialFrom(input, extensionRegistry);
+          } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+            parsedMessage = (ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry) e.getUnfinishedMessage();
+            throw e;
+          } finally {
+            if (parsedMessage != null) {
+              mergeFrom(parsedMessage);
+            }
+          }
+          return this;
+        }
+        private int bitField0_;
+
+        private com.google.protobuf.ByteString key_ = com.google.protobuf.ByteString.EMPTY;
+        /**
+         * <code>required bytes key = 1;</code>
+         */
+        public boolean hasKey() {
+          return ((bitField0_ & 0x00000001) == 0x00000001);
+        }
+        /**
+         * <code>required bytes key = 1;</code>
+         */
+        public com.google.protobuf.ByteString getKey() {
+          return key_;
+        }
+        /**
+         * <code>required bytes key = 1;</code>
+         */
+        public Builder setKey(com.google.protobuf.ByteString value) {
+          if (value == null) {
+    throw new NullPointerException();
+  }
+  bitField0_ |= 0x00000001;
+          key_ = value;
+          onChanged();
+          return this;
+        }
+        /**
+         * <code>required bytes key = 1;</code>
+         */
+        public Builder clearKey() {
+          bitField0_ = (bitField0_ & ~0x00000001);
+          key_ = getDefaultInstance().getKey();
+          onChanged();
+          return this;
+        }
+
+        private com.google.protobuf.ByteString value_ = com.google.protobuf.ByteString.EMPTY;
+        /**
+         * <code>optional bytes value = 2;</code>
+         */
+        public boolean hasValue() {
+          return ((bitField0_ & 0x00000002) == 0x00000002);
+        }
+        /**
+         * <code>optional bytes value = 2;</code>
+         */
+        public com.google.protobuf.ByteString getValue() {
+          return value_;
+        }
+        /**
+         * <code>optional bytes value = 2;</code>
+         */
+        public Builder setValue(com.google.protobuf.ByteString value) {
+          if (value == null) {
+    throw new NullPointerException();
+  }
+  bitField0_ |= 0x00000002;
+          value_ = value;
+          onChanged();
+          return this;
+        }
+        /**
+         * <code>optional bytes value = 2;</code>
+         */
+        public Builder clearValue() {
+          bitField0_ = (bitField0_ & ~0x00000002);
+          value_ = getDefaultInstance().getValue();
+          onChanged();
+          return this;
+        }
+
+        private int version_ ;
+        /**
+         * <code>optional int32 version = 3;</code>
+         */
+        public boolean hasVersion() {
+          return ((bitField0_ & 0x00000004) == 0x00000004);
+        }
+        /**
+         * <code>optional int32 version = 3;</code>
+         */
+        public int getVersion() {
+          return version_;
+        }
+        /**
+         * <code>optional int32 version = 3;</code>
+         */
+        public Builder setVersion(int value) {
+          bitField0_ |= 0x00000004;
+          version_ = value;
+          onChanged();
+          return this;
+        }
+        /**
+         * <code>optional int32 version = 3;</code>
+         */
+        public Builder clearVersion() {
+          bitField0_ = (bitField0_ & ~0x00000004);
+          version_ = 0;
+          onChanged();
+          return this;
+        }
+
+        // @@protoc_insertion_point(builder_scope:KVRequest.Entry)
+      }
+
+      static {
+        defaultInstance = new Entry(true);
+        defaultInstance.initFields();
+      }
+
+      // @@protoc_insertion_point(class_scope:KVRequest.Entry)
+    }
+
     private int bitField0_;
     public static final int COMMAND_FIELD_NUMBER = 1;
     private int command_;
@@ -220,11 +895,124 @@ public final class KeyValueRequest {
       return version_;
     }
 
+    public static final int QUORUM_FIELD_NUMBER = 5;
+    private int quorum_;
+    /**
+     * <code>optional uint32 quorum = 5;</code>
+     *
+     * <pre>
+     * Replicas that have to answer a read or acknowledge a write before
+     * the client is answered. Defaults to the server's R or W.
+     * </pre>
+     */
+    public boolean hasQuorum() {
+      return ((bitField0_ & 0x00000010) == 0x00000010);
+    }
+    /**
+     * <code>optional uint32 quorum = 5;</code>
+     *
+     * <pre>
+     * Replicas that have to answer a read or acknowledge a write before
+     * the client is answered. Defaults to the server's R or W.
+     * </pre>
+     */
+    public int getQuorum() {
+      return quorum_;
+    }
+
+    public static final int STAMP_FIELD_NUMBER = 6;
+    private long stamp_;
+    /**
+     * <code>optional int64 stamp = 6;</code>
+     *
+     * <pre>
+     * Set by the node coordinating an update, orders updates to a key that
+     * carry the same version
+     * </pre>
+     */
+    public boolean hasStamp() {
+      return ((bitField0_ & 0x00000020) == 0x00000020);
+    }
+    /**
+     * <code>optional int64 stamp = 6;</code>
+     *
+     * <pre>
+     * Set by the node coordinating an update, orders updates to a key that
+     * carry the same version
+     * </pre>
+     */
+    public long getStamp() {
+      return stamp_;
+    }
+
+    public static final int ENTRIES_FIELD_NUMBER = 7;
+    private java.util.List<ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry> entries_;
+    /**
+     * <code>repeated .KVRequest.Entry entries = 7;</code>
+     *
+     * <pre>
+     * Operations of a MultiPut, MultiGet or MultiRemove, in the order they
+     * are answered in. key, value and version above are then unused.
+     * </pre>
+     */
+    public java.util.List<ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry> getEntriesList() {
+      return entries_;
+    }
+    /**
+     * <code>repeated .KVRequest.Entry entries = 7;</code>
+     *
+     * <pre>
+     * Operations of a MultiPut, MultiGet or MultiRemove, in the order they
+     * are answered in. key, value and version above are then unused.
+     * </pre>
+     */
+    public java.util.List<? extends ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.EntryOrBuilder> 
+        getEntriesOrBuilderList() {
+      return entries_;
+    }
+    /**
+     * <code>repeated .KVRequest.Entry entries = 7;</code>
+     *
+     * <pre>
+     * Operations of a MultiPut, MultiGet or MultiRemove, in the order they
+     * are answered in. key, value and version above are then unused.
+     * </pre>
+     */
+    public int getEntriesCount() {
+      return entries_.size();
+    }
+    /**
+     * <code>repeated .KVRequest.Entry entries = 7;</code>
+     *
+     * <pre>
+     * Operations of a MultiPut, MultiGet or MultiRemove, in the order they
+     * are answered in. key, value and version above are then unused.
+     * </pre>
+     */
+    public ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry getEntries(int index) {
+      return entries_.get(index);
+    }
+    /**
+     * <code>repeated .KVRequest.Entry entries = 7;</code>
+     *
+     * <pre>
+     * Operations of a MultiPut, MultiGet or MultiRemove, in the order they
+     * are answered in. key, value and version above are then unused.
+     * </pre>
+     */
+    public ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.EntryOrBuilder getEntriesOrBuilder(
+        int index) {
+      return entries_.get(index);
+    }
+
     private void initFields() {
       command_ = 0;
       key_ = com.google.protobuf.ByteString.EMPTY;
       value_ = com.google.protobuf.ByteString.EMPTY;
       version_ = 0;
+      quorum_ = 0;
+      stamp_ = 0L;
+      entries_ = java.util.Collections.emptyList();
     }
     private byte memoizedIsInitialized = -1;
     public final boolean isInitialized() {
@@ -236,6 +1024,12 @@ public final class KeyValueRequest {
         memoizedIsInitialized = 0;
         return false;
       }
+      for (int i = 0; i < getEntriesCount(); i++) {
+        if (!getEntries(i).isInitialized()) {
+          memoizedIsInitialized = 0;
+          return false;
+        }
+      }
       memoizedIsInitialized = 1;
       return true;
     }
@@ -255,6 +1049,15 @@ public final class KeyValueRequest {
       if (((bitField0_ & 0x00000008) == 0x00000008)) {
         output.writeInt32(4, version_);
       }
+      if (((bitField0_ & 0x00000010) == 0x00000010)) {
+        output.writeUInt32(5, quorum_);
+      }
+      if (((bitField0_ & 0x00000020) == 0x00000020)) {
+        output.writeInt64(6, stamp_);
+      }
+      for (int i = 0; i < entries_.size(); i++) {
+        output.writeMessage(7, entries_.get(i));
+      }
       getUnknownFields().writeTo(output);
     }
 
@@ -280,6 +1083,18 @@ public final class KeyValueRequest {
         size += com.google.protobuf.CodedOutputStream
           .computeInt32Size(4, version_);
       }
+      if (((bitField0_ & 0x00000010) == 0x00000010)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeUInt32Size(5, quorum_);
+      }
+      if (((bitField0_ & 0x00000020) == 0x00000020)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeInt64Size(6, stamp_);
+      }
+      for (int i = 0; i < entries_.size(); i++) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeMessageSize(7, entries_.get(i));
+      }
       size += getUnknownFields().getSerializedSize();
       memoizedSerializedSize = size;
       return size;
@@ -389,6 +1204,7 @@ public final class KeyValueRequest {
       }
       private void maybeForceBuilderInitialization() {
         if (com.google.protobuf.GeneratedMessage.alwaysUseFieldBuilders) {
+          getEntriesFieldBuilder();
         }
       }
       private static Builder create() {
@@ -405,6 +1221,16 @@ public final class KeyValueRequest {
         bitField0_ = (bitField0_ & ~0x00000004);
         version_ = 0;
         bitField0_ = (bitField0_ & ~0x00000008);
+        quorum_ = 0;
+        bitField0_ = (bitField0_ & ~0x00000010);
+        stamp_ = 0L;
+        bitField0_ = (bitField0_ & ~0x00000020);
+        if (entriesBuilder_ == null) {
+          entries_ = java.util.Collections.emptyList();
+          bitField0_ = (bitField0_ & ~0x00000040);
+        } else {
+          entriesBuilder_.clear();
+        }
         return this;
       }
 
@@ -449,6 +1275,23 @@ public final class KeyValueRequest {
           to_bitField0_ |= 0x00000008;
         }
         result.version_ = version_;
+        if (((from_bitField0_ & 0x00000010) == 0x00000010)) {
+          to_bitField0_ |= 0x00000010;
+        }
+        result.quorum_ = quorum_;
+        if (((from_bitField0_ & 0x00000020) == 0x00000020)) {
+          to_bitField0_ |= 0x00000020;
+        }
+        result.stamp_ = stamp_;
+        if (entriesBuilder_ == null) {
+          if (((bitField0_ & 0x00000040) == 0x00000040)) {
+            entries_ = java.util.Collections.unmodifiableList(entries_);
+            bitField0_ = (bitField0_ & ~0x00000040);
+          }
+          result.entries_ = entries_;
+        } else {
+          result.entries_ = entriesBuilder_.build();
+        }
         result.bitField0_ = to_bitField0_;
         onBuilt();
         return result;
@@ -477,6 +1320,38 @@ public final class KeyValueRequest {
         if (other.hasVersion()) {
           setVersion(other.getVersion());
         }
+        if (other.hasQuorum()) {
+          setQuorum(other.getQuorum());
+        }
+        if (other.hasStamp()) {
+          setStamp(other.getStamp());
+        }
+        if (entriesBuilder_ == null) {
+          if (!other.entries_.isEmpty()) {
+            if (entries_.isEmpty()) {
+              entries_ = other.entries_;
+              bitField0_ = (bitField0_ & ~0x00000040);
+            } else {
+              ensureEntriesIsMutable();
+              entries_.addAll(other.entries_);
+            }
+            onChanged();
+          }
+        } else {
+          if (!other.entries_.isEmpty()) {
+            if (entriesBuilder_.isEmpty()) {
+              entriesBuilder_.dispose();
+              entriesBuilder_ = null;
+              entries_ = other.entries_;
+              bitField0_ = (bitField0_ & ~0x00000040);
+              entriesBuilder_ = 
+                com.google.protobuf.GeneratedMessage.alwaysUseFieldBuilders ?
+                   getEntriesFieldBuilder() : null;
+            } else {
+              entriesBuilder_.addAllMessages(other.entries_);
+            }
+          }
+        }
         this.mergeUnknownFields(other.getUnknownFields());
         return this;
       }
@@ -486,6 +1361,12 @@ public final class KeyValueRequest {
           
           return false;
         }
+        for (int i = 0; i < getEntriesCount(); i++) {
+          if (!getEntries(i).isInitialized()) {
+            
+            return false;
+          }
+        }
         return true;
       }
 
@@ -642,6 +1523,440 @@ public final class KeyValueRequest {
         return this;
       }
 
+      private int quorum_ ;
+      /**
+       * <code>optional uint32 quorum = 5;</code>
+       *
+       * <pre>
+       * Replicas that have to answer a read or acknowledge a write before
+       * the client is answered. Defaults to the server's R or W.
+       * </pre>
+       */
+      public boolean hasQuorum() {
+        return ((bitField0_ & 0x00000010) == 0x00000010);
+      }
+      /**
+       * <code>optional uint32 quorum = 5;</code>
+       *
+       * <pre>
+       * Replicas that have to answer a read or acknowledge a write before
+       * the client is answered. Defaults to the server's R or W.
+       * </pre>
+       */
+      public int getQuorum() {
+        return quorum_;
+      }
+      /**
+       * <code>optional uint32 quorum = 5;</code>
+       *
+       * <pre>
+       * Replicas that have to answer a read or acknowledge a write before
+       * the client is answered. Defaults to the server's R or W.
+       * </pre>
+       */
+      public Builder setQuorum(int value) {
+        bitField0_ |= 0x00000010;
+        quorum_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional uint32 quorum = 5;</code>
+       *
+       * <pre>
+       * Replicas that have to answer a read or acknowledge a write before
+       * the client is answered. Defaults to the server's R or W.
+       * </pre>
+       */
+      public Builder clearQuorum() {
+        bitField0_ = (bitField0_ & ~0x00000010);
+        quorum_ = 0;
+        onChanged();
+        return this;
+      }
+
+      private long stamp_ ;
+      /**
+       * <code>optional int64 stamp = 6;</code>
+       *
+       * <pre>
+       * Set by the node coordinating an update, orders updates to a key that
+       * carry the same version
+       * </pre>
+       */
+      public boolean hasStamp() {
+        return ((bitField0_ & 0x00000020) == 0x00000020);
+      }
+      /**
+       * <code>optional int64 stamp = 6;</code>
+       *
+       * <pre>
+       * Set by the node coordinating an update, orders updates to a key that
+       * carry the same version
+       * </pre>
+       */
+      public long getStamp() {
+        return stamp_;
+      }
+      /**
+       * <code>optional int64 stamp = 6;</code>
+       *
+       * <pre>
+       * Set by the node coordinating an update, orders updates to a key that
+       * carry the same version
+       * </pre>
+       */
+      public Builder setStamp(long value) {
+        bitField0_ |= 0x00000020;
+        stamp_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional int64 stamp = 6;</code>
+       *
+       * <pre>
+       * Set by the node coordinating an update, orders updates to a key that
+       * carry the same version
+       * </pre>
+       */
+      public Builder clearStamp() {
+        bitField0_ = (bitField0_ & ~0x00000020);
+        stamp_ = 0L;
+        onChanged();
+        return this;
+      }
+
+      private java.util.List<ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry> entries_ =
+        java.util.Collections.emptyList();
+      private void ensureEntriesIsMutable() {
+        if (!((bitField0_ & 0x00000040) == 0x00000040)) {
+          entries_ = new java.util.ArrayList<ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry>(entries_);
+          bitField0_ |= 0x00000040;
+         }
+      }
+
+      private com.google.protobuf.RepeatedFieldBuilder<
+          ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry, ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry.Builder, ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.EntryOrBuilder> entriesBuilder_;
+
+      /**
+       * <code>repeated .KVRequest.Entry entries = 7;</code>
+       *
+       * <pre>
+       * Operations of a MultiPut, MultiGet or MultiRemove, in the order they
+       * are answered in. key, value and version above are then unused.
+       * </pre>
+       */
+      public java.util.List<ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry> getEntriesList() {
+        if (entriesBuilder_ == null) {
+          return java.util.Collections.unmodifiableList(entries_);
+        } else {
+          return entriesBuilder_.getMessageList();
+        }
+      }
+      /**
+       * <code>repeated .KVRequest.Entry entries = 7;</code>
+       *
+       * <pre>
+       * Operations of a MultiPut, MultiGet or MultiRemove, in the order they
+       * are answered in. key, value and version above are then unused.
+       * </pre>
+       */
+      public int getEntriesCount() {
+        if (entriesBuilder_ == null) {
+          return entries_.size();
+        } else {
+          return entriesBuilder_.getCount();
+        }
+      }
+      /**
+       * <code>repeated .KVRequest.Entry entries = 7;</code>
+       *
+       * <pre>
+       * Operations of a MultiPut, MultiGet or MultiRemove, in the order they
+       * are answered in. key, value and version above are then unused.
+       * </pre>
+       */
+      public ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry getEntries(int index) {
+        if (entriesBuilder_ == null) {
+          return entries_.get(index);
+        } else {
+          return entriesBuilder_.getMessage(index);
+        }
+      }
+      /**
+       * <code>repeated .KVRequest.Entry entries = 7;</code>
+       *
+       * <pre>
+       * Operations of a MultiPut, MultiGet or MultiRemove, in the order they
+       * are answered in. key, value and version above are then unused.
+       * </pre>
+       */
+      public Builder setEntries(
+          int index, ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry value) {
+        if (entriesBuilder_ == null) {
+          if (value == null) {
+            throw new NullPointerException();
+          }
+          ensureEntriesIsMutable();
+          entries_.set(index, value);
+          onChanged();
+        } else {
+          entriesBuilder_.setMessage(index, value);
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .KVRequest.Entry entries = 7;</code>
+       *
+       * <pre>
+       * Operations of a MultiPut, MultiGet or MultiRemove, in the order they
+       * are answered in. key, value and version above are then unused.
+       * </pre>
+       */
+      public Builder setEntries(
+          int index, ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry.Builder builderForValue) {
+        if (entriesBuilder_ == null) {
+          ensureEntriesIsMutable();
+          entries_.set(index, builderForValue.build());
+          onChanged();
+        } else {
+          entriesBuilder_.setMessage(index, builderForValue.build());
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .KVRequest.Entry entries = 7;</code>
+       *
+       * <pre>
+       * Operations of a MultiPut, MultiGet or MultiRemove, in the order they
+       * are answered in. key, value and version above are then unused.
+       * </pre>
+       */
+      public Builder addEntries(ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry value) {
+        if (entriesBuilder_ == null) {
+          if (value == null) {
+            throw new NullPointerException();
+          }
+          ensureEntriesIsMutable();
+          entries_.add(value);
+          onChanged();
+        } else {
+          entriesBuilder_.addMessage(value);
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .KVRequest.Entry entries = 7;</code>
+       *
+       * <pre>
+       * Operations of a MultiPut, MultiGet or MultiRemove, in the order they
+       * are answered in. key, value and version above are then unused.
+       * </pre>
+       */
+      public Builder addEntries(
+          int index, ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry value) {
+        if (entriesBuilder_ == null) {
+          if (value == null) {
+            throw new NullPointerException();
+          }
+          ensureEntriesIsMutable();
+          entries_.add(index, value);
+          onChanged();
+        } else {
+          entriesBuilder_.addMessage(index, value);
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .KVRequest.Entry entries = 7;</code>
+       *
+       * <pre>
+       * Operations of a MultiPut, MultiGet or MultiRemove, in the order they
+       * are answered in. key, value and version above are then unused.
+       * </pre>
+       */
+      public Builder addEntries(
+          ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry.Builder builderForValue) {
+        if (entriesBuilder_ == null) {
+          ensureEntriesIsMutable();
+          entries_.add(builderForValue.build());
+          onChanged();
+        } else {
+          entriesBuilder_.addMessage(builderForValue.build());
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .KVRequest.Entry entries = 7;</code>
+       *
+       * <pre>
+       * Operations of a MultiPut, MultiGet or MultiRemove, in the order they
+       * are answered in. key, value and version above are then unused.
+       * </pre>
+       */
+      public Builder addEntries(
+          int index, ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry.Builder builderForValue) {
+        if (entriesBuilder_ == null) {
+          ensureEntriesIsMutable();
+          entries_.add(index, builderForValue.build());
+          onChanged();
+        } else {
+          entriesBuilder_.addMessage(index, builderForValue.build());
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .KVRequest.Entry entries = 7;</code>
+       *
+       * <pre>
+       * Operations of a MultiPut, MultiGet or MultiRemove, in the order they
+       * are answered in. key, value and version above are then unused.
+       * </pre>
+       */
+      public Builder addAllEntries(
+          java.lang.Iterable<? extends ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry> values) {
+        if (entriesBuilder_ == null) {
+          ensureEntriesIsMutable();
+          com.google.protobuf.AbstractMessageLite.Builder.addAll(
+              values, entries_);
+          onChanged();
+        } else {
+          entriesBuilder_.addAllMessages(values);
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .KVRequest.Entry entries = 7;</code>
+       *
+       * <pre>
+       * Operations of a MultiPut, MultiGet or MultiRemove, in the order they
+       * are answered in. key, value and version above are then unused.
+       * </pre>
+       */
+      public Builder clearEntries() {
+        if (entriesBuilder_ == null) {
+          entries_ = java.util.Collections.emptyList();
+          bitField0_ = (bitField0_ & ~0x00000040);
+          onChanged();
+        } else {
+          entriesBuilder_.clear();
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .KVRequest.Entry entries = 7;</code>
+       *
+       * <pre>
+       * Operations of a MultiPut, MultiGet or MultiRemove, in the order they
+       * are answered in. key, value and version above are then unused.
+       * </pre>
+       */
+      public Builder removeEntries(int index) {
+        if (entriesBuilder_ == null) {
+          ensureEntriesIsMutable();
+          entries_.remove(index);
+          onChanged();
+        } else {
+          entriesBuilder_.remove(index);
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .KVRequest.Entry entries = 7;</code>
+       *
+       * <pre>
+       * Operations of a MultiPut, MultiGet or MultiRemove, in the order they
+       * are answered in. key, value and version above are then unused.
+       * </pre>
+       */
+      public ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry.Builder getEntriesBuilder(
+          int index) {
+        return getEntriesFieldBuilder().getBuilder(index);
+      }
+      /**
+       * <code>repeated .KVRequest.Entry entries = 7;</code>
+       *
+       * <pre>
+       * Operations of a MultiPut, MultiGet or MultiRemove, in the order they
+       * are answered in. key, value and version above are then unused.
+       * </pre>
+       */
+      public ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.EntryOrBuilder getEntriesOrBuilder(
+          int index) {
+        if (entriesBuilder_ == null) {
+          return entries_.get(index);  } else {
+          return entriesBuilder_.getMessageOrBuilder(index);
+        }
+      }
+      /**
+       * <code>repeated .KVRequest.Entry entries = 7;</code>
+       *
+       * <pre>
+       * Operations of a MultiPut, MultiGet or MultiRemove, in the order they
+       * are answered in. key, value and version above are then unused.
+       * </pre>
+       */
+      public java.util.List<? extends ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.EntryOrBuilder> 
+           getEntriesOrBuilderList() {
+        if (entriesBuilder_ != null) {
+          return entriesBuilder_.getMessageOrBuilderList();
+        } else {
+          return java.util.Collections.unmodifiableList(entries_);
+        }
+      }
+      /**
+       * <code>repeated .KVRequest.Entry entries = 7;</code>
+       *
+       * <pre>
+       * Operations of a MultiPut, MultiGet or MultiRemove, in the order they
+       * are answered in. key, value and version above are then unused.
+       * </pre>
+       */
+      public ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry.Builder addEntriesBuilder() {
+        return getEntriesFieldBuilder().addBuilder(
+            ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry.getDefaultInstance());
+      }
+      /**
+       * <code>repeated .KVRequest.Entry entries = 7;</code>
+       *
+       * <pre>
+       * Operations of a MultiPut, MultiGet or MultiRemove, in the order they
+       * are answered in. key, value and version above are then unused.
+       * </pre>
+       */
+      public ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry.Builder addEntriesBuilder(
+          int index) {
+        return getEntriesFieldBuilder().addBuilder(
+            index, ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry.getDefaultInstance());
+      }
+      /**
+       * <code>repeated .KVRequest.Entry entries = 7;</code>
+       *
+       * <pre>
+       * Operations of a MultiPut, MultiGet or MultiRemove, in the order they
+       * are answered in. key, value and version above are then unused.
+       * </pre>
+       */
+      public java.util.List<ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry.Builder> 
+           getEntriesBuilderList() {
+        return getEntriesFieldBuilder().getBuilderList();
+      }
+      private com.google.protobuf.RepeatedFieldBuilder<
+          ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry, ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry.Builder, ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.EntryOrBuilder> 
+          getEntriesFieldBuilder() {
+        if (entriesBuilder_ == null) {
+          entriesBuilder_ = new com.google.protobuf.RepeatedFieldBuilder<
+              ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry, ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.Entry.Builder, ca.NetSysLab.ProtocolBuffers.KeyValueRequest.KVRequest.EntryOrBuilder>(
+                  entries_,
+                  ((bitField0_ & 0x00000040) == 0x00000040),
+                  getParentForChildren(),
+                  isClean());
+          entries_ = null;
+        }
+        return entriesBuilder_;
+      }
+
       // @@protoc_insertion_point(builder_scope:KVRequest)
     }
 
@@ -658,6 +1973,11 @@ public final class KeyValueRequest {
   private static
     com.google.protobuf.GeneratedMessage.FieldAccessorTable
       internal_static_KVRequest_fieldAccessorTable;
+  private static final com.google.protobuf.Descriptors.Descriptor
+    internal_static_KVRequest_Entry_descriptor;
+  private static
+    com.google.protobuf.GeneratedMessage.FieldAccessorTable
+      internal_static_KVRequest_Entry_fieldAccessorTable;
 
   public static com.google.protobuf.Descriptors.FileDescriptor
       getDescriptor() {
@@ -667,10 +1987,13 @@ public final class KeyValueRequest {
       descriptor;
   static {
     java.lang.String[] descriptorData = {
-      "\n\025KeyValueRequest.proto\"I\n\tKVRequest\022\017\n\007" +
-      "command\030\001 \002(\r\022\013\n\003key\030\002 \001(\014\022\r\n\005value\030\003 \001(" +
-      "\014\022\017\n\007version\030\004 \001(\005B/\n\034ca.NetSysLab.Proto" +
-      "colBuffersB\017KeyValueRequest"
+      "\n\025KeyValueRequest.proto\"\301\001\n\tKVRequest\022\017\n" +
+      "\007command\030\001 \002(\r\022\013\n\003key\030\002 \001(\014\022\r\n\005value\030\003 \001" +
+      "(\014\022\017\n\007version\030\004 \001(\005\022\016\n\006quorum\030\005 \001(\r\022\r\n\005s" +
+      "tamp\030\006 \001(\003\022!\n\007entries\030\007 \003(\0132\020.KVRequest." +
+      "Entry\0324\n\005Entry\022\013\n\003key\030\001 \002(\014\022\r\n\005value\030\002 \001" +
+      "(\014\022\017\n\007version\030\003 \001(\005B/\n\034ca.NetSysLab.Prot" +
+      "ocolBuffersB\017KeyValueRequest"
     };
     com.google.protobuf.Descriptors.FileDescriptor.InternalDescriptorAssigner assigner =
         new com.google.protobuf.Descriptors.FileDescriptor.    InternalDescriptorAssigner() {
@@ -689,7 +2012,13 @@ public final class KeyValueRequest {
     internal_static_KVRequest_fieldAccessorTable = new
       com.google.protobuf.GeneratedMessage.FieldAccessorTable(
         internal_static_KVRequest_descriptor,
-        new java.lang.String[] { "Command", "Key", "Value", "Version", });
+        new java.lang.String[] { "Command", "Key", "Value", "Version", "Quorum", "Stamp", "Entries", });
+    internal_static_KVRequest_Entry_descriptor =
+      internal_static_KVRequest_descriptor.getNestedTypes().get(0);
+    internal_static_KVRequest_Entry_fieldAccessorTable = new
+      com.google.protobuf.GeneratedMessage.FieldAccessorTable(
+        internal_static_KVRequest_Entry_descriptor,
+        new java.lang.String[] { "Key", "Value", "Version", });
   }
 
   // @@protoc_insertion_point(outer_class_scope)
@@ -65,6 +65,50 @@ public final class KeyValueResponse {
      * <code>optional int32 membershipCount = 6;</code>
      */
     int getMembershipCount();
+
+    /**
+     * <code>repeated .KVResponse.Result results = 7;</code>
+     *
+     * <pre>
+     * Outcome of every operation of a multi command, in request order
+     * </pre>
+     */
+    java.util.List<ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result> 
+        getResultsList();
+    /**
+     * <code>repeated .KVResponse.Result results = 7;</code>
+     *
+     * <pre>
+     * Outcome of every operation of a multi command, in request order
+     * </pre>
+     */
+    ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result getResults(int index);
+    /**
+     * <code>repeated .KVResponse.Result results = 7;</code>
+     *
+     * <pre>
+     * Outcome of every operation of a multi command, in request order
+     * </pre>
+     */
+    int getResultsCount();
+    /**
+     * <code>repeated .KVResponse.Result results = 7;</code>
+     *
+     * <pre>
+     * Outcome of every operation of a multi command, in request order
+     * </pre>
+     */
+    java.util.List<? extends ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.ResultOrBuilder> 
+        getResultsOrBuilderList();
+    /**
+     * <code>repeated .KVResponse.Result results = 7;</code>
+     *
+     * <pre>
+     * Outcome of every operation of a multi command, in request order
+     * </pre>
+     */
+    ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.ResultOrBuilder getResultsOrBuilder(
+        int index);
   }
   /**
    * Protobuf type {@code KVResponse}
@@ -148,6 +192,14 @@ public final class KeyValueResponse {
               membershipCount_ = input.readInt32();
               break;
             }
+            case 58: {
+              if (!((mutable_bitField0_ & 0x00000040) == 0x00000040)) {
+                results_ = new java.util.ArrayList<ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result>();
+                mutable_bitField0_ |= 0x00000040;
+              }
+              results_.add(input.readMessage(ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result.PARSER, extensionRegistry));
+              break;
+            }
           }
         }
       } catch (com.google.protobuf.InvalidProtocolBufferException e) {
@@ -156,6 +208,9 @@ public final class KeyValueResponse {
         throw new com.google.protobuf.InvalidProtocolBufferException(
             e.getMessage()).setUnfinishedMessage(this);
       } finally {
+        if (((mutable_bitField0_ & 0x00000040) == 0x00000040)) {
+          results_ = java.util.Collections.unmodifiableList(results_);
+        }
         this.unknownFields = unknownFields.build();
         makeExtensionsImmutable();
       }
@@ -187,6 +242,570 @@ public final class KeyValueResponse {
       return PARSER;
     }
 
+    public interface ResultOrBuilder extends
+        // @@protoc_insertion_point(interface_extends:KVResponse.Result)
+        com.google.protobuf.MessageOrBuilder {
+
+      /**
+       * <code>required uint32 errCode = 1;</code>
+       */
+      boolean hasErrCode();
+      /**
+       * <code>required uint32 errCode = 1;</code>
+       */
+      int getErrCode();
+
+      /**
+       * <code>optional bytes value = 2;</code>
+       */
+      boolean hasValue();
+      /**
+       * <code>optional bytes value = 2;</code>
+       */
+      com.google.protobuf.ByteString getValue();
+
+      /**
+       * <code>optional int32 version = 3;</code>
+       */
+      boolean hasVersion();
+      /**
+       * <code>optional int32 version = 3;</code>
+       */
+      int getVersion();
+    }
+    /**
+     * Protobuf type {@code KVResponse.Result}
+     */
+    public static final class Result extends
+        com.google.protobuf.GeneratedMessage implements
+        // @@protoc_insertion_point(message_implements:KVResponse.Result)
+        ResultOrBuilder {
+      // Use Result.newBuilder() to construct.
+      private Result(com.google.protobuf.GeneratedMessage.Builder<?> builder) {
+        super(builder);
+        this.unknownFields = builder.getUnknownFields();
+      }
+      private Result(boolean noInit) { this.unknownFields = com.google.protobuf.UnknownFieldSet.getDefaultInstance(); }
+
+      private static final Result defaultInstance;
+      public static Result getDefaultInstance() {
+        return defaultInstance;
+      }
+
+      public Result getDefaultInstanceForType() {
+        return defaultInstance;
+      }
+
+      private final com.google.protobuf.UnknownFieldSet unknownFields;
+      @java.lang.Override
+      public final com.google.protobuf.UnknownFieldSet
+          getUnknownFields() {
+        return this.unknownFields;
+      }
+      private Result(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws com.google.protobuf.InvalidProtocolBufferException {
+        initFields();
+        int mutable_bitField0_ = 0;
+        com.google.protobuf.UnknownFieldSet.Builder unknownFields =
+            com.google.protobuf.UnknownFieldSet.newBuilder();
+        try {
+          boolean done = false;
+          while (!done) {
+            int tag = input.readTag();
+            switch (tag) {
+              case 0:
+                done = true;
+                break;
+              default: {
+                if (!parseUnknownField(input, unknownFields,
+                                       extensionRegistry, tag)) {
+                  done = true;
+                }
+                break;
+              }
+              case 8: {
+                bitField0_ |= 0x00000001;
+                errCode_ = input.readUInt32();
+                break;
+              }
+              case 18: {
+                bitField0_ |= 0x00000002;
+                value_ = input.readBytes();
+                break;
+              }
+              case 24: {
+                bitField0_ |= 0x00000004;
+                version_ = input.readInt32();
+                break;
+              }
+            }
+          }
+        } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+          throw e.setUnfinishedMessage(this);
+        } catch (java.io.IOException e) {
+          throw new com.google.protobuf.InvalidProtocolBufferException(
+              e.getMessage()).setUnfinishedMessage(this);
+        } finally {
+          this.unknownFields = unknownFields.build();
+          makeExtensionsImmutable();
+        }
+      }
+      public static final com.google.protobuf.Descriptors.Descriptor
+          getDescriptor() {
+        return ca.NetSysLab.ProtocolBuffers.KeyValueResponse.internal_static_KVResponse_Result_descriptor;
+      }
+
+      protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+          internalGetFieldAccessorTable() {
+        return ca.NetSysLab.ProtocolBuffers.KeyValueResponse.internal_static_KVResponse_Result_fieldAccessorTable
+            .ensureFieldAccessorsInitialized(
+                ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result.class, ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result.Builder.class);
+      }
+
+      public static com.google.protobuf.Parser<Result> PARSER =
+          new com.google.protobuf.AbstractParser<Result>() {
+        public Result parsePartialFrom(
+            com.google.protobuf.CodedInputStream input,
+            com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+            throws com.google.protobuf.InvalidProtocolBufferException {
+          return new Result(input, extensionRegistry);
+        }
+      };
+
+      @java.lang.Override
+      public com.google.protobuf.Parser<Result> getParserForType() {
+        return PARSER;
+      }
+
+      private int bitField0_;
+      public static final int ERRCODE_FIELD_NUMBER = 1;
+      private int errCode_;
+      /**
+       * <code>required uint32 errCode = 1;</code>
+       */
+      public boolean hasErrCode() {
+        return ((bitField0_ & 0x00000001) == 0x00000001);
+      }
+      /**
+       * <code>required uint32 errCode = 1;</code>
+       */
+      public int getErrCode() {
+        return errCode_;
+      }
+
+      public static final int VALUE_FIELD_NUMBER = 2;
+      private com.google.protobuf.ByteString value_;
+      /**
+       * <code>optional bytes value = 2;</code>
+       */
+      public boolean hasValue() {
+        return ((bitField0_ & 0x00000002) == 0x00000002);
+      }
+      /**
+       * <code>optional bytes value = 2;</code>
+       */
+      public com.google.protobuf.ByteString getValue() {
+        return value_;
+      }
+
+      public static final int VERSION_FIELD_NUMBER = 3;
+      private int version_;
+      /**
+       * <code>optional int32 version = 3;</code>
+       */
+      public boolean hasVersion() {
+        return ((bitField0_ & 0x00000004) == 0x00000004);
+      }
+      /**
+       * <code>optional int32 version = 3;</code>
+       */
+      public int getVersion() {
+        return version_;
+      }
+
+      private void initFields() {
+        errCode_ = 0;
+        value_ = com.google.protobuf.ByteString.EMPTY;
+        version_ = 0;
+      }
+      private byte memoizedIsInitialized = -1;
+      public final boolean isInitialized() {
+        byte isInitialized = memoizedIsInitialized;
+        if (isInitialized == 1) return true;
+        if (isInitialized == 0) return false;
+
+        if (!hasErrCode()) {
+          memoizedIsInitialized = 0;
+          return false;
+        }
+        memoizedIsInitialized = 1;
+        return true;
+      }
+
+      public void writeTo(com.google.protobuf.CodedOutputStream output)
+                          throws java.io.IOException {
+        getSerializedSize();
+        if (((bitField0_ & 0x00000001) == 0x00000001)) {
+          output.writeUInt32(1, errCode_);
+        }
+        if (((bitField0_ & 0x00000002) == 0x00000002)) {
+          output.writeBytes(2, value_);
+        }
+        if (((bitField0_ & 0x00000004) == 0x00000004)) {
+          output.writeInt32(3, version_);
+        }
+        getUnknownFields().writeTo(output);
+      }
+
+      private int memoizedSerializedSize = -1;
+      public int getSerializedSize() {
+        int size = memoizedSerializedSize;
+        if (size != -1) return size;
+
+        size = 0;
+        if (((bitField0_ & 0x00000001) == 0x00000001)) {
+          size += com.google.protobuf.CodedOutputStream
+            .computeUInt32Size(1, errCode_);
+        }
+        if (((bitField0_ & 0x00000002) == 0x00000002)) {
+          size += com.google.protobuf.CodedOutputStream
+            .computeBytesSize(2, value_);
+        }
+        if (((bitField0_ & 0x00000004) == 0x00000004)) {
+          size += com.google.protobuf.CodedOutputStream
+            .computeInt32Size(3, version_);
+        }
+        size += getUnknownFields().getSerializedSize();
+        memoizedSerializedSize = size;
+        return size;
+      }
+
+      private static final long serialVersionUID = 0L;
+      @java.lang.Override
+      protected java.lang.Object writeReplace()
+          throws java.io.ObjectStreamException {
+        return super.writeReplace();
+      }
+
+      public static ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result parseFrom(
+          com.google.protobuf.ByteString data)
+          throws com.google.protobuf.InvalidProtocolBufferException {
+        return PARSER.parseFrom(data);
+      }
+      public static ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result parseFrom(
+          com.google.protobuf.ByteString data,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws com.google.protobuf.InvalidProtocolBufferException {
+        return PARSER.parseFrom(data, extensionRegistry);
+      }
+      public static ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result parseFrom(byte[] data)
+          throws com.google.protobuf.InvalidProtocolBufferException {
+        return PARSER.parseFrom(data);
+      }
+      public static ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result parseFrom(
+          byte[] data,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws com.google.protobuf.InvalidProtocolBufferException {
+        return PARSER.parseFrom(data, extensionRegistry);
+      }
+      public static ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result parseFrom(java.io.InputStream input)
+          throws java.io.IOException {
+        return PARSER.parseFrom(input);
+      }
+      public static ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result parseFrom(
+          java.io.InputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws java.io.IOException {
+        return PARSER.parseFrom(input, extensionRegistry);
+      }
+      public static ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result parseDelimitedFrom(java.io.InputStream input)
+          throws java.io.IOException {
+        return PARSER.parseDelimitedFrom(input);
+      }
+      public static ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result parseDelimitedFrom(
+          java.io.InputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws java.io.IOException {
+        return PARSER.parseDelimitedFrom(input, extensionRegistry);
+      }
+      public static ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result parseFrom(
+          com.google.protobuf.CodedInputStream input)
+          throws java.io.IOException {
+        return PARSER.parseFrom(input);
+      }
+      public static ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result parseFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws java.io.IOException {
+        return PARSER.parseFrom(input, extensionRegistry);
+      }
+
+      public static Builder newBuilder() { return Builder.create(); }
+      public Builder newBuilderForType() { return newBuilder(); }
+      public static Builder newBuilder(ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result prototype) {
+        return newBuilder().mergeFrom(prototype);
+      }
+      public Builder toBuilder() { return newBuilder(this); }
+
+      @java.lang.Override
+      protected Builder newBuilderForType(
+          com.google.protobuf.GeneratedMessage.BuilderParent parent) {
+        Builder builder = new Builder(parent);
+        return builder;
+      }
+      /**
+       * Protobuf type {@code KVResponse.Result}
+       */
+      public static final class Builder extends
+          com.google.protobuf.GeneratedMessage.Builder<Builder> implements
+          // @@protoc_insertion_point(builder_implements:KVResponse.Result)
+          ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.ResultOrBuilder {
+        public static final com.google.protobuf.Descriptors.Descriptor
+            getDescriptor() {
+          return ca.NetSysLab.ProtocolBuffers.KeyValueResponse.internal_static_KVResponse_Result_descriptor;
+        }
+
+        protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+            internalGetFieldAccessorTable() {
+          return ca.NetSysLab.ProtocolBuffers.KeyValueResponse.internal_static_KVResponse_Result_fieldAccessorTable
+              .ensureFieldAccessorsInitialized(
+                  ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result.class, ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result.Builder.class);
+        }
+
+        // Construct using ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result.newBuilder()
+        private Builder() {
+          maybeForceBuilderInitialization();
+        }
+
+        private Builder(
+            com.google.protobuf.GeneratedMessage.BuilderParent parent) {
+          super(parent);
+          maybeForceBuilderInitialization();
+        }
+        private void maybeForceBuilderInitialization() {
+          if (com.google.protobuf.GeneratedMessage.alwaysUseFieldBuilders) {
+          }
+        }
+        private static Builder create() {
+          return new Builder();
+        }
+
+        public Builder clear() {
+          super.clear();
+          errCode_ = 0;
+          bitField0_ = (bitField0_ & ~0x00000001);
+          value_ = com.google.protobuf.ByteString.EMPTY;
+          bitField0_ = (bitField0_ & ~0x00000002);
+          version_ = 0;
+          bitField0_ = (bitField0_ & ~0x00000004);
+          return this;
+        }
+
+        public Builder clone() {
+          return create().mergeFrom(buildPartial());
+        }
+
+        public com.google.protobuf.Descriptors.Descriptor
+            getDescriptorForType() {
+          return ca.NetSysLab.ProtocolBuffers.KeyValueResponse.internal_static_KVResponse_Result_descriptor;
+        }
+
+        public ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result getDefaultInstanceForType() {
+          return ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result.getDefaultInstance();
+        }
+
+        public ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result build() {
+          ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result result = buildPartial();
+          if (!result.isInitialized()) {
+            throw newUninitializedMessageException(result);
+          }
+          return result;
+        }
+
+        public ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result buildPartial() {
+          ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result result = new ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result(this);
+          int from_bitField0_ = bitField0_;
+          int to_bitField0_ = 0;
+          if (((from_bitField0_ & 0x00000001) == 0x00000001)) {
+            to_bitField0_ |= 0x00000001;
+          }
+          result.errCode_ = errCode_;
+          if (((from_bitField0_ & 0x00000002) == 0x00000002)) {
+            to_bitField0_ |= 0x00000002;
+          }
+          result.value_ = value_;
+          if (((from_bitField0_ & 0x00000004) == 0x00000004)) {
+            to_bitField0_ |= 0x00000004;
+          }
+          result.version_ = version_;
+          result.bitField0_ = to_bitField0_;
+          onBuilt();
+          return result;
+        }
+
+        public Builder mergeFrom(com.google.protobuf.Message other) {
+          if (other instanceof ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result) {
+            return mergeFrom((ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result)other);
+          } else {
+            super.mergeFrom(other);
+            return this;
+          }
+        }
+
+        public Builder mergeFrom(ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result other) {
+          if (other == ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result.getDefaultInstance()) return this;
+          if (other.hasErrCode()) {
+            setErrCode(other.getErrCode());
+          }
+          if (other.hasValue()) {
+            setValue(other.getValue());
+          }
+          if (other.hasVersion()) {
+            setVersion(other.getVersion());
+          }
+          this.mergeUnknownFields(other.getUnknownFields());
+          return this;
+        }
+
+        public final boolean isInitialized() {
+          if (!hasErrCode()) {
+            
+            return false;
+          }
+          return true;
+        }
+
+        public Builder mergeFrom(
+            com.google.protobuf.CodedInputStream input,
+            com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+            throws java.io.IOException {
+          ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result parsedMessage = null;
+          try {
+            parsedMessage = PARSER.parsePartialFrom(input, extensionRegistry);
+          } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+            parsedMessage = (ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result) e.getUnfinishedMessage();
+            throw e;
+          } finally {
+            if (parsedMessage != null) {
+              mergeFrom(parsedMessage);
+            }
+          }
+          return this;
+        }
+        private int bitField0_;
+
+        private int errCode_ ;
+        /**
+         * <code>required uint32 errCode = 1;</code>
+         */
+        public boolean hasErrCode() {
+          return ((bitField0_ & 0x00000001) == 0x00000001);
+        }
+        /**
+         * <code>required uint32 errCode = 1;</code>
+         */
+        public int getErrCode() {
+          return errCode_;
+        }
+        /**
+         * <code>required uint32 errCode = 1;</code>
+         */
+        public Builder setErrCode(int value) {
+          bitField0_ |= 0x00000001;
+          errCode_ = value;
+          onChanged();
+          return this;
+        }
+        /**
+         * <code>required uint32 errCode = 1;</code>
+         */
+        public Builder clearErrCode() {
+          bitField0_ = (bitField0_ & ~0x00000001);
+          errCode_ = 0;
+          onChanged();
+          return this;
+        }
+
+        private com.google.protobuf.ByteString value_ = com.google.protobuf.ByteString.EMPTY;
+        /**
+         * <code>optional bytes value = 2;</code>
+         */
+        public boolean hasValue() {
+          return ((bitField0_ & 0x00000002) == 0x00000002);
+        }
+        /**
+         * <code>optional bytes value = 2;</code>
+         */
+        public com.google.protobuf.ByteString getValue() {
+          return value_;
+        }
+        /**
+         * <code>optional bytes value = 2;</code>
+         */
+        public Builder setValue(com.google.protobuf.ByteString value) {
+          if (value == null) {
+    throw new NullPointerException();
+  }
+  bitField0_ |= 0x00000002;
+          value_ = value;
+          onChanged();
+          return this;
+        }
+        /**
+         * <code>optional bytes value = 2;</code>
+         */
+        public Builder clearValue() {
+          bitField0_ = (bitField0_ & ~0x00000002);
+          value_ = getDefaultInstance().getValue();
+          onChanged();
+          return this;
+        }
+
+        private int version_ ;
+        /**
+         * <code>optional int32 version = 3;</code>
+         */
+        public boolean hasVersion() {
+          return ((bitField0_ & 0x00000004) == 0x00000004);
+        }
+        /**
+         * <code>optional int32 version = 3;</code>
+         */
+        public int getVersion() {
+          return version_;
+        }
+        /**
+         * <code>optional int32 version = 3;</code>
+         */
+        public Builder setVersion(int value) {
+          bitField0_ |= 0x00000004;
+          version_ = value;
+          onChanged();
+          return this;
+        }
+        /**
+         * <code>optional int32 version = 3;</code>
+         */
+        public Builder clearVersion() {
+          bitField0_ = (bitField0_ & ~0x00000004);
+          version_ = 0;
+          onChanged();
+          return this;
+        }
+
+        // @@protoc_insertion_point(builder_scope:KVResponse.Result)
+      }
+
+      static {
+        defaultInstance = new Result(true);
+        defaultInstance.initFields();
+      }
+
+      // @@protoc_insertion_point(class_scope:KVResponse.Result)
+    }
+
     private int bitField0_;
     public static final int ERRCODE_FIELD_NUMBER = 1;
     private int errCode_;
@@ -278,6 +897,61 @@ public final class KeyValueResponse {
       return membershipCount_;
     }
 
+    public static final int RESULTS_FIELD_NUMBER = 7;
+    private java.util.List<ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result> results_;
+    /**
+     * <code>repeated .KVResponse.Result results = 7;</code>
+     *
+     * <pre>
+     * Outcome of every operation of a multi command, in request order
+     * </pre>
+     */
+    public java.util.List<ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result> getResultsList() {
+      return results_;
+    }
+    /**
+     * <code>repeated .KVResponse.Result results = 7;</code>
+     *
+     * <pre>
+     * Outcome of every operation of a multi command, in request order
+     * </pre>
+     */
+    public java.util.List<? extends ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.ResultOrBuilder> 
+        getResultsOrBuilderList() {
+      return results_;
+    }
+    /**
+     * <code>repeated .KVResponse.Result results = 7;</code>
+     *
+     * <pre>
+     * Outcome of every operation of a multi command, in request order
+     * </pre>
+     */
+    public int getResultsCount() {
+      return results_.size();
+    }
+    /**
+     * <code>repeated .KVResponse.Result results = 7;</code>
+     *
+     * <pre>
+     * Outcome of every operation of a multi command, in request order
+     * </pre>
+     */
+    public ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result getResults(int index) {
+      return results_.get(index);
+    }
+    /**
+     * <code>repeated .KVResponse.Result results = 7;</code>
+     *
+     * <pre>
+     * Outcome of every operation of a multi command, in request order
+     * </pre>
+     */
+    public ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.ResultOrBuilder getResultsOrBuilder(
+        int index) {
+      return results_.get(index);
+    }
+
     private void initFields() {
       errCode_ = 0;
       value_ = com.google.protobuf.ByteString.EMPTY;
@@ -285,6 +959,7 @@ public final class KeyValueResponse {
       version_ = 0;
       overloadWaitTime_ = 0;
       membershipCount_ = 0;
+      results_ = java.util.Collections.emptyList();
     }
     private byte memoizedIsInitialized = -1;
     public final boolean isInitialized() {
@@ -296,6 +971,12 @@ public final class KeyValueResponse {
         memoizedIsInitialized = 0;
         return false;
       }
+      for (int i = 0; i < getResultsCount(); i++) {
+        if (!getResults(i).isInitialized()) {
+          memoizedIsInitialized = 0;
+          return false;
+        }
+      }
       memoizedIsInitialized = 1;
       return true;
     }
@@ -321,6 +1002,9 @@ public final class KeyValueResponse {
       if (((bitField0_ & 0x00000020) == 0x00000020)) {
         output.writeInt32(6, membershipCount_);
       }
+      for (int i = 0; i < results_.size(); i++) {
+        output.writeMessage(7, results_.get(i));
+      }
       getUnknownFields().writeTo(output);
     }
 
@@ -354,6 +1038,10 @@ public final class KeyValueResponse {
         size += com.google.protobuf.CodedOutputStream
           .computeInt32Size(6, membershipCount_);
       }
+      for (int i = 0; i < results_.size(); i++) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeMessageSize(7, results_.get(i));
+      }
       size += getUnknownFields().getSerializedSize();
       memoizedSerializedSize = size;
       return size;
@@ -463,6 +1151,7 @@ public final class KeyValueResponse {
       }
       private void maybeForceBuilderInitialization() {
         if (com.google.protobuf.GeneratedMessage.alwaysUseFieldBuilders) {
+          getResultsFieldBuilder();
         }
       }
       private static Builder create() {
@@ -483,6 +1172,12 @@ public final class KeyValueResponse {
         bitField0_ = (bitField0_ & ~0x00000010);
         membershipCount_ = 0;
         bitField0_ = (bitField0_ & ~0x00000020);
+        if (resultsBuilder_ == null) {
+          results_ = java.util.Collections.emptyList();
+          bitField0_ = (bitField0_ & ~0x00000040);
+        } else {
+          resultsBuilder_.clear();
+        }
         return this;
       }
 
@@ -535,6 +1230,15 @@ public final class KeyValueResponse {
           to_bitField0_ |= 0x00000020;
         }
         result.membershipCount_ = membershipCount_;
+        if (resultsBuilder_ == null) {
+          if (((bitField0_ & 0x00000040) == 0x00000040)) {
+            results_ = java.util.Collections.unmodifiableList(results_);
+            bitField0_ = (bitField0_ & ~0x00000040);
+          }
+          result.results_ = results_;
+        } else {
+          result.results_ = resultsBuilder_.build();
+        }
         result.bitField0_ = to_bitField0_;
         onBuilt();
         return result;
@@ -569,6 +1273,32 @@ public final class KeyValueResponse {
         if (other.hasMembershipCount()) {
           setMembershipCount(other.getMembershipCount());
         }
+        if (resultsBuilder_ == null) {
+          if (!other.results_.isEmpty()) {
+            if (results_.isEmpty()) {
+              results_ = other.results_;
+              bitField0_ = (bitField0_ & ~0x00000040);
+            } else {
+              ensureResultsIsMutable();
+              results_.addAll(other.results_);
+            }
+            onChanged();
+          }
+        } else {
+          if (!other.results_.isEmpty()) {
+            if (resultsBuilder_.isEmpty()) {
+              resultsBuilder_.dispose();
+              resultsBuilder_ = null;
+              results_ = other.results_;
+              bitField0_ = (bitField0_ & ~0x00000040);
+              resultsBuilder_ = 
+                com.google.protobuf.GeneratedMessage.alwaysUseFieldBuilders ?
+                   getResultsFieldBuilder() : null;
+            } else {
+              resultsBuilder_.addAllMessages(other.results_);
+            }
+          }
+        }
         this.mergeUnknownFields(other.getUnknownFields());
         return this;
       }
@@ -578,6 +1308,12 @@ public final class KeyValueResponse {
           
           return false;
         }
+        for (int i = 0; i < getResultsCount(); i++) {
+          if (!getResults(i).isInitialized()) {
+            
+            return false;
+          }
+        }
         return true;
       }
 
@@ -795,6 +1531,318 @@ public final class KeyValueResponse {
         return this;
       }
 
+      private java.util.List<ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result> results_ =
+        java.util.Collections.emptyList();
+      private void ensureResultsIsMutable() {
+        if (!((bitField0_ & 0x00000040) == 0x00000040)) {
+          results_ = new java.util.ArrayList<ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result>(results_);
+          bitField0_ |= 0x00000040;
+         }
+      }
+
+      private com.google.protobuf.RepeatedFieldBuilder<
+          ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result, ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result.Builder, ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.ResultOrBuilder> resultsBuilder_;
+
+      /**
+       * <code>repeated .KVResponse.Result results = 7;</code>
+       *
+       * <pre>
+       * Outcome of every operation of a multi command, in request order
+       * </pre>
+       */
+      public java.util.List<ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result> getResultsList() {
+        if (resultsBuilder_ == null) {
+          return java.util.Collections.unmodifiableList(results_);
+        } else {
+          return resultsBuilder_.getMessageList();
+        }
+      }
+      /**
+       * <code>repeated .KVResponse.Result results = 7;</code>
+       *
+       * <pre>
+       * Outcome of every operation of a multi command, in request order
+       * </pre>
+       */
+      public int getResultsCount() {
+        if (resultsBuilder_ == null) {
+          return results_.size();
+        } else {
+          return resultsBuilder_.getCount();
+        }
+      }
+      /**
+       * <code>repeated .KVResponse.Result results = 7;</code>
+       *
+       * <pre>
+       * Outcome of every operation of a multi command, in request order
+       * </pre>
+       */
+      public ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result getResults(int index) {
+        if (resultsBuilder_ == null) {
+          return results_.get(index);
+        } else {
+          return resultsBuilder_.getMessage(index);
+        }
+      }
+      /**
+       * <code>repeated .KVResponse.Result results = 7;</code>
+       *
+       * <pre>
+       * Outcome of every operation of a multi command, in request order
+       * </pre>
+       */
+      public Builder setResults(
+          int index, ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result value) {
+        if (resultsBuilder_ == null) {
+          if (value == null) {
+            throw new NullPointerException();
+          }
+          ensureResultsIsMutable();
+          results_.set(index, value);
+          onChanged();
+        } else {
+          resultsBuilder_.setMessage(index, value);
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .KVResponse.Result results = 7;</code>
+       *
+       * <pre>
+       * Outcome of every operation of a multi command, in request order
+       * </pre>
+       */
+      public Builder setResults(
+          int index, ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result.Builder builderForValue) {
+        if (resultsBuilder_ == null) {
+          ensureResultsIsMutable();
+          results_.set(index, builderForValue.build());
+          onChanged();
+        } else {
+          resultsBuilder_.setMessage(index, builderForValue.build());
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .KVResponse.Result results = 7;</code>
+       *
+       * <pre>
+       * Outcome of every operation of a multi command, in request order
+       * </pre>
+       */
+      public Builder addResults(ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result value) {
+        if (resultsBuilder_ == null) {
+          if (value == null) {
+            throw new NullPointerException();
+          }
+          ensureResultsIsMutable();
+          results_.add(value);
+          onChanged();
+        } else {
+          resultsBuilder_.addMessage(value);
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .KVResponse.Result results = 7;</code>
+       *
+       * <pre>
+       * Outcome of every operation of a multi command, in request order
+       * </pre>
+       */
+      public Builder addResults(
+          int index, ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result value) {
+        if (resultsBuilder_ == null) {
+          if (value == null) {
+            throw new NullPointerException();
+          }
+          ensureResultsIsMutable();
+          results_.add(index, value);
+          onChanged();
+        } else {
+          resultsBuilder_.addMessage(index, value);
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .KVResponse.Result results = 7;</code>
+       *
+       * <pre>
+       * Outcome of every operation of a multi command, in request order
+       * </pre>
+       */
+      public Builder addResults(
+          ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result.Builder builderForValue) {
+        if (resultsBuilder_ == null) {
+          ensureResultsIsMutable();
+          results_.add(builderForValue.build());
+          onChanged();
+        } else {
+          resultsBuilder_.addMessage(builderForValue.build());
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .KVResponse.Result results = 7;</code>
+       *
+       * <pre>
+       * Outcome of every operation of a multi command, in request order
+       * </pre>
+       */
+      public Builder addResults(
+          int index, ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result.Builder builderForValue) {
+        if (resultsBuilder_ == null) {
+          ensureResultsIsMutable();
+          results_.add(index, builderForValue.build());
+          onChanged();
+        } else {
+          resultsBuilder_.addMessage(index, builderForValue.build());
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .KVResponse.Result results = 7;</code>
+       *
+       * <pre>
+       * Outcome of every operation of a multi command, in request order
+       * </pre>
+       */
+      public Builder addAllResults(
+          java.lang.Iterable<? extends ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result> values) {
+        if (resultsBuilder_ == null) {
+          ensureResultsIsMutable();
+          com.google.protobuf.AbstractMessageLite.Builder.addAll(
+              values, results_);
+          onChanged();
+        } else {
+          resultsBuilder_.addAllMessages(values);
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .KVResponse.Result results = 7;</code>
+       *
+       * <pre>
+       * Outcome of every operation of a multi command, in request order
+       * </pre>
+       */
+      public Builder clearResults() {
+        if (resultsBuilder_ == null) {
+          results_ = java.util.Collections.emptyList();
+          bitField0_ = (bitField0_ & ~0x00000040);
+          onChanged();
+        } else {
+          resultsBuilder_.clear();
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .KVResponse.Result results = 7;</code>
+       *
+       * <pre>
+       * Outcome of every operation of a multi command, in request order
+       * </pre>
+       */
+      public Builder removeResults(int index) {
+        if (resultsBuilder_ == null) {
+          ensureResultsIsMutable();
+          results_.remove(index);
+          onChanged();
+        } else {
+          resultsBuilder_.remove(index);
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .KVResponse.Result results = 7;</code>
+       *
+       * <pre>
+       * Outcome of every operation of a multi command, in request order
+       * </pre>
+       */
+      public ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result.Builder getResultsBuilder(
+          int index) {
+        return getResultsFieldBuilder().getBuilder(index);
+      }
+      /**
+       * <code>repeated .KVResponse.Result results = 7;</code>
+       *
+       * <pre>
+       * Outcome of every operation of a multi command, in request order
+       * </pre>
+       */
+      public ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.ResultOrBuilder getResultsOrBuilder(
+          int index) {
+        if (resultsBuilder_ == null) {
+          return results_.get(index);  } else {
+          return resultsBuilder_.getMessageOrBuilder(index);
+        }
+      }
+      /**
+       * <code>repeated .KVResponse.Result results = 7;</code>
+       *
+       * <pre>
+       * Outcome of every operation of a multi command, in request order
+       * </pre>
+       */
+      public java.util.List<? extends ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.ResultOrBuilder> 
+           getResultsOrBuilderList() {
+        if (resultsBuilder_ != null) {
+          return resultsBuilder_.getMessageOrBuilderList();
+        } else {
+          return java.util.Collections.unmodifiableList(results_);
+        }
+      }
+      /**
+       * <code>repeated .KVResponse.Result results = 7;</code>
+       *
+       * <pre>
+       * Outcome of every operation of a multi command, in request order
+       * </pre>
+       */
+      public ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result.Builder addResultsBuilder() {
+        return getResultsFieldBuilder().addBuilder(
+            ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result.getDefaultInstance());
+      }
+      /**
+       * <code>repeated .KVResponse.Result results = 7;</code>
+       *
+       * <pre>
+       * Outcome of every operation of a multi command, in request order
+       * </pre>
+       */
+      public ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result.Builder addResultsBuilder(
+          int index) {
+        return getResultsFieldBuilder().addBuilder(
+            index, ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result.getDefaultInstance());
+      }
+      /**
+       * <code>repeated .KVResponse.Result results = 7;</code>
+       *
+       * <pre>
+       * Outcome of every operation of a multi command, in request order
+       * </pre>
+       */
+      public java.util.List<ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result.Builder> 
+           getResultsBuilderList() {
+        return getResultsFieldBuilder().getBuilderList();
+      }
+      private com.google.protobuf.RepeatedFieldBuilder<
+          ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result, ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result.Builder, ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.ResultOrBuilder> 
+          getResultsFieldBuilder() {
+        if (resultsBuilder_ == null) {
+          resultsBuilder_ = new com.google.protobuf.RepeatedFieldBuilder<
+              ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result, ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.Result.Builder, ca.NetSysLab.ProtocolBuffers.KeyValueResponse.KVResponse.ResultOrBuilder>(
+                  results_,
+                  ((bitField0_ & 0x00000040) == 0x00000040),
+                  getParentForChildren(),
+                  isClean());
+          results_ = null;
+        }
+        return resultsBuilder_;
+      }
+
       // @@protoc_insertion_point(builder_scope:KVResponse)
     }
 
@@ -811,6 +1859,11 @@ public final class KeyValueResponse {
   private static
     com.google.protobuf.GeneratedMessage.FieldAccessorTable
       internal_static_KVResponse_fieldAccessorTable;
+  private static final com.google.protobuf.Descriptors.Descriptor
+    internal_static_KVResponse_Result_descriptor;
+  private static
+    com.google.protobuf.GeneratedMessage.FieldAccessorTable
+      internal_static_KVResponse_Result_fieldAccessorTable;
 
   public static com.google.protobuf.Descriptors.FileDescriptor
       getDescriptor() {
@@ -820,12 +1873,14 @@ public final class KeyValueResponse {
       descriptor;
   static {
     java.lang.String[] descriptorData = {
-      "\n\026KeyValueResponse.proto\"}\n\nKVResponse\022\017" +
-      "\n\007errCode\030\001 \002(\r\022\r\n\005value\030\002 \001(\014\022\013\n\003pid\030\003 " +
-      "\001(\005\022\017\n\007version\030\004 \001(\005\022\030\n\020overloadWaitTime" +
-      "\030\005 \001(\005\022\027\n\017membershipCount\030\006 \001(\005B0\n\034ca.Ne" +
-      "tSysLab.ProtocolBuffersB\020KeyValueRespons" +
-      "e"
+      "\n\026KeyValueResponse.proto\"\335\001\n\nKVResponse\022" +
+      "\017\n\007errCode\030\001 \002(\r\022\r\n\005value\030\002 \001(\014\022\013\n\003pid\030\003" +
+      " \001(\005\022\017\n\007version\030\004 \001(\005\022\030\n\020overloadWaitTim" +
+      "e\030\005 \001(\005\022\027\n\017membershipCount\030\006 \001(\005\022#\n\007resu" +
+      "lts\030\007 \003(\0132\022.KVResponse.Result\0329\n\006Result\022" +
+      "\017\n\007errCode\030\001 \002(\r\022\r\n\005value\030\002 \001(\014\022\017\n\007versi" +
+      "on\030\003 \001(\005B0\n\034ca.NetSysLab.ProtocolBuffers" +
+      "B\020KeyValueResponse"
     };
     com.google.protobuf.Descriptors.FileDescriptor.InternalDescriptorAssigner assigner =
         new com.google.protobuf.Descriptors.FileDescriptor.    InternalDescriptorAssigner() {
@@ -844,7 +1899,13 @@ public final class KeyValueResponse {
     internal_static_KVResponse_fieldAccessorTable = new
       com.google.protobuf.GeneratedMessage.FieldAccessorTable(
         internal_static_KVResponse_descriptor,
-        new java.lang.String[] { "ErrCode", "Value", "Pid", "Version", "OverloadWaitTime", "MembershipCount", });
+        new java.lang.String[] { "ErrCode", "Value", "Pid", "Version", "OverloadWaitTime", "MembershipCount", "Results", });
+    internal_static_KVResponse_Result_descriptor =
+      internal_static_KVResponse_descriptor.getNestedTypes().get(0);
+    internal_static_KVResponse_Result_fieldAccessorTable = new
+      com.google.protobuf.GeneratedMessage.FieldAccessorTable(
+        internal_static_KVResponse_Result_descriptor,
+        new java.lang.String[] { "ErrCode", "Value", "Version", });
   }
 
   // @@protoc_insertion_point(outer_class_scope)
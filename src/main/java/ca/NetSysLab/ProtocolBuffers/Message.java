@@ -38,6 +38,34 @@ public final class Message {
      * <code>required fixed64 checkSum = 3;</code>
      */
     long getCheckSum();
+
+    /**
+     * <code>optional bytes clientAddress = 4;</code>
+     *
+     * <pre>
+     * Set by a node forwarding a request to the node owning its key, so the
+     * owner replies to the client directly
+     * </pre>
+     */
+    boolean hasClientAddress();
+    /**
+     * <code>optional bytes clientAddress = 4;</code>
+     *
+     * <pre>
+     * Set by a node forwarding a request to the node owning its key, so the
+     * owner replies to the client directly
+     * </pre>
+     */
+    com.google.protobuf.ByteString getClientAddress();
+
+    /**
+     * <code>optional uint32 clientPort = 5;</code>
+     */
+    boolean hasClientPort();
+    /**
+     * <code>optional uint32 clientPort = 5;</code>
+     */
+    int getClientPort();
   }
   /**
    * Protobuf type {@code Msg}
@@ -106,6 +134,16 @@ public final class Message {
               checkSum_ = input.readFixed64();
               break;
             }
+            case 34: {
+              bitField0_ |= 0x00000008;
+              clientAddress_ = input.readBytes();
+              break;
+            }
+            case 40: {
+              bitField0_ |= 0x00000010;
+              clientPort_ = input.readUInt32();
+              break;
+            }
           }
         }
       } catch (com.google.protobuf.InvalidProtocolBufferException e) {
@@ -191,10 +229,52 @@ public final class Message {
       return checkSum_;
     }
 
+    public static final int CLIENTADDRESS_FIELD_NUMBER = 4;
+    private com.google.protobuf.ByteString clientAddress_;
+    /**
+     * <code>optional bytes clientAddress = 4;</code>
+     *
+     * <pre>
+     * Set by a node forwarding a request to the node owning its key, so the
+     * owner replies to the client directly
+     * </pre>
+     */
+    public boolean hasClientAddress() {
+      return ((bitField0_ & 0x00000008) == 0x00000008);
+    }
+    /**
+     * <code>optional bytes clientAddress = 4;</code>
+     *
+     * <pre>
+     * Set by a node forwarding a request to the node owning its key, so the
+     * owner replies to the client directly
+     * </pre>
+     */
+    public com.google.protobuf.ByteString getClientAddress() {
+      return clientAddress_;
+    }
+
+    public static final int CLIENTPORT_FIELD_NUMBER = 5;
+    private int clientPort_;
+    /**
+     * <code>optional uint32 clientPort = 5;</code>
+     */
+    public boolean hasClientPort() {
+      return ((bitField0_ & 0x00000010) == 0x00000010);
+    }
+    /**
+     * <code>optional uint32 clientPort = 5;</code>
+     */
+    public int getClientPort() {
+      return clientPort_;
+    }
+
     private void initFields() {
       messageID_ = com.google.protobuf.ByteString.EMPTY;
       payload_ = com.google.protobuf.ByteString.EMPTY;
       checkSum_ = 0L;
+      clientAddress_ = com.google.protobuf.ByteString.EMPTY;
+      clientPort_ = 0;
     }
     private byte memoizedIsInitialized = -1;
     public final boolean isInitialized() {
@@ -230,6 +310,12 @@ public final class Message {
       if (((bitField0_ & 0x00000004) == 0x00000004)) {
         output.writeFixed64(3, checkSum_);
       }
+      if (((bitField0_ & 0x00000008) == 0x00000008)) {
+        output.writeBytes(4, clientAddress_);
+      }
+      if (((bitField0_ & 0x00000010) == 0x00000010)) {
+        output.writeUInt32(5, clientPort_);
+      }
       getUnknownFields().writeTo(output);
     }
 
@@ -251,6 +337,14 @@ public final class Message {
         size += com.google.protobuf.CodedOutputStream
           .computeFixed64Size(3, checkSum_);
       }
+      if (((bitField0_ & 0x00000008) == 0x00000008)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeBytesSize(4, clientAddress_);
+      }
+      if (((bitField0_ & 0x00000010) == 0x00000010)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeUInt32Size(5, clientPort_);
+      }
       size += getUnknownFields().getSerializedSize();
       memoizedSerializedSize = size;
       return size;
@@ -374,6 +468,10 @@ public final class Message {
         bitField0_ = (bitField0_ & ~0x00000002);
         checkSum_ = 0L;
         bitField0_ = (bitField0_ & ~0x00000004);
+        clientAddress_ = com.google.protobuf.ByteString.EMPTY;
+        bitField0_ = (bitField0_ & ~0x00000008);
+        clientPort_ = 0;
+        bitField0_ = (bitField0_ & ~0x00000010);
         return this;
       }
 
@@ -414,6 +512,14 @@ public final class Message {
           to_bitField0_ |= 0x00000004;
         }
         result.checkSum_ = checkSum_;
+        if (((from_bitField0_ & 0x00000008) == 0x00000008)) {
+          to_bitField0_ |= 0x00000008;
+        }
+        result.clientAddress_ = clientAddress_;
+        if (((from_bitField0_ & 0x00000010) == 0x00000010)) {
+          to_bitField0_ |= 0x00000010;
+        }
+        result.clientPort_ = clientPort_;
         result.bitField0_ = to_bitField0_;
         onBuilt();
         return result;
@@ -439,6 +545,12 @@ public final class Message {
         if (other.hasCheckSum()) {
           setCheckSum(other.getCheckSum());
         }
+        if (other.hasClientAddress()) {
+          setClientAddress(other.getClientAddress());
+        }
+        if (other.hasClientPort()) {
+          setClientPort(other.getClientPort());
+        }
         this.mergeUnknownFields(other.getUnknownFields());
         return this;
       }
@@ -580,6 +692,93 @@ public final class Message {
         return this;
       }
 
+      private com.google.protobuf.ByteString clientAddress_ = com.google.protobuf.ByteString.EMPTY;
+      /**
+       * <code>optional bytes clientAddress = 4;</code>
+       *
+       * <pre>
+       * Set by a node forwarding a request to the node owning its key, so the
+       * owner replies to the client directly
+       * </pre>
+       */
+      public boolean hasClientAddress() {
+        return ((bitField0_ & 0x00000008) == 0x00000008);
+      }
+      /**
+       * <code>optional bytes clientAddress = 4;</code>
+       *
+       * <pre>
+       * Set by a node forwarding a request to the node owning its key, so the
+       * owner replies to the client directly
+       * </pre>
+       */
+      public com.google.protobuf.ByteString getClientAddress() {
+        return clientAddress_;
+      }
+      /**
+       * <code>optional bytes clientAddress = 4;</code>
+       *
+       * <pre>
+       * Set by a node forwarding a request to the node owning its key, so the
+       * owner replies to the client directly
+       * </pre>
+       */
+      public Builder setClientAddress(com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  bitField0_ |= 0x00000008;
+        clientAddress_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional bytes clientAddress = 4;</code>
+       *
+       * <pre>
+       * Set by a node forwarding a request to the node owning its key, so the
+       * owner replies to the client directly
+       * </pre>
+       */
+      public Builder clearClientAddress() {
+        bitField0_ = (bitField0_ & ~0x00000008);
+        clientAddress_ = getDefaultInstance().getClientAddress();
+        onChanged();
+        return this;
+      }
+
+      private int clientPort_ ;
+      /**
+       * <code>optional uint32 clientPort = 5;</code>
+       */
+      public boolean hasClientPort() {
+        return ((bitField0_ & 0x00000010) == 0x00000010);
+      }
+      /**
+       * <code>optional uint32 clientPort = 5;</code>
+       */
+      public int getClientPort() {
+        return clientPort_;
+      }
+      /**
+       * <code>optional uint32 clientPort = 5;</code>
+       */
+      public Builder setClientPort(int value) {
+        bitField0_ |= 0x00000010;
+        clientPort_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional uint32 clientPort = 5;</code>
+       */
+      public Builder clearClientPort() {
+        bitField0_ = (bitField0_ & ~0x00000010);
+        clientPort_ = 0;
+        onChanged();
+        return this;
+      }
+
       // @@protoc_insertion_point(builder_scope:Msg)
     }
 
@@ -605,9 +804,10 @@ public final class Message {
       descriptor;
   static {
     java.lang.String[] descriptorData = {
-      "\n\rMessage.proto\";\n\003Msg\022\021\n\tmessageID\030\001 \002(" +
-      "\014\022\017\n\007payload\030\002 \002(\014\022\020\n\010checkSum\030\003 \002(\006B\'\n\034" +
-      "ca.NetSysLab.ProtocolBuffersB\007Message"
+      "\n\rMessage.proto\"f\n\003Msg\022\021\n\tmessageID\030\001 \002(" +
+      "\014\022\017\n\007payload\030\002 \002(\014\022\020\n\010checkSum\030\003 \002(\006\022\025\n\r" +
+      "clientAddress\030\004 \001(\014\022\022\n\nclientPort\030\005 \001(\rB" +
+      "\'\n\034ca.NetSysLab.ProtocolBuffersB\007Message"
     };
     com.google.protobuf.Descriptors.FileDescriptor.InternalDescriptorAssigner assigner =
         new com.google.protobuf.Descriptors.FileDescriptor.    InternalDescriptorAssigner() {
@@ -626,7 +826,7 @@ public final class Message {
     internal_static_Msg_fieldAccessorTable = new
       com.google.protobuf.GeneratedMessage.FieldAccessorTable(
         internal_static_Msg_descriptor,
-        new java.lang.String[] { "MessageID", "Payload", "CheckSum", });
+        new java.lang.String[] { "MessageID", "Payload", "CheckSum", "ClientAddress", "ClientPort", });
   }
 
   // @@protoc_insertion_point(outer_class_scope)
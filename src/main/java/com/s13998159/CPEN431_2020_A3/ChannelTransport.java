@@ -0,0 +1,117 @@
+package com.s13998159.CPEN431_2020_A3;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketOption;
+import java.net.StandardProtocolFamily;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+
+/**
+ * Transport over non-blocking java.nio DatagramChannels with direct buffers.
+ * Replies leave from the bound server port rather than an ephemeral one.
+ *
+ * Where the platform supports SO_REUSEPORT, several channels are bound to the
+ * same port and the kernel spreads incoming datagrams over them; every
+ * channel is a lane with its own Selector and receiving thread.
+ */
+class ChannelTransport implements Transport {
+    private final DatagramChannel[] channels;
+    private final Selector[] selectors;
+    /* Direct receive buffer of each lane, only used by that lane's thread */
+    private final ByteBuffer[] recv_bufs;
+
+    /**
+     * @param port port to bind every channel to
+     * @param count number of channels wanted, reduced to one if the platform
+     *              cannot bind several to the same port
+     */
+    ChannelTransport(int port, int count) throws IOException {
+        if (count > 1 && findReusePort() == null) {
+            Log.error("SO_REUSEPORT unsupported, using a single channel");
+            count = 1;
+        }
+
+        channels = new DatagramChannel[count];
+        selectors = new Selector[count];
+        recv_bufs = new ByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            channels[i] = DatagramChannel.open(StandardProtocolFamily.INET);
+            if (count > 1)
+                channels[i].setOption(findReusePort(), true);
+            channels[i].bind(new InetSocketAddress(port));
+            channels[i].configureBlocking(false);
+
+            selectors[i] = Selector.open();
+            channels[i].register(selectors[i], SelectionKey.OP_READ);
+            recv_bufs[i] = ByteBuffer.allocateDirect(RequestContext.BUFFER_SIZE);
+        }
+    }
+
+    /*
+     * SO_REUSEPORT only exists in StandardSocketOptions from Java 9 on, so
+     * look it up among the options the platform supports
+     */
+    @SuppressWarnings("unchecked")
+    private static SocketOption<Boolean> findReusePort() throws IOException {
+        try (DatagramChannel probe = DatagramChannel.open()) {
+            for (SocketOption<?> option : probe.supportedOptions()) {
+                if (option.name().equals("SO_REUSEPORT"))
+                    return (SocketOption<Boolean>) option;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public int lanes() {
+        return channels.length;
+    }
+
+    @Override
+    public void receive(int lane, RequestContext ctx) throws IOException {
+        /* Only wait on the selector when nothing is queued already */
+        while (!poll(lane, ctx)) {
+            selectors[lane].select();
+            selectors[lane].selectedKeys().clear();
+        }
+    }
+
+    @Override
+    public boolean poll(int lane, RequestContext ctx) throws IOException {
+        ByteBuffer buf = recv_bufs[lane];
+        buf.clear();
+        InetSocketAddress source =
+                (InetSocketAddress) channels[lane].receive(buf);
+        if (source == null)
+            return false;
+
+        buf.flip();
+        ctx.length = buf.remaining();
+        buf.get(ctx.data, 0, ctx.length);
+        ctx.source = source;
+        ctx.address = source.getAddress();
+        ctx.port = source.getPort();
+        ctx.lane = lane;
+        return true;
+    }
+
+    @Override
+    public boolean send(RequestContext ctx, int length) throws IOException {
+        if (ctx.send_direct == null)
+            ctx.send_direct = ByteBuffer.allocateDirect(RequestContext.BUFFER_SIZE);
+
+        ByteBuffer buf = ctx.send_direct;
+        buf.clear();
+        buf.put(ctx.send_buf, 0, length);
+        buf.flip();
+
+        InetSocketAddress target = ctx.source;
+        if (target == null)
+            target = new InetSocketAddress(ctx.address, ctx.port);
+        /* A full socket buffer drops the reply, as UDP would */
+        return channels[ctx.lane].send(buf, target) != 0;
+    }
+}
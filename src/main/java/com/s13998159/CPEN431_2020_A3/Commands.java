@@ -9,4 +9,47 @@ public class Commands {
     static final int isAlive  = 6;
     static final int GetPID   = 7;
     static final int GetMembershipCount = 8;
+
+    /* Sent between nodes: apply an update or a lookup to the local copy of a
+     * key only, keeping the highest version on conflicts */
+    static final int ReplicaPut    = 0x21;
+    static final int ReplicaGet    = 0x22;
+    static final int ReplicaRemove = 0x23;
+
+    /* Many operations on different keys in one datagram, each with its own
+     * result; see the entries of KVRequest and results of KVResponse */
+    static final int MultiPut      = 0x24;
+    static final int MultiGet      = 0x25;
+    static final int MultiRemove   = 0x26;
+
+    /* Whether a command is cheap and answered ahead of queued data requests,
+     * so health checks get through to a saturated server */
+    static boolean isControl(int command) {
+        return command == isAlive || command == GetPID ||
+               command == GetMembershipCount || command == Shutdown;
+    }
+
+    /* Whether a command is sent by a coordinating member, which is waiting
+     * for it while holding one of its own workers */
+    static boolean isReplica(int command) {
+        return command == ReplicaPut || command == ReplicaGet ||
+               command == ReplicaRemove;
+    }
+
+    static boolean isMulti(int command) {
+        return command == MultiPut || command == MultiGet ||
+               command == MultiRemove;
+    }
+
+    /* Command of a single operation of a multi command */
+    static int single(int multi) {
+        switch (multi) {
+            case MultiPut:
+                return Put;
+            case MultiGet:
+                return Get;
+            default:
+                return Remove;
+        }
+    }
 }
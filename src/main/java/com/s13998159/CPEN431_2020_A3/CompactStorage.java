@@ -0,0 +1,176 @@
+package com.s13998159.CPEN431_2020_A3;
+
+import com.google.protobuf.ByteString;
+
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Storage engine with no per-key objects at all. Keys live inline in
+ * KeyTables, next to a handle of where the value is in a SlabArena, so the
+ * heap holds only a few large arrays per stripe. Striping works as in
+ * StripedStorage.
+ *
+ * The tables account for their own arrays in the MemoryBudget as they grow;
+ * the arena keeps count of the value bytes.
+ */
+class CompactStorage implements KVStorage {
+    private final SlabArena arena;
+    private final KeyTable[] stripes;
+    private final ReadWriteLock[] locks;
+    private final int mask;
+
+    /**
+     * @param concurrency expected number of threads accessing the storage
+     * @param capacity maximum number of bytes of values to keep off-heap
+     * @param budget accounts for the heap bytes of the tables
+     */
+    CompactStorage(int concurrency, long capacity, MemoryBudget budget) {
+        arena = new SlabArena(capacity);
+        int count = Integer.highestOneBit(Math.max(1, concurrency * 4) - 1) << 1;
+        stripes = new KeyTable[count];
+        locks = new ReadWriteLock[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new KeyTable(budget);
+            locks[i] = new ReentrantReadWriteLock();
+        }
+        mask = count - 1;
+    }
+
+    /* The tables use the high half of the hash, stripes use the low one */
+    private int stripeOf(KeyTable.Key key) {
+        return (int) key.hash & mask;
+    }
+
+    private static long pack(int length, int version) {
+        return ((long) length << 32) | (version & 0xFFFFFFFFL);
+    }
+
+    @Override
+    public KVStorageValue get(ByteString key) {
+        if (key.size() > KeyTable.KEY_BYTES)
+            return null;
+
+        KeyTable.Key k = new KeyTable.Key(key);
+        int i = stripeOf(k);
+        locks[i].readLock().lock();
+        try {
+            int ref = stripes[i].find(k);
+            if (ref == KeyTable.ABSENT)
+                return null;
+            long value = stripes[i].value(ref);
+            return new KVStorageValue(
+                arena.read(stripes[i].chunk(ref), (int) (value >>> 32)),
+                (int) value);
+        } finally {
+            locks[i].readLock().unlock();
+        }
+    }
+
+    @Override
+    public void put(ByteString key, KVStorageValue value) {
+        if (key.size() > KeyTable.KEY_BYTES) {
+            throw new IllegalArgumentException(
+                "Keys are at most " + KeyTable.KEY_BYTES + " bytes");
+        }
+
+        long chunk = arena.allocate(value.value.length);
+        if (chunk == SlabArena.NO_SPACE)
+            throw new StorageFullException("Off-heap arena is full");
+        arena.write(chunk, value.value);
+
+        KeyTable.Key k = new KeyTable.Key(key);
+        int i = stripeOf(k);
+        locks[i].writeLock().lock();
+        try {
+            long previous = stripes[i].put(
+                k, chunk, pack(value.value.length, value.version));
+            if (previous != KeyTable.ABSENT)
+                arena.free(previous);
+        } catch (StorageFullException e) {
+            arena.free(chunk);
+            throw e;
+        } finally {
+            locks[i].writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(ByteString key) {
+        if (key.size() > KeyTable.KEY_BYTES)
+            return false;
+
+        KeyTable.Key k = new KeyTable.Key(key);
+        int i = stripeOf(k);
+        locks[i].writeLock().lock();
+        try {
+            long previous = stripes[i].remove(k);
+            if (previous == KeyTable.ABSENT)
+                return false;
+            arena.free(previous);
+            return true;
+        } finally {
+            locks[i].writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < stripes.length; i++) {
+            locks[i].writeLock().lock();
+            try {
+                stripes[i].forEach(new KeyTable.Visitor() {
+                    @Override
+                    public void visit(ByteString key, long chunk, long value) {
+                        arena.free(chunk);
+                    }
+                });
+                stripes[i].clear();
+            } finally {
+                locks[i].writeLock().unlock();
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (int i = 0; i < stripes.length; i++) {
+            locks[i].readLock().lock();
+            try {
+                size += stripes[i].size();
+            } finally {
+                locks[i].readLock().unlock();
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public void scan(Visitor visitor) {
+        for (int i = 0; i < stripes.length; i++) {
+            final ByteString[] keys;
+            final KVStorageValue[] values;
+            locks[i].readLock().lock();
+            try {
+                keys = new ByteString[stripes[i].size()];
+                values = new KVStorageValue[keys.length];
+                stripes[i].forEach(new KeyTable.Visitor() {
+                    int n = 0;
+
+                    @Override
+                    public void visit(ByteString key, long chunk, long value) {
+                        keys[n] = key;
+                        values[n++] = new KVStorageValue(
+                            arena.read(chunk, (int) (value >>> 32)),
+                            (int) value);
+                    }
+                });
+            } finally {
+                locks[i].readLock().unlock();
+            }
+            for (int n = 0; n < keys.length; n++)
+                visitor.visit(keys[n], values[n]);
+        }
+    }
+}
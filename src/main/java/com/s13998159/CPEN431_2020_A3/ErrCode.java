@@ -3,11 +3,6 @@ package com.s13998159.CPEN431_2020_A3;
 import ca.NetSysLab.ProtocolBuffers.KeyValueResponse;
 
 public class ErrCode {
-    static byte[] overload_message =
-            KeyValueResponse.KVResponse.newBuilder()
-            .setErrCode(ErrCode.Overload)
-            .build().toByteArray();
-
     static byte[] general_fail_message =
             KeyValueResponse.KVResponse.newBuilder()
             .setErrCode(ErrCode.GeneralFail)
@@ -56,4 +51,12 @@ public class ErrCode {
 
     /* Value length is invalid */
     static final int InvalVal = 7;
+
+    /* Result of an operation of a multi command that was left out because
+     * the reply would not fit in a datagram; the client asks again */
+    static final int Truncated = 0x21;
+
+    /* A put or remove was not applied because the key has been updated
+     * since by a newer version or a later write */
+    static final int Stale = 0x22;
 }
@@ -0,0 +1,232 @@
+package com.s13998159.CPEN431_2020_A3;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gossip style failure detector. Every member keeps a heartbeat for every
+ * other member, its own being the time it last gossiped. Each round a member
+ * refreshes its own heartbeat and sends the whole table to a few random
+ * peers, who keep the newest heartbeat of every member. A member whose
+ * heartbeat has not moved on for the failure timeout is considered failed;
+ * with a few peers per round news spreads in a number of rounds logarithmic
+ * in the number of members, so a failure is noticed within about the timeout
+ * plus a few gossip intervals.
+ *
+ * Gossip travels over its own socket, at a fixed offset from every member's
+ * client port, so heartbeats never queue up behind client requests. Whenever
+ * the set of live members changes the listener is handed a new ring of just
+ * the live members.
+ */
+class Gossip {
+    private static final int MAGIC = 0x47535350;
+    /* Peers gossiped to every round */
+    private static final int FANOUT = 2;
+
+    /* Told about every change of the live members */
+    interface Listener {
+        void membershipChanged(HashRing live);
+    }
+
+    private final HashRing.Node[] members;
+    private final int self;
+    private final int vnodes;
+    private final int offset;
+    private final long interval; //ms
+    private final long timeout; //ms
+    private final Listener listener;
+
+    /* Newest heartbeat of every member, and when it last moved on here */
+    private final long[] heartbeats;
+    private final long[] updated;
+    private final boolean[] live;
+    private volatile int live_count;
+    /* False while the listener has yet to take in the latest change, so a
+     * listener that failed is handed the ring again next round */
+    private boolean delivered = true;
+
+    private final DatagramSocket socket;
+    private final Random random = new Random();
+
+    /**
+     * @param ring ring of every member, live or not
+     * @param vnodes virtual points per member of the rings handed out
+     * @param offset gossip port of a member relative to its client port
+     * @param interval time between gossip rounds, ms
+     * @param timeout time without news after which a member has failed, ms
+     * @param listener told about every change of the live members
+     */
+    Gossip(HashRing ring, int vnodes, int offset, long interval, long timeout,
+           Listener listener) throws SocketException {
+        this.members = ring.nodes();
+        this.vnodes = vnodes;
+        this.offset = offset;
+        this.interval = interval;
+        this.timeout = timeout;
+        this.listener = listener;
+
+        int local = 0;
+        for (int i = 0; i < members.length; i++) {
+            if (members[i].local)
+                local = i;
+        }
+        self = local;
+
+        heartbeats = new long[members.length];
+        updated = new long[members.length];
+        live = new boolean[members.length];
+        /* Everyone gets a full timeout to show up */
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < members.length; i++) {
+            updated[i] = now;
+            live[i] = true;
+        }
+        live_count = members.length;
+
+        socket = new DatagramSocket(members[self].address.getPort() + offset);
+    }
+
+    /* Starts gossiping and listening for gossip */
+    void start() {
+        Thread receiver = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                receive();
+            }
+        }, "gossip-receiver");
+        receiver.setDaemon(true);
+        receiver.start();
+
+        ScheduledExecutorService rounds =
+                Executors.newSingleThreadScheduledExecutor();
+        rounds.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                /* Anything thrown out of here would cancel every later round,
+                 * and this member would look failed to all the others */
+                try {
+                    round();
+                } catch (Throwable t) {
+                    Log.error("Gossip round failed: " + t);
+                }
+            }
+        }, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /* Number of members currently believed to be alive, this one included */
+    int liveCount() {
+        return live_count;
+    }
+
+    private void round() {
+        byte[] message;
+        synchronized (this) {
+            heartbeats[self] = System.currentTimeMillis();
+            updated[self] = heartbeats[self];
+            message = encode();
+        }
+
+        /* Failed members are gossiped to as well, that is how they are
+         * noticed once they are back */
+        for (int i = 0; i < Math.min(FANOUT, members.length - 1); i++) {
+            int peer = random.nextInt(members.length - 1);
+            if (peer >= self)
+                peer++;
+            InetSocketAddress address = members[peer].address;
+            try {
+                socket.send(new DatagramPacket(message, message.length,
+                    address.getAddress(), address.getPort() + offset));
+            } catch (IOException io) {
+                Log.error("Could not gossip to " + members[peer]);
+            }
+        }
+        check();
+    }
+
+    private byte[] encode() {
+        ByteArrayOutputStream bytes =
+                new ByteArrayOutputStream(12 + 8 * members.length);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(self);
+            out.writeInt(members.length);
+            for (long heartbeat : heartbeats)
+                out.writeLong(heartbeat);
+        } catch (IOException io) {
+            /* Not thrown by a ByteArrayOutputStream */
+        }
+        return bytes.toByteArray();
+    }
+
+    private void receive() {
+        byte[] buf = new byte[12 + 8 * members.length];
+        DatagramPacket packet = new DatagramPacket(buf, buf.length);
+        while (true) {
+            try {
+                socket.receive(packet);
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+                    buf, 0, packet.getLength()));
+                /* Members of another membership file are ignored */
+                if (in.readInt() != MAGIC || in.readInt() >= members.length ||
+                    in.readInt() != members.length)
+                    continue;
+
+                long now = System.currentTimeMillis();
+                synchronized (this) {
+                    for (int i = 0; i < members.length; i++) {
+                        long heartbeat = in.readLong();
+                        if (heartbeat > heartbeats[i]) {
+                            heartbeats[i] = heartbeat;
+                            updated[i] = now;
+                        }
+                    }
+                }
+            } catch (IOException io) {
+                Log.error("Could not read gossip");
+            }
+        }
+    }
+
+    /* Hands out a new ring if a member failed or came back */
+    private void check() {
+        List<HashRing.Node> alive = new ArrayList<>();
+        boolean changed;
+        synchronized (this) {
+            changed = !delivered;
+            long now = System.currentTimeMillis();
+            for (int i = 0; i < members.length; i++) {
+                boolean up = now - updated[i] <= timeout;
+                if (up != live[i]) {
+                    Log.info(members[i] + (up ? " is back" : " failed"));
+                    live[i] = up;
+                    changed = true;
+                    delivered = false;
+                }
+                if (up)
+                    alive.add(members[i]);
+            }
+            live_count = alive.size();
+        }
+
+        if (changed) {
+            listener.membershipChanged(new HashRing(alive, vnodes));
+            synchronized (this) {
+                delivered = true;
+            }
+        }
+    }
+}
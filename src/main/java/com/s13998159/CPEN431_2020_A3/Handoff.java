@@ -0,0 +1,363 @@
+package com.s13998159.CPEN431_2020_A3;
+
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.protobuf.ByteString;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Moves keys to their new replicas when the membership changes. The local
+ * storage is scanned for keys whose replicas changed, and the keys gained by
+ * every node are streamed to it over TCP in large frames, throttled so that
+ * the transfer leaves room for client traffic. Of the old replicas still
+ * alive, only the first one sends a key, so every key moves once.
+ *
+ * Once every transfer of a membership change is through, keys this node is
+ * no longer a replica of are dropped. A transfer that failed leaves them in
+ * place; the next membership change tries again.
+ *
+ * Progress of the transfer to every node is logged while it runs and
+ * counted in the Metrics: keys and bytes sent, keys still to be sent and
+ * how many transfers completed or failed.
+ */
+class Handoff {
+    private static final int MAGIC = 0x48414e44;
+    /* Entries are sent in frames of about this size */
+    private static final int FRAME_BYTES = 64 * 1024; //bytes
+    private static final int CONNECT_TIMEOUT = 1000; //ms
+    private static final int READ_TIMEOUT = 10000; //ms
+    private static final long PROGRESS_INTERVAL = 1000; //ms
+    /* Longest value a client can store, anything longer is a broken stream */
+    private static final int MAX_VALUE_LENGTH = 10000; //bytes
+
+    /* Where received keys go, and how keys that moved away are dropped */
+    interface Store {
+        /**
+         * Stores a key received from another node, unless a newer version
+         * of it is stored already
+         */
+        void receive(ByteString key, byte[] value, int version)
+                throws StorageFullException;
+
+        /* Drops a key that moved to other nodes */
+        void release(ByteString key);
+    }
+
+    /* The keys moving to one node */
+    private static class Transfer {
+        final HashRing.Node target;
+        final List<ByteString> keys = new ArrayList<>();
+        int sent;
+        long bytes;
+
+        Transfer(HashRing.Node target) {
+            this.target = target;
+        }
+
+        @Override
+        public String toString() {
+            return "Handoff to " + target + ": " + sent + "/" + keys.size() +
+                " keys, " + bytes / 1024 + " KB";
+        }
+    }
+
+    private final KVStorage storage;
+    private final Store store;
+    private final int replication;
+    private final int offset;
+    private final RateLimiter limiter;
+    private final Metrics metrics;
+    /* Hosts of the ring members, the only ones keys are accepted from */
+    private final Set<InetAddress> members;
+
+    /* Ring the keys are placed by at the moment */
+    private HashRing current;
+    /* Membership changes are handled one after the other */
+    private final ExecutorService rebalancer =
+            Executors.newSingleThreadExecutor();
+    private final ServerSocket server;
+
+    /**
+     * @param storage local storage to scan for keys that moved
+     * @param store applies received keys and drops keys that moved away
+     * @param ring ring the keys are placed by now
+     * @param replication number of replicas of every key
+     * @param offset handoff port of a member relative to its client port
+     * @param rate bytes per second sent at most
+     * @param metrics counts the progress of every transfer
+     * @param members hosts of every member, live or not
+     */
+    Handoff(KVStorage storage, Store store, HashRing ring, int replication,
+            int offset, double rate, Metrics metrics, Set<InetAddress> members)
+            throws IOException {
+        this.metrics = metrics;
+        this.members = members;
+        this.storage = storage;
+        this.store = store;
+        this.current = ring;
+        this.replication = replication;
+        this.offset = offset;
+        this.limiter = RateLimiter.create(rate);
+        this.server = new ServerSocket(ring.self().address.getPort() + offset);
+    }
+
+    /* Starts accepting keys from other nodes */
+    void start() {
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                accept();
+            }
+        }, "handoff-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Moves keys to where they belong on a new ring, in the background
+     * @param next ring of the live members after a membership change
+     */
+    void rebalance(final HashRing next) {
+        rebalancer.execute(new Runnable() {
+            @Override
+            public void run() {
+                HashRing previous = current;
+                current = next;
+                rebalance(previous, next);
+            }
+        });
+    }
+
+    private void rebalance(final HashRing previous, final HashRing next) {
+        final Map<HashRing.Node,Transfer> transfers = new LinkedHashMap<>();
+        final List<ByteString> leaving = new ArrayList<>();
+        storage.scan(new KVStorage.Visitor() {
+            @Override
+            public void visit(ByteString key, KVStorageValue value) {
+                HashRing.Node[] before = previous.replicas(key, replication);
+                HashRing.Node[] after = next.replicas(key, replication);
+                if (!sends(before, next))
+                    return;
+
+                boolean stays = false;
+                for (HashRing.Node node : after) {
+                    if (node.local) {
+                        stays = true;
+                    } else if (!contains(before, node)) {
+                        Transfer transfer = transfers.get(node);
+                        if (transfer == null) {
+                            transfer = new Transfer(node);
+                            transfers.put(node, transfer);
+                        }
+                        transfer.keys.add(key);
+                    }
+                }
+                if (!stays)
+                    leaving.add(key);
+            }
+        });
+
+        for (Transfer transfer : transfers.values())
+            metrics.handoffPending(transfer.keys.size());
+        boolean complete = true;
+        for (Transfer transfer : transfers.values()) {
+            boolean sent = send(transfer);
+            /* Whatever a failed transfer did not get to */
+            metrics.handoffPending(transfer.sent - transfer.keys.size());
+            metrics.handoffFinished(sent);
+            complete &= sent;
+        }
+
+        /* Only drop keys once they are sure to be elsewhere */
+        if (complete) {
+            for (ByteString key : leaving)
+                store.release(key);
+        }
+    }
+
+    /* Whether this is the first of the old replicas of a key still alive */
+    private static boolean sends(HashRing.Node[] before, HashRing next) {
+        HashRing.Node[] live = next.nodes();
+        for (HashRing.Node node : before) {
+            if (contains(live, node))
+                return node.local;
+        }
+        return false;
+    }
+
+    private static boolean contains(HashRing.Node[] nodes, HashRing.Node node) {
+        for (HashRing.Node n : nodes) {
+            if (n == node)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Streams the keys of a transfer to its node
+     * @return true if the node stored every key
+     */
+    private boolean send(Transfer transfer) {
+        InetSocketAddress address = transfer.target.address;
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(address.getAddress(),
+                address.getPort() + offset), CONNECT_TIMEOUT);
+            socket.setSoTimeout(READ_TIMEOUT);
+            DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(socket.getOutputStream(), FRAME_BYTES));
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            out.writeInt(MAGIC);
+
+            ByteArrayOutputStream frame_bytes = new ByteArrayOutputStream(FRAME_BYTES);
+            DataOutputStream frame = new DataOutputStream(frame_bytes);
+            int entries = 0;
+            int pending = 0;
+            long reported = System.currentTimeMillis();
+            for (ByteString key : transfer.keys) {
+                /* Removed since the scan */
+                KVStorageValue value = storage.get(key);
+                if (value != null) {
+                    frame.writeByte(key.size());
+                    key.writeTo(frame);
+                    frame.writeInt(value.version);
+                    frame.writeInt(value.value.length);
+                    frame.write(value.value);
+                    entries++;
+                }
+                pending++;
+
+                if (frame_bytes.size() >= FRAME_BYTES) {
+                    flush(out, frame_bytes, entries, pending, transfer);
+                    entries = 0;
+                    pending = 0;
+                }
+                if (System.currentTimeMillis() - reported >= PROGRESS_INTERVAL) {
+                    Log.info(transfer.toString());
+                    reported = System.currentTimeMillis();
+                }
+            }
+            if (entries > 0)
+                flush(out, frame_bytes, entries, pending, transfer);
+            else
+                progress(transfer, pending, 0);
+            /* An empty frame ends the transfer */
+            out.writeInt(0);
+            out.flush();
+
+            boolean stored = in.readBoolean();
+            Log.info(transfer + (stored ? ", done" : ", incomplete"));
+            return stored;
+        } catch (IOException io) {
+            Log.error(transfer + " failed");
+            return false;
+        }
+    }
+
+    /**
+     * Sends a frame of entries once the rate allows
+     * @param entries entries in the frame
+     * @param keys keys of the transfer the frame covers, including those
+     *             removed since the scan
+     */
+    private void flush(DataOutputStream out, ByteArrayOutputStream frame,
+                       int entries, int keys, Transfer transfer)
+            throws IOException {
+        limiter.acquire(frame.size());
+        out.writeInt(entries);
+        frame.writeTo(out);
+        progress(transfer, keys, frame.size());
+        frame.reset();
+    }
+
+    private void progress(Transfer transfer, int keys, long bytes) {
+        transfer.sent += keys;
+        transfer.bytes += bytes;
+        metrics.handoffSent(keys, bytes);
+    }
+
+    private void accept() {
+        while (true) {
+            try {
+                final Socket socket = server.accept();
+                if (!members.contains(socket.getInetAddress())) {
+                    Log.error("Refused handoff from " +
+                        socket.getInetAddress().getHostAddress() +
+                        ", not a member");
+                    socket.close();
+                    continue;
+                }
+                Thread receiver = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        receive(socket);
+                    }
+                }, "handoff-receiver");
+                receiver.setDaemon(true);
+                receiver.start();
+            } catch (IOException io) {
+                Log.error("Could not accept handoff");
+            }
+        }
+    }
+
+    /* Stores the keys another node streams over */
+    private void receive(Socket socket) {
+        try (Socket s = socket) {
+            s.setSoTimeout(READ_TIMEOUT);
+            DataInputStream in = new DataInputStream(
+                new BufferedInputStream(s.getInputStream(), FRAME_BYTES));
+            DataOutputStream out = new DataOutputStream(s.getOutputStream());
+            if (in.readInt() != MAGIC)
+                return;
+
+            boolean stored = true;
+            int received = 0;
+            for (int entries = in.readInt(); entries > 0; entries = in.readInt()) {
+                for (int i = 0; i < entries; i++) {
+                    byte[] key = new byte[in.readUnsignedByte()];
+                    in.readFully(key);
+                    int version = in.readInt();
+                    int length = in.readInt();
+                    if (length < 0 || length > MAX_VALUE_LENGTH)
+                        throw new IOException("bad value length " + length);
+                    byte[] value = new byte[length];
+                    in.readFully(value);
+                    if (!stored)
+                        continue;
+                    try {
+                        store.receive(ByteString.copyFrom(key), value, version);
+                        received++;
+                    } catch (StorageFullException e) {
+                        Log.error("Storage full during handoff");
+                        stored = false;
+                    }
+                }
+            }
+            metrics.handoffReceived(received);
+            Log.info("Received " + received +
+                " keys from " + s.getInetAddress().getHostAddress());
+            out.writeBoolean(stored);
+            out.flush();
+        } catch (IOException io) {
+            Log.error("Handoff from " +
+                socket.getInetAddress().getHostAddress() + " broke off: " +
+                io.getMessage());
+        }
+    }
+}
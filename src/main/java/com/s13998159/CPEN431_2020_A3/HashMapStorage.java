@@ -0,0 +1,69 @@
+package com.s13998159.CPEN431_2020_A3;
+
+import com.google.protobuf.ByteString;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reference storage engine backed by a plain HashMap. It does no locking at
+ * all, so it must only be used when a single thread services requests.
+ */
+class HashMapStorage implements KVStorage {
+    private HashMap<ByteString,KVStorageValue> map = new HashMap<>();
+    private final MemoryBudget budget;
+
+    HashMapStorage(MemoryBudget budget) {
+        this.budget = budget;
+    }
+
+    @Override
+    public KVStorageValue get(ByteString key) {
+        return map.get(key);
+    }
+
+    @Override
+    public void put(ByteString key, KVStorageValue value) {
+        KVStorageValue old = map.get(key);
+        long delta = MemoryBudget.entryBytes(key.size(), value.value.length);
+        if (old != null)
+            delta -= MemoryBudget.entryBytes(key.size(), old.value.length);
+
+        if (delta > 0 && !budget.reserveStorage(delta))
+            throw new StorageFullException("Memory budget exhausted");
+        if (delta < 0)
+            budget.releaseStorage(-delta);
+        map.put(key, value);
+    }
+
+    @Override
+    public boolean remove(ByteString key) {
+        KVStorageValue old = map.remove(key);
+        if (old == null)
+            return false;
+        budget.releaseStorage(MemoryBudget.entryBytes(key.size(), old.value.length));
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        long bytes = 0;
+        for (Map.Entry<ByteString,KVStorageValue> entry : map.entrySet()) {
+            bytes += MemoryBudget.entryBytes(
+                entry.getKey().size(), entry.getValue().value.length);
+        }
+        map.clear();
+        budget.releaseStorage(bytes);
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public void scan(Visitor visitor) {
+        for (Map.Entry<ByteString,KVStorageValue> entry : map.entrySet())
+            visitor.visit(entry.getKey(), entry.getValue());
+    }
+}
@@ -0,0 +1,197 @@
+package com.s13998159.CPEN431_2020_A3;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.protobuf.ByteString;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Consistent hash ring over the nodes of the system. Every node is placed on
+ * the ring at a number of virtual points, and a key belongs to the node of
+ * the first point at or after the key's hash. With enough virtual points each
+ * node owns about the same share of the keys, and adding or removing a node
+ * only moves the keys of the ranges next to its own points.
+ *
+ * The ring is immutable; membership changes build a new one.
+ */
+class HashRing {
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    /* A member of the system */
+    static class Node {
+        final InetSocketAddress address;
+        /* Whether this is the node running this server */
+        final boolean local;
+
+        Node(InetSocketAddress address, boolean local) {
+            this.address = address;
+            this.local = local;
+        }
+
+        @Override
+        public String toString() {
+            return address.getHostString() + ":" + address.getPort();
+        }
+    }
+
+    private final Node[] nodes;
+    /* Virtual points in ascending order, and the node at each of them */
+    private final long[] points;
+    private final Node[] owners;
+    private final Node self;
+
+    /**
+     * @param nodes every member, exactly one of them local
+     * @param vnodes number of virtual points per node
+     */
+    HashRing(List<Node> nodes, int vnodes) {
+        this.nodes = nodes.toArray(new Node[0]);
+        Node local = null;
+        long[] unsorted = new long[this.nodes.length * vnodes];
+        for (int n = 0; n < this.nodes.length; n++) {
+            if (this.nodes[n].local)
+                local = this.nodes[n];
+            for (int v = 0; v < vnodes; v++) {
+                unsorted[n * vnodes + v] = HASH.hashString(
+                    this.nodes[n] + "#" + v, StandardCharsets.UTF_8).asLong();
+            }
+        }
+        self = local;
+
+        /* Sort the points and their owners together */
+        Integer[] order = new Integer[unsorted.length];
+        for (int i = 0; i < order.length; i++)
+            order[i] = i;
+        final long[] keys = unsorted;
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Long.compare(keys[a], keys[b]);
+            }
+        });
+        points = new long[order.length];
+        owners = new Node[order.length];
+        for (int i = 0; i < order.length; i++) {
+            points[i] = unsorted[order[i]];
+            owners[i] = this.nodes[order[i] / vnodes];
+        }
+    }
+
+    /**
+     * Reads a membership file of one host:port per line
+     * @param file membership file, e.g. servers.list
+     * @param port port this server listens on, to recognize itself by
+     * @param vnodes number of virtual points per node
+     * @return the ring, or a ring of just this server if the file does not
+     * exist or does not list it
+     */
+    static HashRing load(File file, int port, int vnodes) throws IOException {
+        List<Node> nodes = new ArrayList<>();
+        boolean found = false;
+        if (file.isFile()) {
+            for (String line : Files.readAllLines(
+                    file.toPath(), StandardCharsets.UTF_8)) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#"))
+                    continue;
+
+                int colon = line.lastIndexOf(':');
+                InetSocketAddress address = new InetSocketAddress(
+                    line.substring(0, colon),
+                    Integer.parseInt(line.substring(colon + 1)));
+                boolean local = !found && address.getPort() == port &&
+                        isLocal(address.getAddress());
+                found |= local;
+                nodes.add(new Node(address, local));
+            }
+        }
+
+        if (!found) {
+            Log.info("Not listed in " + file +
+                ", running standalone");
+            nodes.clear();
+            nodes.add(new Node(new InetSocketAddress(
+                InetAddress.getLoopbackAddress(), port), true));
+        }
+        return new HashRing(nodes, vnodes);
+    }
+
+    private static boolean isLocal(InetAddress address) throws IOException {
+        return address != null && (address.isLoopbackAddress() ||
+                address.isAnyLocalAddress() ||
+                NetworkInterface.getByInetAddress(address) != null);
+    }
+
+    /* Position of a key on the ring */
+    static long hash(ByteString key) {
+        return HASH.hashBytes(key.toByteArray()).asLong();
+    }
+
+    /* Index of the first point at or after a hash, wrapping around */
+    private int successor(long hash) {
+        int i = Arrays.binarySearch(points, hash);
+        if (i < 0)
+            i = -i - 1;
+        return i == points.length ? 0 : i;
+    }
+
+    /**
+     * @param key key to place on the ring
+     * @return the node responsible for the key
+     */
+    Node owner(ByteString key) {
+        if (nodes.length == 1)
+            return nodes[0];
+        return owners[successor(hash(key))];
+    }
+
+    /**
+     * @param key key to place on the ring
+     * @param n number of replicas wanted
+     * @return the first n distinct nodes at or after the key, fewer if there
+     * are not that many. The first one is the owner.
+     */
+    Node[] replicas(ByteString key, int n) {
+        n = Math.min(n, nodes.length);
+        if (n == 1)
+            return new Node[] {owner(key)};
+
+        Node[] replicas = new Node[n];
+        int found = 0;
+        for (int i = successor(hash(key)); found < n; i = (i + 1) % points.length) {
+            Node node = owners[i];
+            boolean seen = false;
+            for (int j = 0; j < found && !seen; j++)
+                seen = replicas[j] == node;
+            if (!seen)
+                replicas[found++] = node;
+        }
+        return replicas;
+    }
+
+    /* The node running this server */
+    Node self() {
+        return self;
+    }
+
+    /* Every member, in the order they were given */
+    Node[] nodes() {
+        return nodes.clone();
+    }
+
+    /* Number of members */
+    int size() {
+        return nodes.length;
+    }
+}
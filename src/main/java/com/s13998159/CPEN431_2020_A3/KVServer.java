@@ -5,85 +5,451 @@ import ca.NetSysLab.ProtocolBuffers.KeyValueResponse;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.InvalidProtocolBufferException;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.management.ManagementFactory;
-import java.util.Arrays;
-import java.util.HashMap;
-
-class KVStorageValue {
-    byte[] value;
-    int version;
-    KVStorageValue(byte[] val, int ver) {
-        value = val;
-        version = ver;
-    }
-}
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * TODO Implement out of memeory error checking
- * TODO Then learn to service multiple agnets
- * TODO When multiple can be serviced, it should be easy to integrate other commands
+ * Key-value server: receives requests over the configured transport,
+ * executes them against the storage engine and replies, with at-most-once
+ * semantics from the reply cache. Memory is accounted for in a MemoryBudget,
+ * so a full server answers NoSpace instead of running out of heap. In a
+ * ring, requests are routed to the members that hold their keys and
+ * replicated there.
  */
 public class KVServer {
     /* The key-value storage module */
-    private HashMap<ByteString,KVStorageValue> storage;
+    private KVStorage storage;
 
     private final int MAX_KEY_LENGTH = 32; // bytes;
     private final int MAX_VAL_LENGTH = 10000; // bytes;
+    /* Results of a multi command, leaving room for the envelope */
+    private final int MAX_MULTI_REPLY = RequestContext.BUFFER_SIZE - 64; //B
 
     private SerializerServer serializer;
-    private short port;
+    private int port;
+
+    /* Decides which node every key belongs to, live members only */
+    private volatile HashRing ring;
+    /* Detects failed members, null when running standalone */
+    private Gossip gossip;
+    /* Moves keys when members fail or come back, null when standalone */
+    private Handoff handoff;
+    /* Copies keys to the following nodes, null without replication */
+    private Replicator replicator;
+    /* Reaches the other members, null when running standalone */
+    private SerializerClient peers;
+
+    /* Byte count of everything stored and cached, decides NoSpace */
+    private MemoryBudget budget;
+
+    /* Services requests handed over by the receiving thread, null if the
+     * receiving thread services requests itself */
+    private ExecutorService workers;
+    /* Bounds the requests waiting for a worker */
+    private LoadMonitor load;
+    /* Services control commands ahead of queued data requests, null if
+     * the receiving thread services requests itself */
+    private ExecutorService control;
+    private final int CONTROL_QUEUE = 256; //requests
+    /* Services the commands of coordinating members apart from client
+     * requests, null if the receiving thread services requests itself.
+     * Queued behind client requests, two members whose workers are all
+     * coordinating would wait on each other for good. */
+    private ExecutorService replica_lane;
+
+    /* Counters and latencies, published over JMX and --metrics-port */
+    private final Metrics metrics = new Metrics();
+
+    /* Datagrams drained per batch and how long a batch may take to fill */
+    private int batch_size;
+    private long batch_latency;
+
+    /* Log of every update, null if the server runs without one */
+    private WriteAheadLog wal;
+    /* Where the log and the snapshots are kept */
+    private File wal_dir;
+    /* Takes periodic snapshots, null if there are none */
+    private ScheduledExecutorService snapshotter;
+    /* Last record appended before the latest snapshot */
+    private long snapshot_seq = 0;
+
+    /*
+     * Held while an update is applied and logged, so that updates to a key
+     * reach the log in the order they were applied to storage
+     */
+    private final ReentrantLock[] update_locks = new ReentrantLock[64];
 
     /**
      * Creates a server of the key-value server
-     * @param port socket to establish itself on
+     * @param config startup options, including the port to establish itself on
      */
-    KVServer(short port){
-        serializer = new SerializerServer(port);
-        storage =  new HashMap<ByteString, KVStorageValue>();
+    KVServer(ServerConfig config){
+        Log.level(config.log_level);
+        Log.register();
+        port = config.port;
+        try {
+            ring = HashRing.load(
+                new File(config.servers_file), port, config.vnodes);
+        } catch (IOException | RuntimeException e) {
+            Log.error("Could not read " + config.servers_file);
+            throw new IllegalStateException(e);
+        }
+        int replication = Math.min(config.replicas, ring.size());
+        if (ring.size() > 1) {
+            try {
+                peers = new SerializerClient();
+            } catch (SocketException e) {
+                Log.error("Could not open a socket to the other members");
+                throw new IllegalStateException(e);
+            }
+        }
+        /* A coordinator waits for other replicas, which may well be waiting
+         * for it in turn, so a single thread cannot coordinate */
+        if (replication > 1 && config.workers == 1) {
+            Log.error("Replication needs a worker pool, see --workers; " +
+                "keeping a single copy of every key");
+            replication = 1;
+        }
+        if (replication > 1) {
+            replicator = new Replicator(ring, replication,
+                config.read_quorum, config.write_quorum, peers);
+        }
+        if (ring.size() > 1) {
+            try {
+                gossip = new Gossip(ring, config.vnodes, config.gossip_offset,
+                    config.gossip_interval, config.fail_timeout,
+                    new Gossip.Listener() {
+                        @Override
+                        public void membershipChanged(HashRing live) {
+                            ring = live;
+                            if (replicator != null)
+                                replicator.updateRing(live);
+                            handoff.rebalance(live);
+                        }
+                    });
+            } catch (SocketException e) {
+                Log.error("Could not open gossip port");
+                throw new IllegalStateException(e);
+            }
+        }
+        budget = new MemoryBudget(
+                config.memory_capacity, config.cache_capacity);
+        load = new LoadMonitor(config.max_queue);
+        Set<InetAddress> members = new HashSet<>();
+        for (HashRing.Node node : ring.nodes())
+            members.add(node.address.getAddress());
+        serializer = new SerializerServer(createTransport(config), budget,
+                config.cache_capacity, load, metrics, members);
+        storage = createStorage(config, budget, ring.size());
+        if (config.workers > 1) {
+            /* LoadMonitor refuses requests before the queue can fill up */
+            workers = new ThreadPoolExecutor(config.workers, config.workers,
+                0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(config.max_queue));
+            control = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(CONTROL_QUEUE),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "control");
+                        thread.setPriority(Thread.MAX_PRIORITY);
+                        return thread;
+                    }
+                });
+            replica_lane = new ThreadPoolExecutor(config.workers,
+                config.workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(config.max_queue),
+                new ThreadFactory() {
+                    private int count = 0;
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        return new Thread(r, "replica-" + count++);
+                    }
+                });
+        }
+        batch_size = config.batch_size;
+        batch_latency = config.batch_latency;
+
+        for (int i = 0; i < update_locks.length; i++)
+            update_locks[i] = new ReentrantLock();
+        if (config.wal_dir != null)
+            recover(config);
+
+        metrics.gauge("storage_keys", new Metrics.Gauge() {
+            @Override
+            public long value() {
+                return storage.size();
+            }
+        });
+        metrics.gauge("memory_used_bytes", new Metrics.Gauge() {
+            @Override
+            public long value() {
+                return budget.used();
+            }
+        });
+        metrics.gauge("queue_depth", new Metrics.Gauge() {
+            @Override
+            public long value() {
+                return load.queueDepth();
+            }
+        });
+        metrics.gauge("members", new Metrics.Gauge() {
+            @Override
+            public long value() {
+                return ring.size();
+            }
+        });
+        metrics.gauge("log_dropped", new Metrics.Gauge() {
+            @Override
+            public long value() {
+                return Log.dropped();
+            }
+        });
+        metrics.start(config.metrics_port);
+
+        if (gossip != null) {
+            try {
+                handoff = new Handoff(storage, new HandoffStore(), ring,
+                    replication, config.gossip_offset, config.handoff_rate,
+                    metrics, members);
+            } catch (IOException e) {
+                Log.error("Could not open handoff port");
+                throw new IllegalStateException(e);
+            }
+            handoff.start();
+            gossip.start();
+        }
+    }
+
+    /* Applies keys streamed over from other nodes and drops those moved away */
+    private class HandoffStore implements Handoff.Store {
+        @Override
+        public void receive(ByteString key, byte[] value, int version)
+                throws StorageFullException {
+            ReentrantLock lock = updateLock(key);
+            lock.lock();
+            try {
+                /* Updates since the sender scanned its storage win */
+                KVStorageValue stored = storage.get(key);
+                if (replicator != null ?
+                        !replicator.admitPut(key, version, 0, stored) :
+                        stored != null)
+                    return;
+                storage.put(key, new KVStorageValue(value, version));
+                log(WriteAheadLog.PUT, key, value, version);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void release(ByteString key) {
+            ReentrantLock lock = updateLock(key);
+            lock.lock();
+            try {
+                /* The key may have come back here in the meantime */
+                for (HashRing.Node node : ring.replicas(key,
+                        replicator == null ? 1 : replicator.replication())) {
+                    if (node.local)
+                        return;
+                }
+                if (storage.remove(key))
+                    log(WriteAheadLog.REMOVE, key, null, 0);
+            } finally {
+                lock.unlock();
+            }
+        }
     }
 
     /**
-     * Use this function to determine whether to return an overload error
-     * In overload, there is sufficient memory to service a put request
-     * @return true if there is sufficient memory to support runtime
+     * Rebuilds storage from the latest snapshot and the log after it, opens
+     * the log for appends and schedules snapshots. Lookups are served from
+     * the snapshot file while it is loaded in the background.
+     * @param config startup options
      */
-    private boolean checkIfRuntimeMemAvailable() {
-        /* Need at least 100kB of memory to be able to operate efficiently */
-        long FREE_LIMIT = 100000; //B
-        return Runtime.getRuntime().freeMemory() > FREE_LIMIT;
+    private void recover(ServerConfig config) {
+        wal_dir = new File(config.wal_dir);
+        try {
+            wal = new WriteAheadLog(wal_dir,
+                WriteAheadLog.parsePolicy(config.wal_fsync),
+                config.wal_interval);
+            final Snapshot snapshot = Snapshot.open(wal_dir);
+            long from = 0;
+            if (snapshot != null) {
+                Log.info("Serving snapshot of " +
+                    snapshot.size() + " keys");
+                storage = new LayeredStorage(storage, snapshot);
+                from = snapshot.walSegment();
+            }
+
+            /* Records after the snapshot have to be in place before any
+             * request is served; there are at most a snapshot interval's */
+            long replayed = wal.replay(storage, from);
+            Log.info("Replayed " + replayed + " log records");
+
+            if (snapshot != null) {
+                final LayeredStorage layered = (LayeredStorage) storage;
+                Thread loader = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (layered.load()) {
+                            Log.info("Snapshot loaded, " +
+                                layered.size() + " keys");
+                        }
+                    }
+                }, "snapshot-loader");
+                loader.setDaemon(true);
+                loader.start();
+            }
+        } catch (IOException io) {
+            Log.error("Could not recover from the log!");
+            throw new IllegalStateException(io);
+        }
+
+        if (config.snapshot_interval > 0) {
+            snapshotter = Executors.newSingleThreadScheduledExecutor();
+            snapshotter.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    takeSnapshot();
+                }
+            }, config.snapshot_interval, config.snapshot_interval,
+               TimeUnit.SECONDS);
+        }
     }
 
     /**
-     * Use this function to determine whether to return a no space error
-     * @return true if there is sufficient space to service a put request
+     * Writes a snapshot of storage while requests carry on, then drops the
+     * log segments it makes redundant
      */
-    private boolean checkIfMemAvailable(){
-        long FREE_LIMIT = 1000000; //B
-        long BUFFER_LIMIT = 2000000; //B
-        long free = Runtime.getRuntime().freeMemory();
-        long used = Runtime.getRuntime().totalMemory() - free;
-        long totalFree = Runtime.getRuntime().maxMemory() - used;
+    private void takeSnapshot() {
+        long seq = wal.appended();
+        if (seq == snapshot_seq)
+            return;
+
+        long start = System.currentTimeMillis();
+        try {
+            long segment = wal.rotate();
+            int count = Snapshot.write(wal_dir, storage, segment);
+            wal.deleteBefore(segment);
+            snapshot_seq = seq;
+            Log.info("Snapshot of " + count +
+                " keys taken in " + (System.currentTimeMillis() - start) +
+                " ms");
+        } catch (IOException io) {
+            Log.error("Could not take a snapshot!");
+        }
+    }
 
-        return free > FREE_LIMIT && totalFree > BUFFER_LIMIT;
+    private ReentrantLock updateLock(ByteString key) {
+        return update_locks[key.hashCode() & (update_locks.length - 1)];
     }
 
-    private KeyValueResponse.KVResponse.Builder
-    handleCommand(KeyValueRequest.KVRequest request) {
-        System.out.println(
-            "Debugging: Handling command " + request.getCommand());
+    /**
+     * Appends an update to the log, if there is one
+     * @return sequence number of the record, 0 without a log
+     */
+    private long log(byte type, ByteString key, byte[] value, int version) {
+        return wal == null ? 0 : wal.append(type, key, value, version);
+    }
+
+    /**
+     * Opens the configured transport on the server port
+     * @param config startup options
+     * @return transport ready to receive
+     */
+    private static Transport createTransport(ServerConfig config) {
+        try {
+            switch (config.transport) {
+                case "socket":
+                    return new SocketTransport(config.port);
+                case "channel":
+                    return new ChannelTransport(config.port, config.channels);
+                default:
+                    throw new IllegalArgumentException(
+                        "Unknown transport: " + config.transport);
+            }
+        } catch (IOException io) {
+            Log.error("Could not create a server socket!");
+            throw new IllegalStateException(io);
+        }
+    }
+
+    /**
+     * Picks the storage engine for the configured number of workers
+     * @param config startup options
+     * @param budget accounts for the bytes of every stored key
+     * @param members number of members in the servers file
+     * @return an empty storage engine
+     */
+    private static KVStorage createStorage(
+            ServerConfig config, MemoryBudget budget, int members) {
+        int concurrency = config.concurrency(members);
+        String engine = config.storage;
+        if (engine == null)
+            engine = concurrency > 1 ? "striped" : "hashmap";
+
+        switch (engine) {
+            case "hashmap":
+                if (concurrency > 1) {
+                    throw new IllegalArgumentException(
+                        "The hashmap storage is not thread-safe");
+                }
+                return new HashMapStorage(budget);
+            case "striped":
+                return new StripedStorage(concurrency, budget);
+            case "offheap":
+                return new OffHeapStorage(
+                    concurrency, config.arena_capacity, budget);
+            case "compact":
+                return new CompactStorage(
+                    concurrency, config.arena_capacity, budget);
+            default:
+                throw new IllegalArgumentException(
+                    "Unknown storage engine: " + engine);
+        }
+    }
+
+    /* Package-private for the benchmarks */
+    KeyValueResponse.KVResponse.Builder
+    handleCommand(KeyValueRequest.KVRequest request, RequestContext ctx) {
+        if (Log.debugging())
+            Log.debug("Handling command " + request.getCommand());
 
         KeyValueResponse.KVResponse.Builder response =
                 KeyValueResponse.KVResponse.newBuilder();
 
+        /* Replica commands carry the coordinator's stamp, which decides
+         * between writes; from anyone else they could override quorum
+         * writes */
+        if (Commands.isReplica(request.getCommand()) &&
+            !serializer.fromMember(ctx)) {
+            response.setErrCode(ErrCode.NoCmd);
+            return response;
+        }
+
         KVStorageValue retrieved_val;
         ByteString key;
         switch(request.getCommand()) {
-            case Commands.Put: {
-                if (!checkIfMemAvailable()) {
-                    response.setErrCode(ErrCode.NoSpace);
-                    break;
-                }
-
+            case Commands.Put:
+            case Commands.ReplicaPut: {
                 key = request.getKey();
                 if (key.size() > MAX_KEY_LENGTH) {
                     response.setErrCode(ErrCode.InvalKey);
@@ -96,15 +462,33 @@ public class KVServer {
                     break;
                 }
 
-                storage.put(
-                    request.getKey(),
-                    new KVStorageValue(val, request.getVersion())
-                );
+                ReentrantLock lock = updateLock(key);
+                lock.lock();
+                try {
+                    /* Replicas drop a write older than what they have */
+                    if (replicator != null && !replicator.admitPut(key,
+                            request.getVersion(), request.getStamp(),
+                            storage.get(key))) {
+                        response.setErrCode(ErrCode.Stale);
+                        break;
+                    }
+                    storage.put(
+                        key, new KVStorageValue(val, request.getVersion()));
+                    ctx.wal_seq = log(WriteAheadLog.PUT,
+                        key, val, request.getVersion());
+                } catch (StorageFullException e) {
+                    /* Storage engines check their budget before storing */
+                    response.setErrCode(ErrCode.NoSpace);
+                    break;
+                } finally {
+                    lock.unlock();
+                }
                 response.setErrCode(ErrCode.Success);
                 break;
             }
 
-            case Commands.Get: {
+            case Commands.Get:
+            case Commands.ReplicaGet: {
                 key = request.getKey();
                 if (key.size() > MAX_KEY_LENGTH) {
                     response.setErrCode(ErrCode.InvalKey);
@@ -122,26 +506,49 @@ public class KVServer {
                 break;
             }
 
-            case Commands.Remove: {
-                retrieved_val = storage.remove(request.getKey());
-                if (retrieved_val == null) {
-                    response.setErrCode(ErrCode.NoKey);
-                } else {
-                    response.setErrCode(ErrCode.Success);
+            case Commands.Remove:
+            case Commands.ReplicaRemove: {
+                key = request.getKey();
+                ReentrantLock lock = updateLock(key);
+                lock.lock();
+                try {
+                    if (replicator != null &&
+                        !replicator.admitRemove(key, request.getStamp())) {
+                        response.setErrCode(ErrCode.Stale);
+                        break;
+                    }
+                    if (!storage.remove(key)) {
+                        response.setErrCode(ErrCode.NoKey);
+                        break;
+                    }
+                    ctx.wal_seq = log(WriteAheadLog.REMOVE, key, null, 0);
+                } finally {
+                    lock.unlock();
                 }
+                response.setErrCode(ErrCode.Success);
                 break;
             }
 
             case Commands.Shutdown: {
-                System.out.println(
-                    "Debugging: Quit cmd received. System exiting");
+                Log.info("Quit cmd received. System exiting");
+                if (wal != null)
+                    wal.close();
                 System.exit(0);
                 break;
             }
 
             case Commands.Wipeout: {
-                System.out.println("Debugging: Wiping out storage server");
-                storage.clear();
+                Log.info("Wiping out storage server");
+                /* Updates in flight land entirely before or after the wipe */
+                for (ReentrantLock lock : update_locks)
+                    lock.lock();
+                try {
+                    storage.clear();
+                    ctx.wal_seq = log(WriteAheadLog.WIPEOUT, null, null, 0);
+                } finally {
+                    for (ReentrantLock lock : update_locks)
+                        lock.unlock();
+                }
                 response.setErrCode(ErrCode.Success);
                 break;
             }
@@ -159,68 +566,416 @@ public class KVServer {
             }
 
             case Commands.GetMembershipCount: {
-                response.setMembershipCount(1);
+                response.setMembershipCount(ring.size());
                 response.setErrCode(ErrCode.Success);
                 break;
             }
 
+            case Commands.MultiPut:
+            case Commands.MultiGet:
+            case Commands.MultiRemove:
+                return handleMulti(request, ctx);
+
             default:
                 response.setErrCode(ErrCode.NoCmd);
-                System.out.println("Error: Command not supported!");
+                Log.error("Command not supported!");
 
         }
 
-//        System.out.println("Debugging: Return Code is " + err_code);
         return response;
     }
 
-    void sendOverloadFail() {
-        serializer.reply(ErrCode.overload_message);
+    /**
+     * Executes every operation of a MultiPut, MultiGet or MultiRemove as the
+     * single command would be, replicated like one. Operations on keys held
+     * elsewhere go to a replica of the key as single requests. All of them
+     * are underway at once, and the results are collected in request order
+     * until the reply is full; the rest are answered with Truncated.
+     * @param request the client's request
+     * @param ctx context of the request
+     * @return response with a result per operation
+     */
+    private KeyValueResponse.KVResponse.Builder handleMulti(
+            KeyValueRequest.KVRequest request, RequestContext ctx) {
+        int command = Commands.single(request.getCommand());
+        int count = request.getEntriesCount();
+        /* A forwarded request stays here even if the rings disagree */
+        HashRing live = ring;
+        boolean all_here = ctx.forwarded || live.size() == 1;
+
+        KeyValueResponse.KVResponse.Builder[] local =
+                new KeyValueResponse.KVResponse.Builder[count];
+        Replicator.Coordination[] coordinations =
+                new Replicator.Coordination[count];
+        @SuppressWarnings("unchecked")
+        CompletableFuture<byte[]>[] remote =
+                (CompletableFuture<byte[]>[]) new CompletableFuture<?>[count];
+        long wal_seq = 0;
+        for (int i = 0; i < count; i++) {
+            KeyValueRequest.KVRequest.Entry entry = request.getEntries(i);
+            KeyValueRequest.KVRequest.Builder single =
+                    KeyValueRequest.KVRequest.newBuilder()
+                    .setCommand(command)
+                    .setKey(entry.getKey());
+            if (command == Commands.Put)
+                single.setValue(entry.getValue()).setVersion(entry.getVersion());
+            if (request.hasQuorum())
+                single.setQuorum(request.getQuorum());
+
+            HashRing.Node[] replicas = live.replicas(entry.getKey(), replication());
+            if (!all_here && !holds(replicas)) {
+                remote[i] = peers.requestAsync(
+                    single.build().toByteArray(), replicas[0].address);
+                continue;
+            }
+
+            if (replicator != null)
+                single.setStamp(replicator.stamp());
+            KeyValueRequest.KVRequest operation = single.build();
+            ctx.wal_seq = 0;
+            local[i] = handleCommand(operation, ctx);
+            /* The reply waits for the last of the records to be logged */
+            wal_seq = Math.max(wal_seq, ctx.wal_seq);
+            if (replicator != null)
+                coordinations[i] = replicator.start(operation, local[i]);
+        }
+        ctx.wal_seq = wal_seq;
+
+        KeyValueResponse.KVResponse.Builder response =
+                KeyValueResponse.KVResponse.newBuilder()
+                .setErrCode(ErrCode.Success);
+        int reply_length = response.build().getSerializedSize();
+        for (int i = 0; i < count; i++) {
+            KeyValueResponse.KVResponse.Builder outcome;
+            if (remote[i] != null)
+                outcome = await(remote[i]);
+            else if (coordinations[i] != null)
+                outcome = replicator.finish(coordinations[i]);
+            else
+                outcome = local[i];
+
+            KeyValueResponse.KVResponse.Result.Builder result =
+                    KeyValueResponse.KVResponse.Result.newBuilder()
+                    .setErrCode(outcome.getErrCode());
+            if (outcome.hasValue())
+                result.setValue(outcome.getValue());
+            if (outcome.hasVersion())
+                result.setVersion(outcome.getVersion());
+
+            /* Tag and length of the result, then the result */
+            int length = 3 + result.build().getSerializedSize();
+            if (reply_length + length > MAX_MULTI_REPLY) {
+                result = KeyValueResponse.KVResponse.Result.newBuilder()
+                        .setErrCode(ErrCode.Truncated);
+                length = 3 + result.build().getSerializedSize();
+            }
+            reply_length += length;
+            response.addResults(result);
+        }
+        return response;
+    }
+
+    /* Reply of a request sent to another member, Overload if none came */
+    private static KeyValueResponse.KVResponse.Builder await(
+            CompletableFuture<byte[]> reply) {
+        try {
+            byte[] bytes = reply.get();
+            if (bytes.length > 0)
+                return KeyValueResponse.KVResponse.parseFrom(bytes).toBuilder();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | InvalidProtocolBufferException e) {
+            Log.error("Could not reach a member for a multi command");
+        }
+        /* The client may retry the operation */
+        return KeyValueResponse.KVResponse.newBuilder()
+                .setErrCode(ErrCode.Overload);
+    }
+
+    /* Number of replicas of every key */
+    private int replication() {
+        return replicator == null ? 1 : replicator.replication();
+    }
+
+    /* Whether this node is one of the replicas */
+    private static boolean holds(HashRing.Node[] replicas) {
+        for (HashRing.Node replica : replicas) {
+            if (replica.local)
+                return true;
+        }
+        return false;
     }
 
-    void sendGeneralFail() {
-        serializer.reply(ErrCode.general_fail_message);
+    /**
+     * Passes a request for a key owned by another node on to that node,
+     * which replies to the client itself
+     * @param request parsed request
+     * @param ctx context of the request
+     * @return true if the request was forwarded and needs no reply here
+     */
+    private boolean route(
+            KeyValueRequest.KVRequest request, RequestContext ctx) {
+        /* A forwarded request stays here even if the rings disagree */
+        HashRing live = ring;
+        if (ctx.forwarded || live.size() == 1)
+            return false;
+
+        HashRing.Node owner;
+        switch (request.getCommand()) {
+            case Commands.Put:
+            case Commands.Get:
+            case Commands.Remove: {
+                /* Any replica of the key can coordinate the request */
+                HashRing.Node[] replicas =
+                        live.replicas(request.getKey(), replication());
+                if (holds(replicas))
+                    return false;
+                owner = replicas[0];
+                break;
+            }
+            case Commands.MultiPut:
+            case Commands.MultiGet:
+            case Commands.MultiRemove:
+                /* Batches are split up here unless one node holds it all */
+                owner = commonReplica(live, request);
+                if (owner == null || owner.local)
+                    return false;
+                break;
+            default:
+                return false;
+        }
+
+        metrics.forwarded();
+        if (!serializer.forward(ctx, owner.address)) {
+            Log.error("Could not forward to " + owner);
+        }
+        return true;
+    }
+
+    /**
+     * @return a node that is a replica of every key of a multi command,
+     * preferably this one, or null if there is none
+     */
+    private HashRing.Node commonReplica(
+            HashRing live, KeyValueRequest.KVRequest request) {
+        if (request.getEntriesCount() == 0)
+            return null;
+        HashRing.Node[][] replicas =
+                new HashRing.Node[request.getEntriesCount()][];
+        for (int i = 0; i < replicas.length; i++) {
+            replicas[i] = live.replicas(
+                request.getEntries(i).getKey(), replication());
+        }
+
+        HashRing.Node common = null;
+        for (HashRing.Node candidate : replicas[0]) {
+            boolean everywhere = true;
+            for (int i = 1; i < replicas.length && everywhere; i++) {
+                everywhere = false;
+                for (HashRing.Node replica : replicas[i]) {
+                    if (replica.address.equals(candidate.address))
+                        everywhere = true;
+                }
+            }
+            if (everywhere && candidate.local)
+                return candidate;
+            if (everywhere && common == null)
+                common = candidate;
+        }
+        return common;
+    }
+
+    void sendOverloadFail(RequestContext ctx) {
+        serializer.send(ctx, load.overloadMessage());
+    }
+
+    void sendGeneralFail(RequestContext ctx) {
+        serializer.reply(ctx, ErrCode.general_fail_message);
+    }
+
+    /**
+     * Parse, execute and reply to a single received datagram, then hand its
+     * context back to the serializer
+     * @param ctx context returned by the serializer
+     */
+    void process(RequestContext ctx) {
+        try {
+            service(ctx);
+        } finally {
+            serializer.release(ctx);
+        }
+    }
+
+    private void service(RequestContext ctx) {
+        long start = System.nanoTime();
+        metrics.stage(Metrics.RECEIVE, start - ctx.received);
+        if (!serializer.unwrap(ctx))
+            return;
+
+        KeyValueRequest.KVRequest request;
+        KeyValueResponse.KVResponse.Builder response;
+        try {
+            /* Parse straight out of the receive buffer */
+            request = KeyValueRequest.KVRequest.PARSER.parseFrom(
+                    ctx.data, ctx.payload_offset, ctx.payload_length);
+        } catch (InvalidProtocolBufferException ipbe) {
+            sendGeneralFail(ctx);
+            Log.error("Could not parse client message");
+            return;
+        }
+        long parsed = System.nanoTime();
+        metrics.stage(Metrics.PARSE, parsed - start);
+
+        if (route(request, ctx))
+            return;
+
+        /* Updates coordinated here are ordered by the time they came in */
+        if (replicator != null && request.getCommand() != Commands.Get &&
+            Replicator.replicated(request.getCommand()))
+            request = request.toBuilder().setStamp(replicator.stamp()).build();
+
+        try {
+            /* Handle the command and form the reply payload */
+            response = handleCommand(request, ctx);
+            if (replicator != null &&
+                Replicator.replicated(request.getCommand()))
+                response = replicator.coordinate(request, response);
+        } catch(OutOfMemoryError e) {
+            Log.error("Out of memory");
+            return;
+        }
+        long executed = System.nanoTime();
+        metrics.stage(Metrics.EXECUTE, executed - parsed);
+
+        /* Updates are only acknowledged once logged, see receiveBatches */
+        if (wal != null && !ctx.batched && !wal.awaitDurable(ctx.wal_seq)) {
+            response = KeyValueResponse.KVResponse.newBuilder()
+                    .setErrCode(ErrCode.GeneralFail);
+        }
+
+        /* Reply to the client */
+        if (!serializer.reply(ctx, response.build().toByteArray())) {
+            Log.error("Could not send reply!");
+        }
+        long replied = System.nanoTime();
+        metrics.stage(Metrics.REPLY, replied - executed);
+        metrics.request(request.getCommand(), response.getErrCode(),
+            replied - ctx.received);
+        for (int i = 0; i < response.getResultsCount(); i++)
+            metrics.result(response.getResults(i).getErrCode());
     }
 
     /**
      * Constantly listen on the passed in port for key-value requests and
-     * service them accordingly
+     * service them accordingly. Every transport lane gets its own receiving
+     * thread. With a worker pool these threads only receive datagrams and
+     * leave everything else to the workers.
      */
     void receive() {
-        System.out.println("Debugging: Listening!");
+        Log.info("Listening!");
+        for (int lane = 1; lane < serializer.lanes(); lane++) {
+            final int l = lane;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    receive(l);
+                }
+            }, "receiver-" + lane).start();
+        }
+        receive(0);
+    }
+
+    private void receive(int lane) {
+        if (batch_size > 1 && workers == null) {
+            receiveBatches(lane);
+            return;
+        }
+
         /* Constantly listen on the provided port */
         while (true) {
-            byte[] payload = serializer.listen();
-            if (payload == null)
+            final RequestContext ctx = serializer.receive(lane);
+            if (ctx == null)
                 continue;
 
-            if (!checkIfRuntimeMemAvailable()) {
-                sendOverloadFail();
+            if (workers == null) {
+                process(ctx);
                 continue;
             }
 
-            KeyValueRequest.KVRequest request;
-            KeyValueResponse.KVResponse.Builder response;
-            try {
-                request = KeyValueRequest.KVRequest.parseFrom(payload);
-            } catch (InvalidProtocolBufferException ipbe) {
-                sendGeneralFail();
-                System.out.println("Error: Could not parse client message");
+            /* Health checks and the like skip the queue of data requests,
+             * and so do other members' commands, which a member waits for */
+            int command = serializer.peekCommand(ctx);
+            ExecutorService lane_executor = Commands.isControl(command) ?
+                control : Commands.isReplica(command) ? replica_lane : null;
+            if (lane_executor != null) {
+                try {
+                    lane_executor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            process(ctx);
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    metrics.rejected();
+                    serializer.reject(ctx, load.overloadMessage());
+                    serializer.release(ctx);
+                }
                 continue;
             }
 
-            try {
-                /* Handle the command and form the reply payload */
-                response = handleCommand(request);
-            } catch(OutOfMemoryError e) {
-                System.out.println("Error: Out of memory");
+            /* Turn requests away before they queue up beyond the bound */
+            if (!load.admit()) {
+                metrics.rejected();
+                serializer.reject(ctx, load.overloadMessage());
+                serializer.release(ctx);
                 continue;
             }
 
-            /* Reply to the client */
-            if (!serializer.reply(response.build().toByteArray())) {
-                System.out.println("Error: Could not send reply!");
+            /* Contexts are pooled, so is the task that services them */
+            if (ctx.task == null) {
+                ctx.task = new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            process(ctx);
+                        } finally {
+                            load.finished();
+                        }
+                    }
+                };
+            }
+            workers.execute(ctx.task);
+        }
+    }
+
+    /**
+     * Drain whatever datagrams are waiting, service them all and only then
+     * send all of their replies, so that the cost of waking up and of going
+     * back and forth between receiving and sending is shared by the batch.
+     * Only used when the receiving thread services requests itself; workers
+     * reply as soon as they are done.
+     *
+     * The updates of a batch also share a single wait for the write-ahead
+     * log, so they are synced to disk together.
+     */
+    private void receiveBatches(int lane) {
+        RequestContext[] batch = new RequestContext[batch_size];
+        while (true) {
+            int count = serializer.receiveBatch(lane, batch, batch_latency);
+            long wal_seq = 0;
+            for (int i = 0; i < count; i++) {
+                service(batch[i]);
+                wal_seq = Math.max(wal_seq, batch[i].wal_seq);
+            }
+            if (wal != null && !wal.awaitDurable(wal_seq)) {
+                /* The updates never made it to disk, replace their replies
+                 * before flush() caches them or tells anyone */
+                for (int i = 0; i < count; i++) {
+                    if (batch[i].wal_seq > 0)
+                        sendGeneralFail(batch[i]);
+                }
             }
+            serializer.flush(batch, count);
         }
     }
 }
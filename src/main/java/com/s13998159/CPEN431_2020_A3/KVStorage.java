@@ -0,0 +1,48 @@
+package com.s13998159.CPEN431_2020_A3;
+
+import com.google.protobuf.ByteString;
+
+/**
+ * The storage engine behind KVServer. Implementations decide how keys are
+ * laid out and how (or whether) concurrent access is synchronized.
+ */
+interface KVStorage {
+    /**
+     * @param key key to look up
+     * @return the stored value, or null if the key does not exist
+     */
+    KVStorageValue get(ByteString key);
+
+    /**
+     * Stores a value, replacing any value previously stored under the key
+     * @param key key to store the value under
+     * @param value value to store
+     * @throws StorageFullException if there is no room left for the value
+     */
+    void put(ByteString key, KVStorageValue value);
+
+    /**
+     * @param key key to remove
+     * @return true if the key existed
+     */
+    boolean remove(ByteString key);
+
+    /* Removes every key */
+    void clear();
+
+    /* Number of keys currently stored */
+    int size();
+
+    /* Receives the entries of a scan */
+    interface Visitor {
+        void visit(ByteString key, KVStorageValue value);
+    }
+
+    /**
+     * Visits every stored entry. The scan is not a consistent snapshot: each
+     * stripe is copied out under its lock and visited once the lock is
+     * released, so updates carry on while the visitor works.
+     * @param visitor called once for every entry
+     */
+    void scan(Visitor visitor);
+}
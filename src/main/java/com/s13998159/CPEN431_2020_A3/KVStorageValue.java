@@ -0,0 +1,14 @@
+package com.s13998159.CPEN431_2020_A3;
+
+/**
+ * A stored value and its version, as handed in and out by every KVStorage
+ * engine
+ */
+class KVStorageValue {
+    byte[] value;
+    int version;
+    KVStorageValue(byte[] val, int ver) {
+        value = val;
+        version = ver;
+    }
+}
@@ -0,0 +1,105 @@
+package com.s13998159.CPEN431_2020_A3;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Picks which of a fixed number of keys the next request of a load test
+ * goes to. Key 0 is the most popular one wherever popularity is skewed.
+ */
+abstract class KeyDistribution {
+    final int keys;
+
+    KeyDistribution(int keys) {
+        this.keys = keys;
+    }
+
+    /* Index of the next key, from 0 to keys - 1 */
+    abstract int next(Random random);
+
+    /* Every key equally likely */
+    static class Uniform extends KeyDistribution {
+        Uniform(int keys) {
+            super(keys);
+        }
+
+        @Override
+        int next(Random random) {
+            return random.nextInt(keys);
+        }
+    }
+
+    /**
+     * The key of rank k is picked with a probability proportional to
+     * 1 / k^s, by a binary search of the cumulative probabilities
+     */
+    static class Zipf extends KeyDistribution {
+        private final double[] cdf;
+
+        Zipf(int keys, double s) {
+            super(keys);
+            cdf = new double[keys];
+            double sum = 0;
+            for (int k = 0; k < keys; k++) {
+                sum += 1 / Math.pow(k + 1, s);
+                cdf[k] = sum;
+            }
+            for (int k = 0; k < keys; k++)
+                cdf[k] /= sum;
+        }
+
+        @Override
+        int next(Random random) {
+            int i = Arrays.binarySearch(cdf, random.nextDouble());
+            if (i < 0)
+                i = -i - 1;
+            return Math.min(i, keys - 1);
+        }
+    }
+
+    /* A fraction of the keys takes a fraction of the requests, uniformly */
+    static class Hotspot extends KeyDistribution {
+        private final int hot_keys;
+        private final double hot_requests;
+
+        /**
+         * @param hot_fraction share of the keys that are hot
+         * @param hot_requests share of the requests going to hot keys
+         */
+        Hotspot(int keys, double hot_fraction, double hot_requests) {
+            super(keys);
+            this.hot_keys = Math.max(1, Math.min(keys,
+                (int) Math.round(keys * hot_fraction)));
+            this.hot_requests = hot_requests;
+        }
+
+        @Override
+        int next(Random random) {
+            if (hot_keys == keys || random.nextDouble() < hot_requests)
+                return random.nextInt(hot_keys);
+            return hot_keys + random.nextInt(keys - hot_keys);
+        }
+    }
+
+    /**
+     * @param name uniform, zipf or hotspot
+     * @param keys number of keys
+     * @param zipf_s exponent of the zipf distribution
+     * @param hot_fraction share of the keys that are hot
+     * @param hot_requests share of the requests going to hot keys
+     */
+    static KeyDistribution create(String name, int keys, double zipf_s,
+                                  double hot_fraction, double hot_requests) {
+        switch (name) {
+            case "uniform":
+                return new Uniform(keys);
+            case "zipf":
+                return new Zipf(keys, zipf_s);
+            case "hotspot":
+                return new Hotspot(keys, hot_fraction, hot_requests);
+            default:
+                throw new IllegalArgumentException(
+                    "Unknown key distribution: " + name);
+        }
+    }
+}
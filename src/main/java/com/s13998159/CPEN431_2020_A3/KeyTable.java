@@ -0,0 +1,350 @@
+package com.s13998159.CPEN431_2020_A3;
+
+import com.google.protobuf.ByteString;
+
+/**
+ * Open addressing hash table for keys of up to 32 bytes. Nothing is stored
+ * as an object: every slot is a run of longs holding the key bytes, a header
+ * with the key's hash and length, and two longs of value handle that the
+ * caller decides the meaning of. That is 56 bytes per slot no matter how
+ * many keys there are, where a HashMap spends well over 100 bytes on entry
+ * nodes and ByteString wrappers alone.
+ *
+ * Keys are compared a word at a time. Collisions are resolved by linear
+ * probing, and removal shifts the following keys back instead of leaving
+ * tombstones behind.
+ *
+ * Growing the table does not stop the world to rehash. A table twice the size
+ * takes over for inserts and each write moves a few slots of the old table
+ * across, while lookups check both tables until the old one is empty.
+ *
+ * The table is not thread-safe; CompactStorage guards each one with a lock.
+ */
+class KeyTable {
+    static final int KEY_BYTES = 32;
+    private static final int KEY_WORDS = KEY_BYTES / 8;
+
+    /* Headers of an empty slot, and of an old slot that has been moved */
+    private static final long EMPTY = 0;
+    private static final long MOVED = -1;
+
+    /* Lookup result when the key is in neither table */
+    static final int ABSENT = -1;
+
+    private static final int INITIAL_CAPACITY = 64;
+    /* Old slots moved to the new table on every write during a resize */
+    private static final int MIGRATE_STEP = 64;
+
+    /* A key packed into words, along with its hash */
+    static class Key {
+        final long w0, w1, w2, w3;
+        final int length;
+        final long hash;
+
+        Key(ByteString key) {
+            length = key.size();
+            w0 = word(key, 0);
+            w1 = word(key, 1);
+            w2 = word(key, 2);
+            w3 = word(key, 3);
+
+            long h = length;
+            h = (h ^ w0) * 0x9E3779B97F4A7C15L;
+            h = (h ^ w1) * 0x9E3779B97F4A7C15L;
+            h = (h ^ w2) * 0x9E3779B97F4A7C15L;
+            h = (h ^ w3) * 0x9E3779B97F4A7C15L;
+            hash = h ^ (h >>> 29);
+        }
+
+        private static long word(ByteString key, int w) {
+            long word = 0;
+            int end = Math.min(key.size(), (w + 1) * 8);
+            for (int i = end - 1; i >= w * 8; i--)
+                word = (word << 8) | (key.byteAt(i) & 0xFF);
+            return word;
+        }
+
+        long header() {
+            /* The low half is never 0 or all ones, see EMPTY and MOVED */
+            return (hash & 0xFFFFFFFF00000000L) | (length + 1);
+        }
+    }
+
+    /* Visits every key in the table */
+    interface Visitor {
+        /**
+         * @param key the key's bytes
+         * @param chunk first long of the value handle
+         * @param value second long of the value handle
+         */
+        void visit(ByteString key, long chunk, long value);
+    }
+
+    private static class Slots {
+        final long[] keys;
+        final long[] headers;
+        final long[] chunks;
+        final long[] values;
+        final int mask;
+        int used = 0;
+
+        Slots(int capacity) {
+            keys = new long[capacity * KEY_WORDS];
+            headers = new long[capacity];
+            chunks = new long[capacity];
+            values = new long[capacity];
+            mask = capacity - 1;
+        }
+
+        int capacity() {
+            return headers.length;
+        }
+
+        /* Heap bytes taken up by a table of the given capacity */
+        static long bytes(int capacity) {
+            return (long) capacity * (KEY_WORDS + 3) * 8;
+        }
+
+        int home(long header) {
+            return (int) (header >>> 32) & mask;
+        }
+
+        boolean matches(int slot, long header, Key k) {
+            int b = slot * KEY_WORDS;
+            return headers[slot] == header &&
+                   keys[b] == k.w0 && keys[b + 1] == k.w1 &&
+                   keys[b + 2] == k.w2 && keys[b + 3] == k.w3;
+        }
+
+        int find(Key k) {
+            long header = k.header();
+            for (int slot = home(header); ; slot = (slot + 1) & mask) {
+                if (headers[slot] == EMPTY)
+                    return ABSENT;
+                if (matches(slot, header, k))
+                    return slot;
+            }
+        }
+
+        void insert(long header, long w0, long w1, long w2, long w3,
+                    long chunk, long value) {
+            int slot = home(header);
+            while (headers[slot] != EMPTY)
+                slot = (slot + 1) & mask;
+
+            int b = slot * KEY_WORDS;
+            keys[b] = w0;
+            keys[b + 1] = w1;
+            keys[b + 2] = w2;
+            keys[b + 3] = w3;
+            headers[slot] = header;
+            chunks[slot] = chunk;
+            values[slot] = value;
+            used++;
+        }
+
+        /* Empties a slot, shifting back keys that probed past it */
+        void delete(int slot) {
+            int hole = slot;
+            for (int next = (hole + 1) & mask;
+                 headers[next] != EMPTY;
+                 next = (next + 1) & mask) {
+                int home = home(headers[next]);
+                /* Keys whose home lies cyclically in (hole, next] stay put */
+                boolean stays = hole <= next ?
+                        hole < home && home <= next :
+                        hole < home || home <= next;
+                if (stays)
+                    continue;
+
+                System.arraycopy(keys, next * KEY_WORDS,
+                                 keys, hole * KEY_WORDS, KEY_WORDS);
+                headers[hole] = headers[next];
+                chunks[hole] = chunks[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+            headers[hole] = EMPTY;
+            used--;
+        }
+
+        ByteString keyAt(int slot) {
+            int length = (int) (headers[slot] & 0xFFFFFFFFL) - 1;
+            byte[] bytes = new byte[length];
+            for (int i = 0; i < length; i++)
+                bytes[i] = (byte) (keys[slot * KEY_WORDS + i / 8] >>> (8 * (i % 8)));
+            return ByteString.copyFrom(bytes);
+        }
+    }
+
+    private final MemoryBudget budget;
+    private Slots current;
+    /* Table being moved over to current, null unless resizing */
+    private Slots old;
+    private int migrated;
+    private int size = 0;
+
+    KeyTable(MemoryBudget budget) {
+        this.budget = budget;
+        current = allocate(INITIAL_CAPACITY);
+    }
+
+    private Slots allocate(int capacity) {
+        if (!budget.reserveStorage(Slots.bytes(capacity)))
+            throw new StorageFullException("Memory budget exhausted");
+        return new Slots(capacity);
+    }
+
+    private static boolean live(long header) {
+        return header != EMPTY && header != MOVED;
+    }
+
+    /* Moves the next few slots of the old table across */
+    private void migrate(int steps) {
+        if (old == null)
+            return;
+
+        int end = Math.min(migrated + steps, old.capacity());
+        for (; migrated < end; migrated++) {
+            long header = old.headers[migrated];
+            if (!live(header))
+                continue;
+            int b = migrated * KEY_WORDS;
+            current.insert(header, old.keys[b], old.keys[b + 1],
+                old.keys[b + 2], old.keys[b + 3],
+                old.chunks[migrated], old.values[migrated]);
+            old.headers[migrated] = MOVED;
+        }
+
+        if (migrated == old.capacity()) {
+            budget.releaseStorage(Slots.bytes(old.capacity()));
+            old = null;
+        }
+    }
+
+    /* Old table slot of a key, moved slots are skipped over */
+    private int findOld(Key k) {
+        long header = k.header();
+        for (int slot = old.home(header); ; slot = (slot + 1) & old.mask) {
+            if (old.headers[slot] == EMPTY)
+                return ABSENT;
+            if (old.matches(slot, header, k))
+                return slot;
+        }
+    }
+
+    /**
+     * @return reference to the key's slot for chunk() and value(), or ABSENT
+     */
+    int find(Key k) {
+        int slot = current.find(k);
+        if (slot != ABSENT || old == null)
+            return slot;
+
+        slot = findOld(k);
+        /* Old table slots are told apart by being encoded below ABSENT */
+        return slot == ABSENT ? ABSENT : -2 - slot;
+    }
+
+    long chunk(int ref) {
+        return ref >= 0 ? current.chunks[ref] : old.chunks[-2 - ref];
+    }
+
+    long value(int ref) {
+        return ref >= 0 ? current.values[ref] : old.values[-2 - ref];
+    }
+
+    /**
+     * Stores a value handle for a key
+     * @return the chunk the key had before, or ABSENT if it is a new key
+     * @throws StorageFullException if the table cannot grow
+     */
+    long put(Key k, long chunk, long value) {
+        migrate(MIGRATE_STEP);
+
+        int slot = current.find(k);
+        if (slot != ABSENT) {
+            long previous = current.chunks[slot];
+            current.chunks[slot] = chunk;
+            current.values[slot] = value;
+            return previous;
+        }
+
+        /* Grow before a key has to be taken out of the old table */
+        if (4 * (current.used + 1) > 3 * current.capacity()) {
+            if (old != null)
+                migrate(old.capacity());
+            Slots bigger = allocate(2 * current.capacity());
+            old = current;
+            current = bigger;
+            migrated = 0;
+        }
+
+        long previous = ABSENT;
+        if (old != null) {
+            slot = findOld(k);
+            if (slot != ABSENT) {
+                previous = old.chunks[slot];
+                old.headers[slot] = MOVED;
+                size--;
+            }
+        }
+
+        current.insert(k.header(), k.w0, k.w1, k.w2, k.w3, chunk, value);
+        size++;
+        return previous;
+    }
+
+    /**
+     * Removes a key
+     * @return the chunk the key had, or ABSENT if it did not exist
+     */
+    long remove(Key k) {
+        migrate(MIGRATE_STEP);
+
+        int slot = current.find(k);
+        if (slot != ABSENT) {
+            long previous = current.chunks[slot];
+            current.delete(slot);
+            size--;
+            return previous;
+        }
+
+        if (old != null) {
+            slot = findOld(k);
+            if (slot != ABSENT) {
+                old.headers[slot] = MOVED;
+                size--;
+                return old.chunks[slot];
+            }
+        }
+        return ABSENT;
+    }
+
+    void forEach(Visitor visitor) {
+        Slots[] tables = old == null ?
+                new Slots[] {current} : new Slots[] {current, old};
+        for (Slots table : tables) {
+            for (int slot = 0; slot < table.capacity(); slot++) {
+                if (live(table.headers[slot])) {
+                    visitor.visit(table.keyAt(slot),
+                        table.chunks[slot], table.values[slot]);
+                }
+            }
+        }
+    }
+
+    /* Removes every key and shrinks back to the initial capacity */
+    void clear() {
+        budget.releaseStorage(Slots.bytes(current.capacity()));
+        if (old != null)
+            budget.releaseStorage(Slots.bytes(old.capacity()));
+        old = null;
+        size = 0;
+        current = allocate(INITIAL_CAPACITY);
+    }
+
+    int size() {
+        return size;
+    }
+}
@@ -0,0 +1,168 @@
+package com.s13998159.CPEN431_2020_A3;
+
+import com.google.protobuf.ByteString;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Storage for a server restarting from a snapshot. The real storage engine
+ * starts out empty and is filled from the snapshot in the background, while
+ * lookups of keys it does not have yet are answered from the mapped snapshot
+ * file. The server therefore serves requests as soon as the snapshot is
+ * mapped, however many keys it holds.
+ *
+ * Keys removed while the snapshot is still in use are remembered, so that
+ * neither lookups nor the loader bring them back. Once the whole snapshot is
+ * loaded, or storage is wiped out, every call goes straight to the engine.
+ */
+class LayeredStorage implements KVStorage {
+    private final KVStorage live;
+    /* Null once the snapshot is no longer needed */
+    private volatile Snapshot snapshot;
+    private final Set<ByteString> removed = Collections.newSetFromMap(
+            new ConcurrentHashMap<ByteString,Boolean>());
+
+    /* Keep updates of a key from racing with the loader copying it */
+    private final ReentrantLock[] locks = new ReentrantLock[64];
+
+    /**
+     * @param live empty storage engine to load the snapshot into
+     * @param snapshot snapshot to serve lookups from until it is loaded
+     */
+    LayeredStorage(KVStorage live, Snapshot snapshot) {
+        this.live = live;
+        this.snapshot = snapshot;
+        for (int i = 0; i < locks.length; i++)
+            locks[i] = new ReentrantLock();
+    }
+
+    private ReentrantLock lockOf(ByteString key) {
+        int h = key.hashCode();
+        return locks[(h ^ (h >>> 16)) & (locks.length - 1)];
+    }
+
+    /**
+     * Copies every entry of the snapshot the engine has not got a newer
+     * version of. Runs on a background thread while requests are served.
+     * @return true if the snapshot is no longer needed
+     */
+    boolean load() {
+        final Snapshot s = snapshot;
+        if (s == null)
+            return true;
+
+        try {
+            s.forEach(new Visitor() {
+                @Override
+                public void visit(ByteString key, KVStorageValue value) {
+                    ReentrantLock lock = lockOf(key);
+                    lock.lock();
+                    try {
+                        if (snapshot != null && !removed.contains(key) &&
+                            live.get(key) == null)
+                            live.put(key, value);
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            });
+        } catch (StorageFullException e) {
+            /* Whatever did not fit keeps being served from the snapshot */
+            Log.error("Storage full while loading snapshot");
+            return false;
+        }
+        snapshot = null;
+        return true;
+    }
+
+    @Override
+    public KVStorageValue get(ByteString key) {
+        KVStorageValue value = live.get(key);
+        if (value != null)
+            return value;
+
+        Snapshot s = snapshot;
+        if (s == null || removed.contains(key))
+            return null;
+        return s.get(key);
+    }
+
+    @Override
+    public void put(ByteString key, KVStorageValue value) {
+        if (snapshot == null) {
+            live.put(key, value);
+            return;
+        }
+
+        ReentrantLock lock = lockOf(key);
+        lock.lock();
+        try {
+            live.put(key, value);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(ByteString key) {
+        if (snapshot == null)
+            return live.remove(key);
+
+        ReentrantLock lock = lockOf(key);
+        lock.lock();
+        try {
+            Snapshot s = snapshot;
+            boolean existed = live.remove(key);
+            if (s != null && !removed.contains(key)) {
+                existed |= s.get(key) != null;
+                removed.add(key);
+            }
+            return existed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (ReentrantLock lock : locks)
+            lock.lock();
+        try {
+            snapshot = null;
+            live.clear();
+        } finally {
+            for (ReentrantLock lock : locks)
+                lock.unlock();
+        }
+    }
+
+    /* Includes snapshot entries not loaded yet, so it is an estimate */
+    @Override
+    public int size() {
+        Snapshot s = snapshot;
+        return s == null ? live.size() : Math.max(live.size(), s.size());
+    }
+
+    /*
+     * The snapshot goes first: an entry the loader copies in the meantime is
+     * then still found by the scan of the engine, at worst twice. Updates
+     * racing with the scan are logged, so replay settles either copy.
+     */
+    @Override
+    public void scan(final Visitor visitor) {
+        Snapshot s = snapshot;
+        if (s != null) {
+            s.forEach(new Visitor() {
+                @Override
+                public void visit(ByteString key, KVStorageValue value) {
+                    if (!removed.contains(key) && live.get(key) == null)
+                        visitor.visit(key, value);
+                }
+            });
+        }
+        live.scan(visitor);
+    }
+}
@@ -0,0 +1,121 @@
+package com.s13998159.CPEN431_2020_A3;
+
+import ca.NetSysLab.ProtocolBuffers.KeyValueResponse;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures how many requests wait to be serviced and how fast they are
+ * serviced, and turns requests away once too many are waiting. A refused
+ * client is told to wait for about as long as the requests already waiting
+ * take to drain, rather than retrying straight into a full queue.
+ *
+ * The service rate is a moving average over the intervals in which there
+ * was work to do, so idle periods do not make the server look slow.
+ */
+class LoadMonitor {
+    private static final long SAMPLE_INTERVAL = 100; //ms
+    /* Weight of the latest interval in the moving average */
+    private static final double WEIGHT = 0.25;
+    /* Bounds of the wait time handed to clients */
+    private static final int MIN_WAIT = 10; //ms
+    private static final int MAX_WAIT = 5000; //ms
+    /* Wait time before the service rate has been measured */
+    private static final int DEFAULT_WAIT = 100; //ms
+
+    private final int max_queue;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+
+    /* Requests serviced per second, 0 until measured */
+    private volatile double rate = 0;
+    private long last_completed = 0;
+
+    /**
+     * @param max_queue requests that may wait to be serviced at most
+     */
+    LoadMonitor(int max_queue) {
+        this.max_queue = max_queue;
+
+        ScheduledExecutorService sampler =
+                Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "load-monitor");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        sampler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                sample();
+            }
+        }, SAMPLE_INTERVAL, SAMPLE_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    private void sample() {
+        long done = completed.get();
+        long serviced = done - last_completed;
+        last_completed = done;
+        if (serviced == 0 && queued.get() == 0)
+            return;
+
+        double current = serviced * 1000.0 / SAMPLE_INTERVAL;
+        rate = rate == 0 ? current : (1 - WEIGHT) * rate + WEIGHT * current;
+    }
+
+    /**
+     * Counts a request in, unless too many are waiting already
+     * @return true if the request is to be serviced, in which case
+     * finished() has to follow
+     */
+    boolean admit() {
+        if (queued.incrementAndGet() > max_queue) {
+            queued.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /* Counts an admitted request out once it has been serviced */
+    void finished() {
+        queued.decrementAndGet();
+        completed.incrementAndGet();
+    }
+
+    /* Requests admitted and not yet serviced */
+    int queueDepth() {
+        return queued.get();
+    }
+
+    /* Requests serviced per second, 0 until measured */
+    double serviceRate() {
+        return rate;
+    }
+
+    /**
+     * @return how long the requests waiting now take to be serviced, in
+     * milliseconds, within MIN_WAIT and MAX_WAIT
+     */
+    int waitTime() {
+        double r = rate;
+        if (r == 0)
+            return DEFAULT_WAIT;
+        long wait = (long)Math.ceil(queued.get() * 1000.0 / r);
+        return (int)Math.max(MIN_WAIT, Math.min(wait, MAX_WAIT));
+    }
+
+    /* Overload reply telling the client how long to wait */
+    byte[] overloadMessage() {
+        return KeyValueResponse.KVResponse.newBuilder()
+                .setErrCode(ErrCode.Overload)
+                .setOverloadWaitTime(waitTime())
+                .build().toByteArray();
+    }
+}
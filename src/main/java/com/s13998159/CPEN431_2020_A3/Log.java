@@ -0,0 +1,223 @@
+package com.s13998159.CPEN431_2020_A3;
+
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Logging off the request path. A thread that logs only claims a slot of a
+ * ring buffer with a compare-and-set and leaves the entry there; a single
+ * background thread formats the entries and writes them to standard output
+ * in batches. Nobody waits for the console or for each other, and an entry
+ * that finds the ring full is dropped and counted rather than blocking.
+ *
+ * Entries below the level are discarded before anything is allocated.
+ * Where building the message costs something, check debugging() first:
+ *
+ *     if (Log.debugging())
+ *         Log.debug("Handling command " + request.getCommand());
+ *
+ * The level is set with --log and can be changed at runtime over JMX.
+ */
+public class Log implements LogMBean {
+    static final int DEBUG = 0;
+    static final int INFO = 1;
+    static final int ERROR = 2;
+    static final int OFF = 3;
+    private static final String[] LEVELS = {"DEBUG", "INFO", "ERROR", "OFF"};
+
+    private static final int CAPACITY = 1 << 14; //entries
+    /* Time the writer sleeps once it has caught up */
+    private static final long IDLE = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private static volatile int level = INFO;
+
+    private static final class Entry {
+        final long time;
+        final int level;
+        final String thread;
+        final String message;
+
+        Entry(int level, String message) {
+            this.time = System.currentTimeMillis();
+            this.level = level;
+            this.thread = Thread.currentThread().getName();
+            this.message = message;
+        }
+    }
+
+    /* Slot i holds entry i modulo CAPACITY until it has been written */
+    private static final AtomicReferenceArray<Entry> ring =
+            new AtomicReferenceArray<>(CAPACITY);
+    /* Next entry to be claimed */
+    private static final AtomicLong head = new AtomicLong();
+    /* Next entry to be written, only advanced by the writer */
+    private static volatile long tail = 0;
+    private static final LongAdder dropped = new LongAdder();
+
+    /* Only touched by whoever drains the ring, see drain() */
+    private static final Writer out = new BufferedWriter(new OutputStreamWriter(
+            new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8),
+            1 << 16);
+    private static final SimpleDateFormat format =
+            new SimpleDateFormat("HH:mm:ss.SSS");
+    private static long reported_drops = 0;
+
+    static {
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (true) {
+                    if (!drain())
+                        LockSupport.parkNanos(IDLE);
+                }
+            }
+        }, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+
+        /* Whatever is still in the ring when the server exits */
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        }));
+    }
+
+    private Log() {
+    }
+
+    static boolean debugging() {
+        return level <= DEBUG;
+    }
+
+    static void debug(String message) {
+        if (level <= DEBUG)
+            append(DEBUG, message);
+    }
+
+    static void info(String message) {
+        if (level <= INFO)
+            append(INFO, message);
+    }
+
+    static void error(String message) {
+        if (level <= ERROR)
+            append(ERROR, message);
+    }
+
+    /**
+     * @param name DEBUG, INFO, ERROR or OFF, in any case
+     * @throws IllegalArgumentException if there is no such level
+     */
+    static void level(String name) {
+        for (int l = 0; l < LEVELS.length; l++) {
+            if (LEVELS[l].equalsIgnoreCase(name)) {
+                level = l;
+                return;
+            }
+        }
+        throw new IllegalArgumentException("Unknown log level: " + name);
+    }
+
+    /* Makes the level adjustable over JMX */
+    static void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new Log(),
+                new javax.management.ObjectName(
+                    "com.s13998159.CPEN431_2020_A3:type=Log"));
+        } catch (Exception e) {
+            error("Could not register the log level with JMX");
+        }
+    }
+
+    static long dropped() {
+        return dropped.sum();
+    }
+
+    private static void append(int level, String message) {
+        Entry entry = new Entry(level, message);
+        long slot;
+        do {
+            slot = head.get();
+            if (slot - tail >= CAPACITY) {
+                dropped.increment();
+                return;
+            }
+        } while (!head.compareAndSet(slot, slot + 1));
+        ring.lazySet((int) slot & (CAPACITY - 1), entry);
+    }
+
+    /**
+     * Writes out every entry published so far and flushes them
+     * @return false if there was nothing to write
+     */
+    private static synchronized boolean drain() {
+        long next = tail;
+        int written = 0;
+        try {
+            while (true) {
+                int index = (int) next & (CAPACITY - 1);
+                /* Null until the thread that claimed the slot fills it */
+                Entry entry = ring.get(index);
+                if (entry == null)
+                    break;
+                ring.lazySet(index, null);
+                tail = ++next;
+                write(entry);
+                written++;
+            }
+            long drops = dropped.sum();
+            if (drops != reported_drops) {
+                write(new Entry(ERROR, (drops - reported_drops) +
+                    " log entries dropped, the writer fell behind"));
+                reported_drops = drops;
+                written++;
+            }
+            if (written > 0)
+                out.flush();
+        } catch (IOException e) {
+            /* Nowhere left to complain to */
+        }
+        return written > 0;
+    }
+
+    private static void write(Entry entry) throws IOException {
+        out.write(format.format(new Date(entry.time)));
+        out.write(' ');
+        out.write(LEVELS[entry.level]);
+        out.write(" [");
+        out.write(entry.thread);
+        out.write("] ");
+        out.write(String.valueOf(entry.message));
+        out.write('\n');
+    }
+
+    @Override
+    public String getLevel() {
+        return LEVELS[level];
+    }
+
+    @Override
+    public void setLevel(String name) {
+        level(name);
+    }
+
+    @Override
+    public long getDropped() {
+        return dropped();
+    }
+}
@@ -0,0 +1,15 @@
+package com.s13998159.CPEN431_2020_A3;
+
+/**
+ * What Log exposes over JMX, as com.s13998159.CPEN431_2020_A3:type=Log, so
+ * that tracing can be switched on and off while the server runs.
+ */
+public interface LogMBean {
+    /* DEBUG, INFO, ERROR or OFF */
+    String getLevel();
+
+    void setLevel(String level);
+
+    /* Entries lost because the writer fell behind */
+    long getDropped();
+}
@@ -2,7 +2,7 @@ package com.s13998159.CPEN431_2020_A3;
 
 public class Main {
     public static void main(String[] args) {
-        KVServer server = new KVServer((short) 18159);
+        KVServer server = new KVServer(ServerConfig.parse(args));
         server.receive();
     }
 }
@@ -0,0 +1,114 @@
+package com.s13998159.CPEN431_2020_A3;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps count of the heap bytes taken up by stored keys and values and by
+ * cached replies, as they are inserted and removed. Unlike polling
+ * Runtime.freeMemory(), the count does not depend on when the garbage
+ * collector last ran, so the same sequence of requests always gets the same
+ * NoSpace and Overload answers.
+ *
+ * Part of the capacity is held back for the AMOS reply cache. Storage and
+ * cache are counted apart, each against its own share: a full store still
+ * leaves room to answer requests, and a burst of cached replies never takes
+ * room that storage was promised.
+ */
+class MemoryBudget {
+    /*
+     * Estimated JVM overhead of one stored key beyond the key and value
+     * bytes, for a 64-bit JVM with compressed references: HashMap node and
+     * table slot, ByteString and KVStorageValue wrappers and the headers of
+     * both byte arrays.
+     */
+    static final int ENTRY_OVERHEAD = 128; //B
+
+    /* Same for the off-heap engine, whose value bytes live in the arena */
+    static final int HANDLE_OVERHEAD = 112; //B
+
+    /* ReplyCache entry, its hash bucket and the reply array header */
+    static final int CACHE_ENTRY_OVERHEAD = 72; //B
+
+    private final long capacity;
+    private final long cache_reserve;
+    private final AtomicLong storage = new AtomicLong();
+    private final AtomicLong cache = new AtomicLong();
+
+    /**
+     * @param capacity total number of bytes that may be accounted for
+     * @param cache_reserve part of the capacity that only the reply cache
+     *                      may use
+     */
+    MemoryBudget(long capacity, long cache_reserve) {
+        this.capacity = capacity;
+        this.cache_reserve = Math.min(cache_reserve, capacity);
+    }
+
+    /* Bytes taken up by an array of the given length, rounded up to the
+     * 8 byte object alignment */
+    static long align(long length) {
+        return (length + 7) & ~7L;
+    }
+
+    /**
+     * @return heap bytes accounted for one key stored on-heap
+     */
+    static long entryBytes(int key_length, int value_length) {
+        return ENTRY_OVERHEAD + align(key_length) + align(value_length);
+    }
+
+    /**
+     * @return heap bytes accounted for one cached reply
+     */
+    static long cacheBytes(int reply_length) {
+        return CACHE_ENTRY_OVERHEAD + align(reply_length);
+    }
+
+    private static boolean reserve(AtomicLong used, long bytes, long limit) {
+        while (true) {
+            long current = used.get();
+            if (current + bytes > limit)
+                return false;
+            if (used.compareAndSet(current, current + bytes))
+                return true;
+        }
+    }
+
+    /**
+     * Claims room for data about to be stored
+     * @return false if storing the bytes would eat into the cache reserve
+     */
+    boolean reserveStorage(long bytes) {
+        return reserve(storage, bytes, capacity - cache_reserve);
+    }
+
+    /**
+     * Claims room for a reply about to be cached
+     * @return false if the cache reserve is used up
+     */
+    boolean reserveCache(long bytes) {
+        return reserve(cache, bytes, cache_reserve);
+    }
+
+    /* Returns bytes previously reserved with reserveStorage() */
+    void releaseStorage(long bytes) {
+        storage.addAndGet(-bytes);
+    }
+
+    /* Returns bytes previously reserved with reserveCache() */
+    void releaseCache(long bytes) {
+        cache.addAndGet(-bytes);
+    }
+
+    long used() {
+        return storage.get() + cache.get();
+    }
+
+    long available() {
+        return capacity - used();
+    }
+
+    long capacity() {
+        return capacity;
+    }
+}
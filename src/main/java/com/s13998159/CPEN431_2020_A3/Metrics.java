@@ -0,0 +1,355 @@
+package com.s13998159.CPEN431_2020_A3;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms of the server. Request threads only ever
+ * add to LongAdders and record into HdrHistogram Recorders, neither of which
+ * takes a lock, so recording costs a few nanoseconds and never makes request
+ * threads wait for one another or for a reader.
+ *
+ * Readers fold the recorders into histograms covering the whole run. The
+ * figures are published over JMX and, if a port is configured, as plain
+ * text over HTTP, one "name{labels} value" line per figure.
+ */
+public class Metrics implements MetricsMBean {
+    /* Stages a request goes through, timed separately */
+    static final int RECEIVE = 0;
+    static final int PARSE = 1;
+    static final int EXECUTE = 2;
+    static final int REPLY = 3;
+    private static final String[] STAGES = {"receive", "parse", "execute", "reply"};
+
+    private static final int COMMANDS = Commands.MultiRemove + 1;
+    /* Up to the highest error code, most of the range is unassigned */
+    private static final int ERR_CODES = ErrCode.Stale + 1;
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    /* A figure read when the metrics are, e.g. the number of stored keys */
+    interface Gauge {
+        long value();
+    }
+
+    /* Per command: requests and their latency from receive to reply, in us */
+    private final LongAdder[] requests = new LongAdder[COMMANDS];
+    private final Recorder[] latencies = new Recorder[COMMANDS];
+    private final Histogram[] latency_totals = new Histogram[COMMANDS];
+
+    /* Per stage: latency of every request, in us */
+    private final Recorder[] stages = new Recorder[STAGES.length];
+    private final Histogram[] stage_totals = new Histogram[STAGES.length];
+    private final Histogram all_total = new Histogram(3);
+
+    private final LongAdder[] err_codes = new LongAdder[ERR_CODES];
+    /* Per error code: results of the operations of multi-key commands */
+    private final LongAdder[] results = new LongAdder[ERR_CODES];
+    private final LongAdder cache_hits = new LongAdder();
+    private final LongAdder cache_misses = new LongAdder();
+    private final LongAdder cache_parked = new LongAdder();
+    private final LongAdder forwarded = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /* Keys moved to other members after membership changes */
+    private final LongAdder handoff_sent = new LongAdder();
+    private final LongAdder handoff_bytes = new LongAdder();
+    private final LongAdder handoff_pending = new LongAdder();
+    private final LongAdder handoff_received = new LongAdder();
+    private final LongAdder handoff_done = new LongAdder();
+    private final LongAdder handoff_failed = new LongAdder();
+
+    private final Map<String,Gauge> gauges = new LinkedHashMap<>();
+
+    Metrics() {
+        for (int c = 0; c < COMMANDS; c++) {
+            if (name(c) == null)
+                continue;
+            requests[c] = new LongAdder();
+            latencies[c] = new Recorder(3);
+            latency_totals[c] = new Histogram(3);
+        }
+        for (int s = 0; s < STAGES.length; s++) {
+            stages[s] = new Recorder(3);
+            stage_totals[s] = new Histogram(3);
+        }
+        for (int e = 0; e < ERR_CODES; e++) {
+            err_codes[e] = new LongAdder();
+            results[e] = new LongAdder();
+        }
+    }
+
+    private static String name(int command) {
+        switch (command) {
+            case Commands.Put: return "put";
+            case Commands.Get: return "get";
+            case Commands.Remove: return "remove";
+            case Commands.Shutdown: return "shutdown";
+            case Commands.Wipeout: return "wipeout";
+            case Commands.isAlive: return "is_alive";
+            case Commands.GetPID: return "get_pid";
+            case Commands.GetMembershipCount: return "get_membership_count";
+            case Commands.ReplicaPut: return "replica_put";
+            case Commands.ReplicaGet: return "replica_get";
+            case Commands.ReplicaRemove: return "replica_remove";
+            case Commands.MultiPut: return "multi_put";
+            case Commands.MultiGet: return "multi_get";
+            case Commands.MultiRemove: return "multi_remove";
+            default: return null;
+        }
+    }
+
+    /* Adds a figure to be read on every scrape; call before start() */
+    void gauge(String name, Gauge gauge) {
+        gauges.put(name, gauge);
+    }
+
+    /**
+     * Registers the JMX bean and starts the scrape endpoint
+     * @param http_port port of the endpoint, 0 for none
+     */
+    void start(int http_port) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+                new javax.management.ObjectName(
+                    "com.s13998159.CPEN431_2020_A3:type=Metrics"));
+        } catch (Exception e) {
+            Log.error("Could not register metrics with JMX");
+        }
+        if (http_port == 0)
+            return;
+
+        try {
+            HttpServer http = HttpServer.create(new InetSocketAddress(http_port), 0);
+            http.createContext("/metrics", new HttpHandler() {
+                @Override
+                public void handle(HttpExchange exchange) throws IOException {
+                    byte[] body = getReport().getBytes(StandardCharsets.UTF_8);
+                    exchange.getResponseHeaders().set(
+                        "Content-Type", "text/plain; charset=utf-8");
+                    exchange.sendResponseHeaders(200, body.length);
+                    try (OutputStream out = exchange.getResponseBody()) {
+                        out.write(body);
+                    }
+                }
+            });
+            http.start();
+        } catch (IOException e) {
+            Log.error("Could not open metrics port " + http_port);
+        }
+    }
+
+    private static long micros(long nanos) {
+        return Math.max(0, nanos / 1000);
+    }
+
+    /* Time a request spent in a stage */
+    void stage(int stage, long nanos) {
+        stages[stage].recordValue(micros(nanos));
+    }
+
+    /**
+     * Counts a request that was replied to
+     * @param command command of the request
+     * @param err_code error code of the reply
+     * @param nanos time from receiving the request to replying
+     */
+    void request(int command, int err_code, long nanos) {
+        if (command >= 0 && command < COMMANDS && requests[command] != null) {
+            requests[command].increment();
+            latencies[command].recordValue(micros(nanos));
+        }
+        if (err_code >= 0 && err_code < ERR_CODES)
+            err_codes[err_code].increment();
+    }
+
+    /* Result of one operation of a MultiPut, MultiGet or MultiRemove */
+    void result(int err_code) {
+        if (err_code >= 0 && err_code < ERR_CODES)
+            results[err_code].increment();
+    }
+
+    void cacheHit() {
+        cache_hits.increment();
+    }
+
+    void cacheMiss() {
+        cache_misses.increment();
+    }
+
+    /* A retransmission of a request still in flight */
+    void cacheParked() {
+        cache_parked.increment();
+    }
+
+    /* A request passed on to another node */
+    void forwarded() {
+        forwarded.increment();
+    }
+
+    /* A request turned away because the server was overloaded */
+    void rejected() {
+        rejected.increment();
+    }
+
+    /* Keys about to be sent to another member, or taken back off the
+     * count when negative */
+    void handoffPending(long keys) {
+        handoff_pending.add(keys);
+    }
+
+    /* Keys of a transfer gone out to their member, in so many bytes */
+    void handoffSent(long keys, long bytes) {
+        handoff_sent.add(keys);
+        handoff_bytes.add(bytes);
+        handoff_pending.add(-keys);
+    }
+
+    /* Keys stored that another member sent over */
+    void handoffReceived(long keys) {
+        handoff_received.add(keys);
+    }
+
+    /* A transfer to a member is over, complete or not */
+    void handoffFinished(boolean complete) {
+        if (complete)
+            handoff_done.increment();
+        else
+            handoff_failed.increment();
+    }
+
+    /* Folds everything recorded since the last read into the totals */
+    private synchronized void fold() {
+        for (int c = 0; c < COMMANDS; c++) {
+            if (latencies[c] == null)
+                continue;
+            Histogram interval = latencies[c].getIntervalHistogram();
+            latency_totals[c].add(interval);
+            all_total.add(interval);
+        }
+        for (int s = 0; s < STAGES.length; s++)
+            stage_totals[s].add(stages[s].getIntervalHistogram());
+    }
+
+    @Override
+    public long getRequests() {
+        long total = 0;
+        for (LongAdder count : requests) {
+            if (count != null)
+                total += count.sum();
+        }
+        return total;
+    }
+
+    @Override
+    public long getCacheHits() {
+        return cache_hits.sum();
+    }
+
+    @Override
+    public long getCacheMisses() {
+        return cache_misses.sum();
+    }
+
+    @Override
+    public long getStorageSize() {
+        Gauge size = gauges.get("storage_keys");
+        return size == null ? 0 : size.value();
+    }
+
+    private synchronized long latency(double percentile) {
+        fold();
+        return all_total.getValueAtPercentile(percentile);
+    }
+
+    @Override
+    public long getLatencyP50() {
+        return latency(50);
+    }
+
+    @Override
+    public long getLatencyP99() {
+        return latency(99);
+    }
+
+    @Override
+    public long getLatencyP999() {
+        return latency(99.9);
+    }
+
+    @Override
+    public synchronized String getReport() {
+        fold();
+        StringBuilder out = new StringBuilder();
+        for (int c = 0; c < COMMANDS; c++) {
+            if (requests[c] == null)
+                continue;
+            String labels = "command=\"" + name(c) + "\"";
+            line(out, "kv_requests_total", labels, requests[c].sum());
+            if (latency_totals[c].getTotalCount() > 0)
+                quantiles(out, "kv_latency_us", labels, latency_totals[c]);
+        }
+        for (int s = 0; s < STAGES.length; s++) {
+            quantiles(out, "kv_stage_latency_us",
+                "stage=\"" + STAGES[s] + "\"", stage_totals[s]);
+        }
+        /* Only codes that were ever sent */
+        for (int e = 0; e < ERR_CODES; e++) {
+            long replies = err_codes[e].sum();
+            if (replies > 0)
+                line(out, "kv_replies_total", "err_code=\"" + e + "\"", replies);
+        }
+        for (int e = 0; e < ERR_CODES; e++) {
+            long operations = results[e].sum();
+            if (operations > 0) {
+                line(out, "kv_multi_results_total", "err_code=\"" + e + "\"",
+                    operations);
+            }
+        }
+        line(out, "kv_reply_cache_total", "result=\"hit\"", cache_hits.sum());
+        line(out, "kv_reply_cache_total", "result=\"miss\"", cache_misses.sum());
+        line(out, "kv_reply_cache_total", "result=\"parked\"", cache_parked.sum());
+        line(out, "kv_forwarded_total", null, forwarded.sum());
+        line(out, "kv_rejected_total", null, rejected.sum());
+        line(out, "kv_handoff_keys_total", "result=\"sent\"", handoff_sent.sum());
+        line(out, "kv_handoff_keys_total", "result=\"received\"",
+            handoff_received.sum());
+        line(out, "kv_handoff_bytes_total", null, handoff_bytes.sum());
+        line(out, "kv_handoff_pending_keys", null, handoff_pending.sum());
+        line(out, "kv_handoff_transfers_total", "result=\"done\"",
+            handoff_done.sum());
+        line(out, "kv_handoff_transfers_total", "result=\"failed\"",
+            handoff_failed.sum());
+        for (Map.Entry<String,Gauge> gauge : gauges.entrySet())
+            line(out, "kv_" + gauge.getKey(), null, gauge.getValue().value());
+        return out.toString();
+    }
+
+    private static void line(StringBuilder out, String name, String labels,
+                             long value) {
+        out.append(name);
+        if (labels != null)
+            out.append('{').append(labels).append('}');
+        out.append(' ').append(value).append('\n');
+    }
+
+    private static void quantiles(StringBuilder out, String name,
+                                  String labels, Histogram histogram) {
+        for (double q : QUANTILES) {
+            line(out, name, labels + ",quantile=\"" + q + "\"",
+                histogram.getValueAtPercentile(q * 100));
+        }
+        line(out, name, labels + ",quantile=\"1.0\"", histogram.getMaxValue());
+    }
+}
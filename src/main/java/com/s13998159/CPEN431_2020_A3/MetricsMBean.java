@@ -0,0 +1,24 @@
+package com.s13998159.CPEN431_2020_A3;
+
+/**
+ * What Metrics exposes over JMX, as com.s13998159.CPEN431_2020_A3:type=Metrics.
+ * Latencies are in microseconds, since the server started.
+ */
+public interface MetricsMBean {
+    long getRequests();
+
+    long getCacheHits();
+
+    long getCacheMisses();
+
+    long getStorageSize();
+
+    long getLatencyP50();
+
+    long getLatencyP99();
+
+    long getLatencyP999();
+
+    /* Everything, in the format of the scrape endpoint */
+    String getReport();
+}
@@ -0,0 +1,187 @@
+package com.s13998159.CPEN431_2020_A3;
+
+import com.google.protobuf.ByteString;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Storage engine that keeps values outside the Java heap. The stripes only
+ * map keys to compact handles into a SlabArena, so millions of stored values
+ * no longer have to be traced and copied by the garbage collector. Striping
+ * works as in StripedStorage.
+ *
+ * Only the keys and handles count against the heap MemoryBudget, the arena
+ * keeps exact count of the value bytes and enforces its own capacity.
+ */
+class OffHeapStorage implements KVStorage {
+    /* Location of a value in the arena */
+    private static class Handle {
+        final long chunk;
+        final int length;
+        final int version;
+
+        Handle(long chunk, int length, int version) {
+            this.chunk = chunk;
+            this.length = length;
+            this.version = version;
+        }
+    }
+
+    private final SlabArena arena;
+    private final HashMap<ByteString,Handle>[] stripes;
+    private final ReadWriteLock[] locks;
+    private final int mask;
+    private final MemoryBudget budget;
+
+    /**
+     * @param concurrency expected number of threads accessing the storage
+     * @param capacity maximum number of bytes of values to keep off-heap
+     * @param budget accounts for the heap bytes of every stored key
+     */
+    @SuppressWarnings("unchecked")
+    OffHeapStorage(int concurrency, long capacity, MemoryBudget budget) {
+        this.budget = budget;
+        arena = new SlabArena(capacity);
+        int count = Integer.highestOneBit(Math.max(1, concurrency * 4) - 1) << 1;
+        stripes = (HashMap<ByteString,Handle>[]) new HashMap<?,?>[count];
+        locks = new ReadWriteLock[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new HashMap<>();
+            locks[i] = new ReentrantReadWriteLock();
+        }
+        mask = count - 1;
+    }
+
+    private int stripeOf(ByteString key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private static long heapBytes(ByteString key) {
+        return MemoryBudget.HANDLE_OVERHEAD + MemoryBudget.align(key.size());
+    }
+
+    @Override
+    public KVStorageValue get(ByteString key) {
+        int i = stripeOf(key);
+        locks[i].readLock().lock();
+        try {
+            /* The chunk cannot be freed while the read lock is held */
+            Handle handle = stripes[i].get(key);
+            if (handle == null)
+                return null;
+            return new KVStorageValue(
+                arena.read(handle.chunk, handle.length), handle.version);
+        } finally {
+            locks[i].readLock().unlock();
+        }
+    }
+
+    @Override
+    public void put(ByteString key, KVStorageValue value) {
+        long chunk = arena.allocate(value.value.length);
+        if (chunk == SlabArena.NO_SPACE)
+            throw new StorageFullException("Off-heap arena is full");
+        arena.write(chunk, value.value);
+
+        int i = stripeOf(key);
+        locks[i].writeLock().lock();
+        try {
+            Handle old = stripes[i].get(key);
+            if (old == null && !budget.reserveStorage(heapBytes(key))) {
+                arena.free(chunk);
+                throw new StorageFullException("Memory budget exhausted");
+            }
+
+            stripes[i].put(
+                key, new Handle(chunk, value.value.length, value.version));
+            if (old != null)
+                arena.free(old.chunk);
+        } finally {
+            locks[i].writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(ByteString key) {
+        int i = stripeOf(key);
+        locks[i].writeLock().lock();
+        try {
+            Handle old = stripes[i].remove(key);
+            if (old == null)
+                return false;
+            arena.free(old.chunk);
+            budget.releaseStorage(heapBytes(key));
+            return true;
+        } finally {
+            locks[i].writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < stripes.length; i++) {
+            locks[i].writeLock().lock();
+            try {
+                long bytes = 0;
+                for (Map.Entry<ByteString,Handle> entry :
+                        stripes[i].entrySet()) {
+                    arena.free(entry.getValue().chunk);
+                    bytes += heapBytes(entry.getKey());
+                }
+                stripes[i].clear();
+                budget.releaseStorage(bytes);
+            } finally {
+                locks[i].writeLock().unlock();
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (int i = 0; i < stripes.length; i++) {
+            locks[i].readLock().lock();
+            try {
+                size += stripes[i].size();
+            } finally {
+                locks[i].readLock().unlock();
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public void scan(Visitor visitor) {
+        for (int i = 0; i < stripes.length; i++) {
+            ByteString[] keys;
+            KVStorageValue[] values;
+            locks[i].readLock().lock();
+            try {
+                keys = new ByteString[stripes[i].size()];
+                values = new KVStorageValue[keys.length];
+                int n = 0;
+                for (Map.Entry<ByteString,Handle> entry :
+                        stripes[i].entrySet()) {
+                    Handle handle = entry.getValue();
+                    keys[n] = entry.getKey();
+                    values[n++] = new KVStorageValue(
+                        arena.read(handle.chunk, handle.length),
+                        handle.version);
+                }
+            } finally {
+                locks[i].readLock().unlock();
+            }
+            for (int n = 0; n < keys.length; n++)
+                visitor.visit(keys[n], values[n]);
+        }
+    }
+
+    /* Exact number of arena bytes taken up by values */
+    long usedBytes() {
+        return arena.usedBytes();
+    }
+}
@@ -0,0 +1,317 @@
+package com.s13998159.CPEN431_2020_A3;
+
+import ca.NetSysLab.ProtocolBuffers.KeyValueRequest;
+import ca.NetSysLab.ProtocolBuffers.KeyValueResponse;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Keeps every key on the first N nodes of the hash ring after it. The node
+ * coordinating a request applies it to its own copy first, then sends it on
+ * to the other replicas at the same time and answers the client as soon as
+ * enough of them replied: R for reads, W for writes. Writes still reach the
+ * remaining replicas afterwards.
+ *
+ * Replicas resolve conflicting writes by the version of the value, the
+ * highest one wins, and a read returns the highest version among the
+ * replies it waited for.
+ *
+ * Versions alone cannot order updates that carry the same version, nor
+ * removes, which carry none. The coordinator therefore stamps every update,
+ * and replicas remember the stamp of each key updated recently, removes
+ * included. An update that arrives after a later one, such as a put still
+ * in flight to the last replica when the key is removed, is dropped and
+ * answered with Stale. Older updates than that are assumed to have settled
+ * long ago.
+ */
+class Replicator {
+    /* How long the stamp of an update is remembered */
+    private static final long RECENT_TTL = 10000; //ms
+
+    /* Latest update of a key */
+    private static class Recent {
+        final int version;
+        final long stamp;
+        final boolean removed;
+        final long time;
+
+        Recent(int version, long stamp, boolean removed) {
+            this.version = version;
+            this.stamp = stamp;
+            this.removed = removed;
+            this.time = System.currentTimeMillis();
+        }
+    }
+
+    private final ConcurrentHashMap<ByteString,Recent> recent =
+            new ConcurrentHashMap<>();
+    private final AtomicLong last_stamp = new AtomicLong();
+
+    /* Live members only, replaced as members fail and come back */
+    private volatile HashRing ring;
+    private final int replication;
+    private final int read_quorum;
+    private final int write_quorum;
+
+    /* Sends requests to the other replicas, all over one socket */
+    private final SerializerClient client;
+
+    /* Replication of one request underway, see start() */
+    static class Coordination {
+        final KeyValueResponse.KVResponse.Builder local;
+        final BlockingQueue<byte[]> replies = new LinkedBlockingQueue<>();
+        final boolean read;
+        int quorum = 1;
+        int sent = 0;
+
+        Coordination(KeyValueResponse.KVResponse.Builder local, boolean read) {
+            this.local = local;
+            this.read = read;
+        }
+    }
+
+    /**
+     * @param ring nodes to replicate over
+     * @param replication number of replicas of every key, N
+     * @param read_quorum default number of replicas to read from, R
+     * @param write_quorum default number of replicas to write to, W
+     * @param client reaches the other members
+     */
+    Replicator(HashRing ring, int replication, int read_quorum,
+               int write_quorum, SerializerClient client) {
+        this.ring = ring;
+        this.client = client;
+        this.replication = replication;
+        this.read_quorum = read_quorum;
+        this.write_quorum = write_quorum;
+
+        ScheduledExecutorService purger =
+                Executors.newSingleThreadScheduledExecutor();
+        purger.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                purge();
+            }
+        }, RECENT_TTL, RECENT_TTL / 4, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return a stamp for an update coordinated here, later than any before.
+     * Stamps are microseconds of wall clock time, so those of different
+     * coordinators are comparable too.
+     */
+    long stamp() {
+        long now = System.currentTimeMillis() * 1000;
+        while (true) {
+            long last = last_stamp.get();
+            long next = Math.max(now, last + 1);
+            if (last_stamp.compareAndSet(last, next))
+                return next;
+        }
+    }
+
+    /**
+     * Decides whether a put is newer than what this replica has, and if so
+     * remembers it. Call under the key's update lock.
+     * @param stored value currently stored, or null
+     * @return true if the put is to be applied
+     */
+    boolean admitPut(ByteString key, int version, long stamp,
+                     KVStorageValue stored) {
+        Recent last = recent.get(key);
+        boolean newer;
+        if (last == null)
+            newer = stored == null || version >= stored.version;
+        else if (last.removed)
+            newer = stamp > last.stamp;
+        else
+            newer = version > last.version ||
+                    (version == last.version && stamp > last.stamp);
+
+        if (newer)
+            recent.put(key, new Recent(version, stamp, false));
+        return newer;
+    }
+
+    /**
+     * Decides whether a remove is newer than what this replica has, and if
+     * so remembers it. Call under the key's update lock.
+     * @return true if the remove is to be applied
+     */
+    boolean admitRemove(ByteString key, long stamp) {
+        Recent last = recent.get(key);
+        if (last != null && stamp <= last.stamp)
+            return false;
+        recent.put(key, new Recent(0, stamp, true));
+        return true;
+    }
+
+    /* Forgets updates old enough to have reached every replica */
+    private void purge() {
+        long expired = System.currentTimeMillis() - RECENT_TTL;
+        Iterator<Map.Entry<ByteString,Recent>> it =
+                recent.entrySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().getValue().time < expired)
+                it.remove();
+        }
+    }
+
+    /* Replicates over the live members of a new ring from now on */
+    void updateRing(HashRing ring) {
+        this.ring = ring;
+    }
+
+    /* Number of replicas of every key */
+    int replication() {
+        return replication;
+    }
+
+    /* Whether a command is coordinated across the replicas of its key */
+    static boolean replicated(int command) {
+        return command == Commands.Put || command == Commands.Get ||
+               command == Commands.Remove;
+    }
+
+    private static int replicaCommand(int command) {
+        switch (command) {
+            case Commands.Put:
+                return Commands.ReplicaPut;
+            case Commands.Get:
+                return Commands.ReplicaGet;
+            default:
+                return Commands.ReplicaRemove;
+        }
+    }
+
+    /* Queues the reply of a replica once it comes, empty if none came */
+    private static void collect(CompletableFuture<byte[]> reply,
+                                final HashRing.Node node,
+                                final BlockingQueue<byte[]> replies) {
+        reply.whenComplete(new BiConsumer<byte[],Throwable>() {
+            @Override
+            public void accept(byte[] bytes, Throwable failure) {
+                if (failure != null) {
+                    Log.error("Could not reach replica " + node);
+                    bytes = new byte[0];
+                }
+                replies.add(bytes);
+            }
+        });
+    }
+
+    /**
+     * Runs a request already applied to the local copy on the other replicas
+     * @param request the client's request
+     * @param local response of the local copy
+     * @return response to the client
+     */
+    KeyValueResponse.KVResponse.Builder coordinate(
+            KeyValueRequest.KVRequest request,
+            KeyValueResponse.KVResponse.Builder local) {
+        return finish(start(request, local));
+    }
+
+    /**
+     * Sends a request already applied to the local copy to the other
+     * replicas without waiting for them, so that the replication of many
+     * requests can overlap
+     * @param request the client's request
+     * @param local response of the local copy
+     * @return to be passed to finish() for the response to the client
+     */
+    Coordination start(KeyValueRequest.KVRequest request,
+                       KeyValueResponse.KVResponse.Builder local) {
+        boolean read = request.getCommand() == Commands.Get;
+        Coordination coordination = new Coordination(local, read);
+        /* Invalid requests and full storage fail the same everywhere */
+        if (local.getErrCode() != ErrCode.Success &&
+            local.getErrCode() != ErrCode.NoKey)
+            return coordination;
+
+        HashRing.Node[] replicas = ring.replicas(request.getKey(), replication);
+        int quorum = request.hasQuorum() ? request.getQuorum() :
+                read ? read_quorum : write_quorum;
+        coordination.quorum = Math.max(1, Math.min(quorum, replicas.length));
+
+        byte[] payload = request.toBuilder()
+                .setCommand(replicaCommand(request.getCommand()))
+                .clearQuorum()
+                .build().toByteArray();
+        for (HashRing.Node node : replicas) {
+            if (!node.local) {
+                collect(client.requestAsync(payload, node.address),
+                    node, coordination.replies);
+                coordination.sent++;
+            }
+        }
+        return coordination;
+    }
+
+    /**
+     * Waits for a quorum of the replicas a request went out to
+     * @param coordination returned by start()
+     * @return response to the client
+     */
+    KeyValueResponse.KVResponse.Builder finish(Coordination coordination) {
+        int quorum = coordination.quorum;
+        boolean read = coordination.read;
+        /* The local copy has answered already */
+        KeyValueResponse.KVResponse.Builder response = coordination.local;
+        int acks = 1;
+        for (int i = 0; i < coordination.sent && acks < quorum; i++) {
+            KeyValueResponse.KVResponse reply;
+            try {
+                byte[] bytes = coordination.replies.take();
+                if (bytes.length == 0)
+                    continue;
+                reply = KeyValueResponse.KVResponse.parseFrom(bytes);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (InvalidProtocolBufferException e) {
+                continue;
+            }
+
+            /* A replica that has a newer update than this one is as up to
+             * date as the update would have made it */
+            if (reply.getErrCode() != ErrCode.Success &&
+                reply.getErrCode() != ErrCode.NoKey &&
+                reply.getErrCode() != ErrCode.Stale)
+                continue;
+            acks++;
+
+            if (reply.getErrCode() != ErrCode.Success)
+                continue;
+            if (read) {
+                if (response.getErrCode() != ErrCode.Success ||
+                    reply.getVersion() > response.getVersion())
+                    response = reply.toBuilder();
+            } else {
+                /* A remove succeeds if any replica had the key */
+                response.setErrCode(ErrCode.Success);
+            }
+        }
+
+        if (acks < quorum) {
+            Log.error("Only " + acks + " of " + quorum +
+                " replicas replied");
+            /* The client may retry; replicas that got the update keep it */
+            return KeyValueResponse.KVResponse.newBuilder()
+                    .setErrCode(ErrCode.Overload);
+        }
+        return response;
+    }
+}
@@ -0,0 +1,321 @@
+package com.s13998159.CPEN431_2020_A3;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+/**
+ * At-most-once reply cache. Replies are keyed directly on the 16 byte message
+ * ID, held as two longs, so a lookup needs no key object. The cache is split
+ * into shards with their own lock, hash table and timing wheel.
+ *
+ * Every entry sits in the wheel slot of the tick it was last accessed in.
+ * Moving on to a new tick empties the slot that is about to be reused, which
+ * evicts everything not accessed for a whole revolution of the wheel. An
+ * entry therefore lives between ttl and ttl + one tick after its last access.
+ *
+ * The cache is sized by the bytes its replies are accounted for in the
+ * MemoryBudget, overhead included, so it stays within the budget's cache
+ * reserve however small the replies are. A shard over its share of
+ * the capacity evicts its least recently accessed entries first.
+ *
+ * A request that is still being serviced has an entry without a reply.
+ * Retransmissions that arrive in the meantime are parked on that entry as
+ * waiters and answered once the reply is in, instead of being serviced again.
+ * Such an entry is never evicted, only completed or cancelled.
+ */
+class ReplyCache {
+    private static final int SHARDS = 16;
+    private static final long TICK = 250; //ms
+
+    /* Returned by begin() when the request is already being serviced */
+    static final byte[] IN_FLIGHT = new byte[0];
+
+    /* Sender of a retransmission parked until the reply is in */
+    static class Waiter {
+        final InetAddress address;
+        final int port;
+        final InetSocketAddress source;
+        final int lane;
+        Waiter next;
+
+        Waiter(RequestContext ctx) {
+            address = ctx.address;
+            port = ctx.port;
+            source = ctx.source;
+            lane = ctx.lane;
+        }
+    }
+
+    private static class Entry {
+        final long hi;
+        final long lo;
+        /* Null while the request is in flight */
+        byte[] reply;
+        Waiter waiters;
+        /* Next entry in the same hash bucket */
+        Entry next;
+        /* Neighbours in the same wheel slot */
+        Entry newer;
+        Entry older;
+        int slot;
+
+        Entry(long hi, long lo, byte[] reply) {
+            this.hi = hi;
+            this.lo = lo;
+            this.reply = reply;
+        }
+    }
+
+    private class Shard {
+        Entry[] table = new Entry[256];
+        int size = 0;
+        long bytes = 0;
+        /* Most recently accessed entry of every slot */
+        final Entry[] wheel = new Entry[slots];
+        long tick;
+
+        Shard(long now) {
+            tick = now / TICK;
+        }
+
+        private int bucketOf(long hi, long lo) {
+            long h = hi * 0x9E3779B97F4A7C15L ^ lo;
+            h ^= h >>> 32;
+            return (int) h & (table.length - 1);
+        }
+
+        Entry find(long hi, long lo) {
+            for (Entry e = table[bucketOf(hi, lo)]; e != null; e = e.next) {
+                if (e.hi == hi && e.lo == lo)
+                    return e;
+            }
+            return null;
+        }
+
+        /*
+         * Evicts every slot the wheel has gone past since the last call.
+         * Requests still in flight are kept and moved to the current slot:
+         * their retransmissions are parked on them, and whoever services the
+         * request completes or cancels it.
+         */
+        void advance(long now) {
+            long target = now / TICK;
+            long steps = Math.min(target - tick, slots);
+            /* Chained through older while off the wheel */
+            Entry in_flight = null;
+            for (long i = 1; i <= steps; i++) {
+                int slot = (int) ((tick + i) % slots);
+                while (wheel[slot] != null) {
+                    Entry e = wheel[slot];
+                    if (e.reply != null) {
+                        remove(e);
+                        continue;
+                    }
+                    unlink(e);
+                    e.older = in_flight;
+                    in_flight = e;
+                }
+            }
+            if (target > tick)
+                tick = target;
+            while (in_flight != null) {
+                Entry e = in_flight;
+                in_flight = e.older;
+                link(e);
+            }
+        }
+
+        void link(Entry e) {
+            e.slot = (int) (tick % slots);
+            e.older = wheel[e.slot];
+            e.newer = null;
+            if (e.older != null)
+                e.older.newer = e;
+            wheel[e.slot] = e;
+        }
+
+        void unlink(Entry e) {
+            if (e.older != null)
+                e.older.newer = e.newer;
+            if (e.newer != null)
+                e.newer.older = e.older;
+            else
+                wheel[e.slot] = e.older;
+            e.newer = e.older = null;
+        }
+
+        void remove(Entry e) {
+            unlink(e);
+            int b = bucketOf(e.hi, e.lo);
+            if (table[b] == e) {
+                table[b] = e.next;
+            } else {
+                Entry prev = table[b];
+                while (prev.next != e)
+                    prev = prev.next;
+                prev.next = e.next;
+            }
+            size--;
+            if (e.reply != null) {
+                long reply_bytes = MemoryBudget.cacheBytes(e.reply.length);
+                bytes -= reply_bytes;
+                budget.releaseCache(reply_bytes);
+            }
+        }
+
+        void insert(Entry e) {
+            if (size >= table.length)
+                grow();
+            int b = bucketOf(e.hi, e.lo);
+            e.next = table[b];
+            table[b] = e;
+            link(e);
+            size++;
+            if (e.reply != null)
+                bytes += MemoryBudget.cacheBytes(e.reply.length);
+        }
+
+        void grow() {
+            Entry[] old = table;
+            table = new Entry[old.length * 2];
+            for (Entry head : old) {
+                while (head != null) {
+                    Entry next = head.next;
+                    int b = bucketOf(head.hi, head.lo);
+                    head.next = table[b];
+                    table[b] = head;
+                    head = next;
+                }
+            }
+        }
+
+        /* Evicts the least recently accessed entries until under capacity */
+        void trim() {
+            for (int i = 1; i <= slots && bytes > shard_capacity; i++) {
+                int slot = (int) ((tick + i) % slots);
+                Entry oldest = wheel[slot];
+                while (oldest != null && oldest.older != null)
+                    oldest = oldest.older;
+                while (oldest != null && bytes > shard_capacity) {
+                    Entry newer = oldest.newer;
+                    /* Requests in flight take up no bytes yet */
+                    if (oldest.reply != null)
+                        remove(oldest);
+                    oldest = newer;
+                }
+            }
+        }
+    }
+
+    private final int slots;
+    private final long shard_capacity;
+    private final MemoryBudget budget;
+    private final Shard[] shards = new Shard[SHARDS];
+
+    /**
+     * @param capacity bytes of replies to keep at most, as accounted for
+     *                 by MemoryBudget.cacheBytes()
+     * @param ttl how long, in ms, a reply is kept after it was last accessed
+     * @param budget released for every reply leaving the cache
+     */
+    ReplyCache(long capacity, long ttl, MemoryBudget budget) {
+        this.slots = (int) ((ttl + TICK - 1) / TICK) + 1;
+        this.shard_capacity = capacity / SHARDS;
+        this.budget = budget;
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < SHARDS; i++)
+            shards[i] = new Shard(now);
+    }
+
+    private Shard shardOf(long hi, long lo) {
+        long h = (hi * 0xC2B2AE3D27D4EB4FL + lo) * 0x9E3779B97F4A7C15L;
+        return shards[(int) (h >>> 60) & (SHARDS - 1)];
+    }
+
+    /**
+     * Looks up the reply to a request. If there is none, the request is
+     * marked as in flight and the caller has to either complete() or
+     * cancel() it. If it is already in flight, the caller is parked.
+     * @param ctx request, also where a parked caller gets its reply sent
+     * @return the cached reply, IN_FLIGHT if the caller was parked, or null
+     * if the caller is to service the request
+     */
+    byte[] begin(long hi, long lo, RequestContext ctx) {
+        Shard shard = shardOf(hi, lo);
+        synchronized (shard) {
+            shard.advance(System.currentTimeMillis());
+            Entry e = shard.find(hi, lo);
+            if (e == null) {
+                shard.insert(new Entry(hi, lo, null));
+                return null;
+            }
+
+            shard.unlink(e);
+            shard.link(e);
+            if (e.reply != null)
+                return e.reply;
+
+            Waiter waiter = new Waiter(ctx);
+            waiter.next = e.waiters;
+            e.waiters = waiter;
+            return IN_FLIGHT;
+        }
+    }
+
+    /**
+     * Caches the reply to a request begun with begin(). The caller has
+     * already accounted for its bytes in the MemoryBudget.
+     * @return retransmissions parked while the request was in flight, which
+     * are owed the same reply
+     */
+    Waiter complete(long hi, long lo, byte[] reply) {
+        Shard shard = shardOf(hi, lo);
+        synchronized (shard) {
+            shard.advance(System.currentTimeMillis());
+            Entry old = shard.find(hi, lo);
+            Waiter waiters = null;
+            if (old != null) {
+                waiters = old.waiters;
+                shard.remove(old);
+            }
+            shard.insert(new Entry(hi, lo, reply));
+            shard.trim();
+            return waiters;
+        }
+    }
+
+    /**
+     * Forgets a request begun with begin() that will not be replied to.
+     * Parked retransmissions are dropped; the clients will retry.
+     */
+    void cancel(long hi, long lo) {
+        Shard shard = shardOf(hi, lo);
+        synchronized (shard) {
+            Entry e = shard.find(hi, lo);
+            if (e != null && e.reply == null)
+                shard.remove(e);
+        }
+    }
+
+    /* Number of cached replies */
+    int size() {
+        int size = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                size += shard.size;
+            }
+        }
+        return size;
+    }
+
+    /* Bytes accounted for the cached replies */
+    long bytes() {
+        long bytes = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                bytes += shard.bytes;
+            }
+        }
+        return bytes;
+    }
+}
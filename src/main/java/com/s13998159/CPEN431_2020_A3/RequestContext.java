@@ -0,0 +1,83 @@
+package com.s13998159.CPEN431_2020_A3;
+
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * State of a single request as it moves from the receiving thread to the
+ * worker that services it. Each datagram gets its own context so that
+ * concurrent workers reply to the correct client.
+ *
+ * Contexts are pooled by SerializerServer: the buffers, packets and checksum
+ * below are allocated once and reused for every request the context carries.
+ */
+class RequestContext {
+    static final int BUFFER_SIZE = 1 << 14; //B
+
+    /* The datagram exactly as it was received */
+    final byte[] data = new byte[BUFFER_SIZE];
+    final DatagramPacket packet = new DatagramPacket(data, data.length);
+    int length;
+
+    /* Where the reply has to be sent */
+    InetAddress address;
+    int port;
+    /* Same as address and port, if the transport provides it */
+    InetSocketAddress source;
+    /* Transport lane the request arrived on */
+    int lane;
+    /* Set if another node forwarded the request, address and port are then
+     * the client's rather than the sender's */
+    boolean forwarded;
+
+    /* System.nanoTime() when the datagram arrived */
+    long received;
+
+    /* Set once the envelope has been decoded, see peekCommand() */
+    boolean decoded;
+
+    /* Location of the Msg envelope fields within data */
+    int id_offset;
+    int id_length;
+    int payload_offset;
+    int payload_length;
+    long checksum;
+
+    /* Message ID as the reply cache key */
+    long id_hi;
+    long id_lo;
+
+    final CRC32 crc = new CRC32();
+
+    /* The reply envelope is encoded here */
+    final byte[] send_buf = new byte[BUFFER_SIZE];
+    final DatagramPacket send_packet =
+            new DatagramPacket(send_buf, send_buf.length);
+    /* Staging buffer for transports that send from direct memory */
+    ByteBuffer send_direct;
+
+    /*
+     * Set while the context is part of a batch: the reply is encoded but
+     * only sent when the whole batch is flushed.
+     */
+    boolean batched;
+    /* Length of the reply encoded in send_buf, 0 if there is none */
+    int reply_length;
+    /* Reply of a batched request, only cached once the batch is flushed */
+    byte[] reply;
+
+    /* Bytes of the MemoryBudget held for caching the reply */
+    long reserved;
+
+    /* Set while the reply cache has this request marked as in flight */
+    boolean pending;
+
+    /* Write-ahead log record of the request, 0 if it logged nothing */
+    long wal_seq;
+
+    /* Services this context on a worker, created once per context */
+    Runnable task;
+}
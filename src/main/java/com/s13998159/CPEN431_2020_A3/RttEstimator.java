@@ -0,0 +1,68 @@
+package com.s13998159.CPEN431_2020_A3;
+
+/**
+ * Retransmission timeout of one server, following Jacobson and Karels: a
+ * smoothed round trip time and its mean deviation are updated with every
+ * measured round trip, and the timeout allows for four deviations above the
+ * smoothed time. A timeout doubles the value until the next measurement,
+ * and round trips of resent requests are never measured, as the reply may
+ * answer any of the copies (Karn's algorithm).
+ *
+ * Times are in nanoseconds.
+ */
+class RttEstimator {
+    /* Gains of the smoothed round trip time and of its deviation */
+    private static final double ALPHA = 1.0 / 8;
+    private static final double BETA = 1.0 / 4;
+
+    private final long min_timeout;
+    private final long max_timeout;
+
+    private double srtt = 0;
+    private double rttvar = 0;
+    private long rto;
+
+    /**
+     * @param initial timeout until the first round trip is measured
+     * @param min lower bound of the timeout
+     * @param max upper bound of the timeout
+     */
+    RttEstimator(long initial, long min, long max) {
+        this.min_timeout = min;
+        this.max_timeout = max;
+        this.rto = initial;
+    }
+
+    /**
+     * Takes a round trip of a request that was sent only once
+     * @param rtt time from sending the request to receiving its reply
+     */
+    synchronized void sample(long rtt) {
+        if (srtt == 0) {
+            srtt = rtt;
+            rttvar = rtt / 2.0;
+        } else {
+            rttvar = (1 - BETA) * rttvar + BETA * Math.abs(srtt - rtt);
+            srtt = (1 - ALPHA) * srtt + ALPHA * rtt;
+        }
+        rto = clamp((long)(srtt + 4 * rttvar));
+    }
+
+    /**
+     * Backs off after a timeout, until the next round trip is measured.
+     * Many requests timing out together back off once, not once each.
+     * @param expired the timeout that expired
+     */
+    synchronized void backoff(long expired) {
+        rto = clamp(Math.max(rto, 2 * expired));
+    }
+
+    /* Time to wait for a reply before resending */
+    synchronized long timeout() {
+        return rto;
+    }
+
+    private long clamp(long timeout) {
+        return Math.max(min_timeout, Math.min(timeout, max_timeout));
+    }
+}
@@ -1,148 +1,350 @@
 package com.s13998159.CPEN431_2020_A3;
 
+import ca.NetSysLab.ProtocolBuffers.KeyValueResponse;
 import ca.NetSysLab.ProtocolBuffers.Message;
 import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.net.*;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.zip.CRC32;
 
 /**
- * TODO refactor the UDP Client so that the services relating to the student ID
- * are encapsulated from the services relating to reliable message delivery
- * This class should subsequently be responsible for the latter services.
+ * Client side of the request/reply protocol. One long-lived socket carries
+ * any number of outstanding requests: every request gets a message ID of its
+ * own, and a receiving thread hands every reply to the request with the same
+ * ID. Requests that time out are resent with the same ID, so the server
+ * answers a resend from its cache of replies.
+ *
+ * How long to wait before resending is estimated from the round trips to
+ * every server, see RttEstimator. A server that is overloaded says how long
+ * to wait before trying again; the request is then sent again after up to
+ * twice that time, with a new ID, as the server caches its refusal under the
+ * old one.
+ *
+ * A few threads can thus keep thousands of requests in flight, each of them a
+ * future completed with the reply payload.
  */
-public class SerializerClient {
+public class SerializerClient implements Closeable {
     private static int DEFAULT_TIMEOUT = 100;  //ms
+    private static int MINIMUM_TIMEOUT = 10;   //ms
     private static int MAXIMUM_TIMEOUT = 5000; //ms_
+    private static int MAX_RETRIES = 3;
+    /* Requests are not given up on sooner, however short their timeouts */
+    private static int MINIMUM_PATIENCE = 1500; //ms
+    /* Times an overloaded server is given to recover before giving up */
+    private static int MAX_OVERLOAD_RETRIES = 3;
 
-    byte[] msg_id = new byte[16];
+    /* A request waiting for its reply */
+    private static class Pending {
+        final CompletableFuture<byte[]> reply;
+        final byte[] payload;
+        final InetSocketAddress server;
+        /* Times the server was overloaded already */
+        final int overloads;
 
-    private DatagramSocket socket;
+        DatagramPacket packet;
+        long timeout; //ns
+        long first; //ns
+        volatile long sent; //ns
+        volatile int retries = 0;
+
+        Pending(CompletableFuture<byte[]> reply, byte[] payload,
+                InetSocketAddress server, int overloads) {
+            this.reply = reply;
+            this.payload = payload;
+            this.server = server;
+            this.overloads = overloads;
+        }
+    }
+
+    private final DatagramSocket socket;
+    /* Outstanding requests by message ID */
+    private final ConcurrentHashMap<ByteString,Pending> pending =
+            new ConcurrentHashMap<>();
+
+    /* Message IDs are this prefix followed by a sequence number */
+    private final byte[] id_prefix = new byte[8];
+    private final AtomicLong sequence = new AtomicLong(System.nanoTime());
+
+    /* Resends requests that timed out */
+    private final ScheduledExecutorService timer;
+
+    /* Requests resent after a timeout, and after the server was overloaded */
+    private final AtomicLong resends = new AtomicLong();
+    private final AtomicLong overload_retries = new AtomicLong();
+
+    /* Round trip estimates by server */
+    private final ConcurrentHashMap<InetSocketAddress,RttEstimator> rtts =
+            new ConcurrentHashMap<>();
 
     SerializerClient() throws SocketException {
         // This throws a socket exception
         this.socket = new DatagramSocket();
+
+        ByteBuffer prefix = ByteBuffer.wrap(id_prefix);
+        prefix.order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            prefix.put(InetAddress.getLocalHost().getAddress(), 0, 4);
+        } catch (UnknownHostException e) {
+            prefix.put(InetAddress.getLoopbackAddress().getAddress());
+        }
+        prefix.putShort((short)socket.getLocalPort());
+        prefix.putShort((short)0xAABB);
+
+        ThreadFactory daemons = new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "client-timer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+        ScheduledThreadPoolExecutor timer =
+                new ScheduledThreadPoolExecutor(1, daemons);
+        /* Most requests are answered long before they would be resent */
+        timer.setRemoveOnCancelPolicy(true);
+        this.timer = timer;
+
+        Thread receiver = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                receive();
+            }
+        }, "client-receiver");
+        receiver.setDaemon(true);
+        receiver.start();
     }
 
-    private boolean verifyID(Message.Msg response, Message.Msg original) {
-        /*
-         * Check that the response's checksum is correct and that the message
-         * IDs match
-         */
+    private static boolean verifyChecksum(Message.Msg response) {
         CRC32 check = new CRC32();
         check.update(response.getMessageID().toByteArray());
         check.update(response.getPayload().toByteArray());
-
-        /* Can't compare ByteStrings alone, so convert to byte array */
-        byte[] r_msg_id = response.getMessageID().toByteArray();
-        byte[] o_msg_id = original.getMessageID().toByteArray();
-
-        return (check.getValue() == response.getCheckSum()) &&
-                (Arrays.equals(r_msg_id, o_msg_id));
+        return check.getValue() == response.getCheckSum();
     }
 
-    void createMessageID() throws UnknownHostException{
-        /* Create the Message ID */
+    private ByteString createMessageID() {
+        byte[] msg_id = new byte[16];
         ByteBuffer msg_id_buf = ByteBuffer.wrap(msg_id);
         msg_id_buf.order(ByteOrder.LITTLE_ENDIAN);
-        msg_id_buf.put(InetAddress.getLocalHost().getAddress());
-        msg_id_buf.putShort((short)socket.getLocalPort());
-        msg_id_buf.putShort((short)0xAABB);
-        msg_id_buf.putLong(System.nanoTime());
+        msg_id_buf.put(id_prefix);
+        msg_id_buf.putLong(sequence.getAndIncrement());
+        return ByteString.copyFrom(msg_id);
     }
 
     /**
-     * Send a request to the provided server address and server port with the
-     * following payload
+     * Sends a request to a server without waiting for the reply
      * @param payload byte array to send
-     * @param server_address IP address of recipient
-     * @param server_port Port number of recipient
-     * @return returns a byte array of the response. If error or no response,
-     * returns an empty array
+     * @param server address and port of the recipient
+     * @return future of the reply payload, failed with a
+     * SocketTimeoutException if no reply came despite resending
      */
-    byte[] request(byte[] payload, InetAddress server_address, int server_port) throws IOException{
-        byte[] recv_buf = new byte[1 << 14];
-        int timeout = DEFAULT_TIMEOUT;
-
-        DatagramPacket send_packet;
-        DatagramPacket recv_packet =
-            new DatagramPacket(recv_buf, recv_buf.length);
+    CompletableFuture<byte[]> requestAsync(byte[] payload,
+                                           InetSocketAddress server) {
+        Pending request = new Pending(
+            new CompletableFuture<byte[]>(), payload, server, 0);
+        submit(request);
+        return request.reply;
+    }
 
-        try {
-            createMessageID();
-        } catch (UnknownHostException e) {
-            System.out.println("Error: Could not create header");
-            return new byte[0];
+    private RttEstimator rttOf(InetSocketAddress server) {
+        RttEstimator rtt = rtts.get(server);
+        if (rtt == null) {
+            RttEstimator fresh = new RttEstimator(
+                TimeUnit.MILLISECONDS.toNanos(DEFAULT_TIMEOUT),
+                TimeUnit.MILLISECONDS.toNanos(MINIMUM_TIMEOUT),
+                TimeUnit.MILLISECONDS.toNanos(MAXIMUM_TIMEOUT));
+            rtt = rtts.putIfAbsent(server, fresh);
+            if (rtt == null)
+                rtt = fresh;
         }
+        return rtt;
+    }
+
+    /* Sends a request under a new message ID */
+    private void submit(Pending request) {
+        ByteString msg_id = createMessageID();
 
         /* Calculate the checksum */
         CRC32 checksum = new CRC32();
-        checksum.update(msg_id);
-        checksum.update(payload);
+        checksum.update(msg_id.toByteArray());
+        checksum.update(request.payload);
 
         /* Create the message protocol buffer */
-        Message.Msg msg = Message.Msg.newBuilder()
-                .setMessageID(ByteString.copyFrom(msg_id))
-                .setPayload(ByteString.copyFrom(payload))
+        byte[] temp = Message.Msg.newBuilder()
+                .setMessageID(msg_id)
+                .setPayload(ByteString.copyFrom(request.payload))
                 .setCheckSum(checksum.getValue())
-                .build();
+                .build().toByteArray();
 
-        /* With the message constructed place it in the send buffer */
-        byte[] temp = msg.toByteArray();
+        request.packet = new DatagramPacket(temp, temp.length, request.server);
+        request.timeout = rttOf(request.server).timeout();
+        request.first = System.nanoTime();
+        pending.put(msg_id, request);
+        send(msg_id, request);
+    }
 
-        /* Now send the data packet */
-        send_packet = new DatagramPacket(
-            temp, temp.length, server_address, server_port);
-//        System.out.println(
-//                "Debugging: Message Length is " + temp.length);
-        socket.setSoTimeout(timeout);
-        socket.send(send_packet);
+    /* Sends a request and schedules its resend */
+    private void send(final ByteString msg_id, final Pending request) {
+        request.sent = System.nanoTime();
+        try {
+            socket.send(request.packet);
+        } catch (IOException e) {
+            pending.remove(msg_id);
+            request.reply.completeExceptionally(e);
+            return;
+        }
+        timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                timeout(msg_id, request);
+            }
+        }, request.timeout, TimeUnit.NANOSECONDS);
+    }
 
-        int MAX_RETRIES = 3;
-        for (int num_retries = 0; num_retries <= MAX_RETRIES; num_retries++) {
+    private void timeout(ByteString msg_id, Pending request) {
+        if (request.reply.isDone() || !pending.containsKey(msg_id))
+            return;
+
+        rttOf(request.server).backoff(request.timeout);
+        // Attempt at least three resends upon timeouts.
+        // Make sure to double the waiting period per timeout.
+        if (request.retries >= MAX_RETRIES && System.nanoTime() - request.first >=
+                TimeUnit.MILLISECONDS.toNanos(MINIMUM_PATIENCE)) {
+            pending.remove(msg_id);
+            request.reply.completeExceptionally(new SocketTimeoutException(
+                "No reply from " + request.server));
+            return;
+        }
+        request.retries++;
+        resends.incrementAndGet();
+        request.timeout = Math.min(2 * request.timeout,
+            TimeUnit.MILLISECONDS.toNanos(MAXIMUM_TIMEOUT));
+        send(msg_id, request);
+    }
+
+    /**
+     * Completes a request with its reply, unless the server asked to try
+     * again later
+     */
+    private void answer(final Pending request, Message.Msg response) {
+        /* Karn's algorithm: the reply may be to any copy of a resent request */
+        if (request.retries == 0)
+            rttOf(request.server).sample(System.nanoTime() - request.sent);
+
+        byte[] payload = response.getPayload().toByteArray();
+        if (request.overloads < MAX_OVERLOAD_RETRIES) {
+            KeyValueResponse.KVResponse reply = null;
             try {
+                reply = KeyValueResponse.KVResponse.parseFrom(payload);
+            } catch (InvalidProtocolBufferException e) {
+                /* Not a reply of a key-value server, hand it over as is */
+            }
+            if (reply != null && reply.getErrCode() == ErrCode.Overload &&
+                reply.hasOverloadWaitTime()) {
+                /* Spread out the clients refused together, so they do not
+                 * all come back at once */
+                overload_retries.incrementAndGet();
+                long wait = reply.getOverloadWaitTime();
+                wait += ThreadLocalRandom.current().nextLong(wait + 1);
+                timer.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        submit(new Pending(request.reply, request.payload,
+                            request.server, request.overloads + 1));
+                    }
+                }, wait, TimeUnit.MILLISECONDS);
+                return;
+            }
+        }
+        request.reply.complete(payload);
+    }
+
+    /* Hands every reply to the request it answers */
+    private void receive() {
+        byte[] recv_buf = new byte[1 << 14];
+        DatagramPacket recv_packet =
+            new DatagramPacket(recv_buf, recv_buf.length);
+        while (!socket.isClosed()) {
+            Message.Msg response;
+            try {
+                recv_packet.setLength(recv_buf.length);
                 socket.receive(recv_packet);
+                response = Message.Msg.parseFrom(ByteString.copyFrom(
+                    recv_buf, 0, recv_packet.getLength()));
+            } catch (InvalidProtocolBufferException e) {
+                Log.error("Could not parse reply");
+                continue;
+            } catch (IOException e) {
+                if (!socket.isClosed())
+                    Log.error("Could not receive reply");
+                continue;
+            }
 
-                /* Packet was received before timeout */
-//                System.out.println(
-//                    "Received message from " + recv_packet.getSocketAddress());
-                recv_buf = recv_packet.getData();
-                int response_len = recv_packet.getLength();
-//                System.out.println(
-//                    "Debugging: Response Length is " + response_len);
-                Message.Msg response = Message.Msg.parseFrom(
-                    Arrays.copyOfRange(recv_buf,0, response_len));
-
-                // If the packet has been received, then perform a checksum
-                if (!verifyID(response, msg)) {
-                    System.out.println(
-                        "Error: ID/checksum didn't match. Attempt " + (num_retries + 1));
-                    socket.send(send_packet);
-                    continue;
-                }
-
-                socket.close();
-                return response.getPayload().toByteArray();
-            } catch (SocketTimeoutException e) {
-                // Attempt three resends upon timeouts.
-                // Make sure to double the waiting period per timeout.
-                if (num_retries == MAX_RETRIES) {
-                    socket.close();
-                    System.out.println("Error: Connection has timeout out three times!");
-                    return new byte[0];
-                } else {
-                    timeout = Math.min(2 * timeout, MAXIMUM_TIMEOUT);
-                    socket.setSoTimeout(timeout);
-                    socket.send(send_packet);
-                    System.out.println(
-                        "Connection timed out. Resending. Attempt " + (num_retries + 1));
-                }
+            /* A corrupt reply is ignored, the request is resent */
+            if (!verifyChecksum(response)) {
+                Log.error("Checksum of reply didn't match");
+                continue;
             }
+            /* Late replies to resent requests find nothing */
+            Pending request = pending.remove(response.getMessageID());
+            if (request != null)
+                answer(request, response);
+        }
+    }
+
+    /**
+     * Send a request to the provided server address and server port with the
+     * following payload and waits for the reply
+     * @param payload byte array to send
+     * @param server_address IP address of recipient
+     * @param server_port Port number of recipient
+     * @return returns a byte array of the response. If error or no response,
+     * returns an empty array
+     */
+    byte[] request(byte[] payload, InetAddress server_address, int server_port) throws IOException{
+        try {
+            return requestAsync(payload,
+                new InetSocketAddress(server_address, server_port)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new byte[0];
+        } catch (ExecutionException e) {
+            Log.error(e.getCause().getMessage());
+            return new byte[0];
         }
-        return new byte[0];
+    }
+
+    /* Number of requests resent because no reply came in time */
+    long resends() {
+        return resends.get();
+    }
+
+    /* Number of requests sent again because the server was overloaded */
+    long overloadRetries() {
+        return overload_retries.get();
+    }
+
+    /* Closes the socket, failing every outstanding request */
+    @Override
+    public void close() {
+        socket.close();
+        timer.shutdownNow();
+        for (Pending request : pending.values())
+            request.reply.completeExceptionally(
+                new SocketException("Client closed"));
+        pending.clear();
     }
 }
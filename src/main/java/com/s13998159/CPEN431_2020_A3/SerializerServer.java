@@ -1,20 +1,16 @@
 package com.s13998159.CPEN431_2020_A3;
 
-import ca.NetSysLab.ProtocolBuffers.KeyValueResponse;
-import ca.NetSysLab.ProtocolBuffers.Message;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import com.google.common.hash.Hashing;
 import com.google.protobuf.ByteString;
-import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
 
 import java.io.IOException;
-import java.net.*;
-import java.util.Arrays;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
-import java.util.zip.CRC32;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
 
 /**
  * This layer implements at-most once semantics (AMOS). The specific details
@@ -22,174 +18,585 @@ import java.util.zip.CRC32;
  * layer should service them all the same.
  *
  * Remember that requests should be well known for at least 5 seconds
+ *
+ * Datagrams are received into pooled RequestContexts and the Msg envelope is
+ * decoded in place, so verifying a request and replying to it does not copy
+ * the message ID or payload out of the receive buffer.
  */
 
 public class SerializerServer {
     /**
      * Cache relevant variables
      */
-    private final int MAX_TIMEOUT = 5; //s
-    private final int MAX_CACHE_SIZE = 100;
+    private final int MAX_TIMEOUT = 5000; //ms
+    /* No reply can be larger than a datagram we are willing to send */
+    private final int MAX_REPLY_LENGTH = 1 << 14; //B
 
     /* Caching members */
-    ConcurrentHashMap<ByteString, byte[]> req_cache;
-    LoadingCache<Request, byte[]> msg_id_cache = CacheBuilder.newBuilder()
-    .maximumSize(MAX_CACHE_SIZE)
-    .expireAfterAccess(MAX_TIMEOUT, TimeUnit.SECONDS)
-    .build(
-        new CacheLoader<Request, byte[]>(){
-            @Override
-            public byte[] load(Request req) throws Exception {
-                 return req.response;
-            }
-        }
-    );
+    ReplyCache msg_id_cache;
+    /* Every cached reply is accounted for until it is evicted */
+    private final MemoryBudget budget;
+    private final LoadMonitor load;
+    private final Metrics metrics;
 
     /**
      * Transmission relevant variables
      */
-    /*
-     * Note that these fields are used as a one-to-one correspondence and
-     * will only work for single-threaded architectures.
+    /* Sockets or channels the datagrams travel over */
+    private final Transport transport;
+    /* Hosts of the ring members, the only senders whose forwarded client
+     * address is believed; anyone else could have replies sent wherever they
+     * like. Hosts rather than ports, since SocketTransport sends from an
+     * ephemeral port. */
+    private final Set<InetAddress> members;
+
+    /* Contexts, and their buffers, ready to receive the next datagram */
+    private final int MAX_POOLED_CONTEXTS = 256;
+    private final ArrayBlockingQueue<RequestContext> free_contexts;
+
+    /* Tags of the Msg envelope fields, see Message.proto */
+    private static final int MESSAGE_ID_TAG =
+            1 << 3 | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int PAYLOAD_TAG =
+            2 << 3 | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int CHECKSUM_TAG =
+            3 << 3 | WireFormat.WIRETYPE_FIXED64;
+    private static final int CLIENT_ADDRESS_TAG =
+            4 << 3 | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int CLIENT_PORT_TAG =
+            5 << 3 | WireFormat.WIRETYPE_VARINT;
+    /* Command of the KVRequest within the payload */
+    private static final int COMMAND_TAG =
+            1 << 3 | WireFormat.WIRETYPE_VARINT;
+
+
+    /**
+     * @param transport sockets or channels to serve requests over
+     * @param budget accounts for every cached reply
+     * @param cache_capacity bytes held back in the budget for replies
+     * @param load tells refused clients how long to wait
+     * @param metrics counts hits and misses of the reply cache
+     * @param members hosts of the ring members, which may forward requests
+     *                on behalf of a client
      */
-    InetAddress most_recent_address;
-    int most_recent_port;
-    Request r;
+    SerializerServer(Transport transport, MemoryBudget budget,
+                     long cache_capacity, LoadMonitor load, Metrics metrics,
+                     Set<InetAddress> members) {
+        this.transport = transport;
+        this.members = members;
+        this.load = load;
+        this.metrics = metrics;
+        free_contexts = new ArrayBlockingQueue<>(MAX_POOLED_CONTEXTS);
+        this.budget = budget;
+        /* A quarter of the reserve is left for replies still in flight */
+        msg_id_cache = new ReplyCache(
+                cache_capacity / 4 * 3, MAX_TIMEOUT, budget);
+    }
 
-    /* TODO Determine if sockets are concurrent */
-    DatagramSocket server_socket;
-    DatagramSocket sender_socket;
-    DatagramPacket recv_packet;
-    short port;
-    byte[] recv_buf = new byte[1 << 14];
-    byte[] send_buf = new byte[1 << 14];
+    /**
+     * @param ctx context of a decoded request
+     * @return true if a member sent the request itself, rather than
+     * forwarding it on behalf of a client
+     */
+    boolean fromMember(RequestContext ctx) {
+        return !ctx.forwarded && members.contains(ctx.address);
+    }
 
+    /* Number of threads that should be receiving, see Transport.lanes() */
+    int lanes() {
+        return transport.lanes();
+    }
 
-    SerializerServer(short port) {
-        recv_packet = new DatagramPacket(recv_buf, recv_buf.length);
-        r = new Request();
-        req_cache = new ConcurrentHashMap<>();
+    /**
+     * Decodes the Msg envelope in place, recording where the message ID and
+     * payload are within the receive buffer. A request forwarded by another
+     * member is to be answered at the client address it carries; from any
+     * other sender that address is ignored and the sender is answered.
+     * @param ctx context holding a received datagram
+     * @return false if the envelope is malformed or missing a field
+     */
+    private boolean decode(RequestContext ctx) throws IOException {
+        CodedInputStream in =
+                CodedInputStream.newInstance(ctx.data, 0, ctx.length);
+        boolean has_id = false, has_payload = false, has_checksum = false;
+        InetAddress client_address = null;
+        int client_port = 0;
+        while (true) {
+            int tag = in.readTag();
+            if (tag == 0)
+                break;
 
-        try {
-            this.server_socket = new DatagramSocket(port);
-            this.sender_socket = new DatagramSocket();
-        } catch (IOException io) {
-            System.out.println("Error: Could not create a server socket!");
+            switch (tag) {
+                case MESSAGE_ID_TAG:
+                    ctx.id_length = in.readRawVarint32();
+                    ctx.id_offset = in.getTotalBytesRead();
+                    in.skipRawBytes(ctx.id_length);
+                    has_id = true;
+                    break;
+                case PAYLOAD_TAG:
+                    ctx.payload_length = in.readRawVarint32();
+                    ctx.payload_offset = in.getTotalBytesRead();
+                    in.skipRawBytes(ctx.payload_length);
+                    has_payload = true;
+                    break;
+                case CHECKSUM_TAG:
+                    ctx.checksum = in.readFixed64();
+                    has_checksum = true;
+                    break;
+                case CLIENT_ADDRESS_TAG:
+                    client_address = InetAddress.getByAddress(
+                        in.readBytes().toByteArray());
+                    break;
+                case CLIENT_PORT_TAG:
+                    client_port = in.readUInt32();
+                    break;
+                default:
+                    if (!in.skipField(tag))
+                        return false;
+            }
+        }
+        if (client_address != null) {
+            if (members.contains(ctx.address)) {
+                if (client_port < 0 || client_port > 0xFFFF)
+                    return false;
+                ctx.address = client_address;
+                ctx.port = client_port;
+                ctx.source = new InetSocketAddress(client_address, client_port);
+                ctx.forwarded = true;
+            } else if (Log.debugging()) {
+                Log.debug("Ignoring the client address sent by " +
+                    ctx.address + ":" + ctx.port);
+            }
         }
-        this.port = port;
+        return has_id && has_payload && has_checksum;
     }
 
-    private boolean checkIfRuntimeMemAvailable() {
-        /* Need at least 100kB of memory to be able to operate efficiently */
-        long FREE_LIMIT = 100000; //B
-        return Runtime.getRuntime().freeMemory() > FREE_LIMIT;
+    private static long readLong(byte[] buf, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++)
+            value = (value << 8) | (buf[offset + i] & 0xFF);
+        return value;
     }
 
-    private boolean verifyID(Message.Msg response) {
+    /**
+     * Turns the message ID into the two longs the reply cache is keyed on.
+     * IDs are 16 bytes by protocol; any other length is hashed down to 128
+     * bits, where a collision is not a practical concern.
+     */
+    private static void readMessageID(RequestContext ctx) {
+        byte[] id = ctx.data;
+        int offset = ctx.id_offset;
+        if (ctx.id_length != 16) {
+            id = Hashing.murmur3_128()
+                    .hashBytes(ctx.data, ctx.id_offset, ctx.id_length)
+                    .asBytes();
+            offset = 0;
+        }
+        ctx.id_hi = readLong(id, offset);
+        ctx.id_lo = readLong(id, offset + 8);
+    }
+
+    /* Package-private for the benchmarks */
+    boolean verifyID(RequestContext ctx) {
         /*
-         * Check that the response's checksum is correct and that the message
-         * IDs match
+         * Check that the request's checksum is correct, straight off the
+         * receive buffer
          */
-        CRC32 check = new CRC32();
-        check.update(response.getMessageID().toByteArray());
-        check.update(response.getPayload().toByteArray());
+        ctx.crc.reset();
+        ctx.crc.update(ctx.data, ctx.id_offset, ctx.id_length);
+        ctx.crc.update(ctx.data, ctx.payload_offset, ctx.payload_length);
 
-        return (check.getValue() == response.getCheckSum());
+        return (ctx.crc.getValue() == ctx.checksum);
     }
 
-    byte[] listen() {
-        DatagramPacket recv_packet =
-                new DatagramPacket(recv_buf, recv_buf.length);
+    /**
+     * Blocks until the next datagram arrives on a transport lane
+     * @param lane lane to receive from, only ever used by one thread
+     * @return pooled context holding the datagram and its sender, or null on
+     * a receive error. Hand it back with release() once serviced.
+     */
+    RequestContext receive(int lane) {
+        RequestContext ctx = free_contexts.poll();
+        if (ctx == null) {
+            try {
+                ctx = new RequestContext();
+            } catch (OutOfMemoryError m) {
+                Log.error("Out of Memory!");
+                return null;
+            }
+        }
+
         try {
-            server_socket.receive(recv_packet);
-//            System.out.println("Debugging: Received request from " +
-//                    recv_packet.getAddress() + recv_packet.getPort());
+            transport.receive(lane, ctx);
+            ctx.received = System.nanoTime();
         } catch (IOException io) {
-            System.out.println("Error: could not receive new messages!");
+            Log.error("could not receive new messages!");
+            release(ctx);
             return null;
         }
+        return ctx;
+    }
 
-        recv_buf = recv_packet.getData();
-        Message.Msg request;
-        try {
-            request = Message.Msg.parseFrom(
-                    Arrays.copyOfRange(recv_buf, 0, recv_packet.getLength()));
-        } catch(OutOfMemoryError | InvalidProtocolBufferException i) {
-            System.out.println("Error: Could not parse request");
-            return null;
+    /**
+     * Blocks until at least one datagram arrives on a lane, then keeps taking
+     * datagrams that are already waiting until the batch is full or the
+     * latency cap has passed since the first one arrived. Replies to the
+     * batch are held back until flush().
+     * @param lane lane to receive from, only ever used by one thread
+     * @param batch filled with pooled contexts
+     * @param max_wait_nanos latency cap of the batch
+     * @return number of contexts placed in the batch
+     */
+    int receiveBatch(int lane, RequestContext[] batch, long max_wait_nanos) {
+        RequestContext first = receive(lane);
+        if (first == null)
+            return 0;
+        first.batched = true;
+        batch[0] = first;
+
+        int count = 1;
+        long start = System.nanoTime();
+        while (count < batch.length &&
+               System.nanoTime() - start < max_wait_nanos) {
+            RequestContext ctx = free_contexts.poll();
+            if (ctx == null)
+                ctx = new RequestContext();
+
+            try {
+                if (!transport.poll(lane, ctx)) {
+                    free_contexts.offer(ctx);
+                    break;
+                }
+            } catch (IOException io) {
+                Log.error("could not receive new messages!");
+                free_contexts.offer(ctx);
+                break;
+            }
+            ctx.received = System.nanoTime();
+            ctx.batched = true;
+            batch[count++] = ctx;
         }
+        return count;
+    }
 
-        if (!checkIfRuntimeMemAvailable()) {
-            reply(ErrCode.overload_message);
+    /**
+     * Caches and sends every reply held back for a batch back to back, then
+     * returns the batch's contexts to the pool. Call it only once the
+     * batch's updates are durable: until then, neither retransmissions nor
+     * parked waiters may see a reply.
+     * @param batch contexts returned by receiveBatch()
+     * @param count number of contexts in the batch
+     */
+    void flush(RequestContext[] batch, int count) {
+        for (int i = 0; i < count; i++) {
+            RequestContext ctx = batch[i];
+            if (ctx.reply != null)
+                complete(ctx, ctx.reply);
+            else if (ctx.reply_length > 0)
+                transmit(ctx, ctx.reply_length);
+            batch[i] = null;
+            release(ctx);
         }
+    }
+
+    /**
+     * Returns a context to the pool so its buffers can take another datagram
+     * @param ctx context returned by receive(), not to be used afterwards
+     */
+    void release(RequestContext ctx) {
+        abandon(ctx);
+        ctx.address = null;
+        ctx.source = null;
+        ctx.batched = false;
+        ctx.reply_length = 0;
+        ctx.reply = null;
+        ctx.wal_seq = 0;
+        ctx.forwarded = false;
+        ctx.decoded = false;
+        free_contexts.offer(ctx);
+    }
 
+    /**
+     * Verifies the message envelope of a received datagram and answers it
+     * straight from the cache if it is a retransmission
+     * @param ctx context returned by receive()
+     * @return true if the payload at ctx.payload_offset is to be serviced
+     */
+    boolean unwrap(RequestContext ctx) {
         try {
-            if (!verifyID(request)) {
-                System.out.println("Error: Checksum incorrect!");
-                return null;
+            if (!ctx.decoded && !decode(ctx)) {
+                Log.error("Could not parse request");
+                return false;
             }
+        } catch (IOException i) {
+            Log.error("Could not parse request");
+            return false;
+        }
 
-            most_recent_address = recv_packet.getAddress();
-            most_recent_port = recv_packet.getPort();
-            r.message_id = request.getMessageID().toByteArray();
-            r.response = new byte[0]; //reset the value
-        } catch(OutOfMemoryError m) {
-            System.out.println("Error: Out of Memory!");
+        if (!verifyID(ctx)) {
+            Log.error("Checksum incorrect!");
+            return false;
         }
 
         /* Check if the reply has previously been seen */
+        readMessageID(ctx);
+        byte[] cached_reply = msg_id_cache.begin(ctx.id_hi, ctx.id_lo, ctx);
+        /* The original is still being serviced, its reply will be ours */
+        if (cached_reply == ReplyCache.IN_FLIGHT) {
+            metrics.cacheParked();
+            Log.debug("Parked retransmission");
+            return false;
+        }
+        /* Value has been found. Return the stashed reply */
+        if (cached_reply != null) {
+            metrics.cacheHit();
+            Log.debug("Found in cache");
+            send(ctx, cached_reply);
+            return false;
+        }
+        ctx.pending = true;
+        metrics.cacheMiss();
+
+        /*
+         * Hold room for the largest possible reply so that whatever the
+         * request turns out to return can be cached. If even that is not
+         * available the cache is full of replies that will expire shortly.
+         */
+        long reserve = MemoryBudget.cacheBytes(MAX_REPLY_LENGTH);
+        if (!budget.reserveCache(reserve)) {
+            abandon(ctx);
+            metrics.rejected();
+            send(ctx, load.overloadMessage());
+            return false;
+        }
+        ctx.reserved = reserve;
+        return true;
+    }
+
+    /**
+     * Receives and verifies the next request. Use this when the same thread
+     * both receives and services requests.
+     * @return context of the request and its payload, or null if there is
+     * nothing to service
+     */
+    RequestContext listen() {
+        RequestContext ctx = receive(0);
+        if (ctx == null)
+            return null;
+        if (!unwrap(ctx)) {
+            release(ctx);
+            return null;
+        }
+        return ctx;
+    }
+
+    /**
+     * Finds the command of a request without verifying or parsing it, so
+     * that the receiving thread can tell where the request has to go
+     * @param ctx context returned by receive()
+     * @return the command, or -1 if the request is malformed
+     */
+    int peekCommand(RequestContext ctx) {
         try {
-            byte[] cached_reply = msg_id_cache.get(r);
-            /* Value has been found. Return the stashed reply */
-            if (cached_reply.length != 0) {
-                System.out.println("Debugging: Found in cache");
-                reply(cached_reply);
-                return null;
+            if (!decode(ctx))
+                return -1;
+            ctx.decoded = true;
+
+            CodedInputStream in = CodedInputStream.newInstance(
+                    ctx.data, ctx.payload_offset, ctx.payload_length);
+            while (true) {
+                int tag = in.readTag();
+                if (tag == 0)
+                    return -1;
+                if (tag == COMMAND_TAG)
+                    return in.readUInt32();
+                if (!in.skipField(tag))
+                    return -1;
             }
-        } catch (OutOfMemoryError| ExecutionException e) {
-            System.out.println(
-                "Error: Could not retrieve val from cache");
-            return null;
+        } catch (IOException i) {
+            return -1;
         }
+    }
+
+    /**
+     * Refuses a request without servicing or caching it, e.g. because too
+     * many requests are waiting already. The client is expected to retry.
+     * @param ctx context returned by receive()
+     * @param payload serialized KVResponse
+     */
+    void reject(RequestContext ctx, byte[] payload) {
+        try {
+            if (!ctx.decoded && !decode(ctx) || !verifyID(ctx))
+                return;
+        } catch (IOException i) {
+            return;
+        }
+        send(ctx, payload);
+    }
 
-        /* Cache the client's information for now*/
-//        System.out.println("Debugging: Message is good!");
-        return request.getPayload().toByteArray();
+    /**
+     * Gives back the memory held for a request that will not be replied to
+     * @param ctx context of the abandoned request
+     */
+    void abandon(RequestContext ctx) {
+        budget.releaseCache(ctx.reserved);
+        ctx.reserved = 0;
+        if (ctx.pending) {
+            msg_id_cache.cancel(ctx.id_hi, ctx.id_lo);
+            ctx.pending = false;
+        }
+    }
+
+    /**
+     * Caches the reply to a request and sends it back to the client. The
+     * reply to a batched request is only encoded; flush() caches and sends
+     * it, and a later reply before then replaces it.
+     * @param ctx context of the request being answered
+     * @param payload serialized KVResponse
+     * @return true if the reply was sent
+     */
+    boolean reply(RequestContext ctx, byte[] payload) {
+        if (ctx.batched) {
+            if (!send(ctx, payload))
+                return false;
+            ctx.reply = payload;
+            return true;
+        }
+        return complete(ctx, payload);
     }
 
-    boolean reply(byte[] payload) {
-        DatagramPacket send_packet;
+    private boolean complete(RequestContext ctx, byte[] payload) {
+        /* Keep only what the cached reply actually takes up */
+        budget.releaseCache(ctx.reserved - MemoryBudget.cacheBytes(payload.length));
+        ctx.reserved = 0;
+        ReplyCache.Waiter waiters =
+                msg_id_cache.complete(ctx.id_hi, ctx.id_lo, payload);
+        ctx.pending = false;
+
+        if (ctx.batched) {
+            /* Encoded by reply() already */
+            if (!transmit(ctx, ctx.reply_length))
+                return false;
+        } else if (!send(ctx, payload)) {
+            return false;
+        }
+
+        /*
+         * Retransmissions that came in meanwhile carry the same message ID
+         * and payload, so the encoded reply is exactly theirs as well
+         */
+        for (; waiters != null; waiters = waiters.next)
+            transmitTo(ctx, waiters);
+        return true;
+    }
+
+    private void transmitTo(RequestContext ctx, ReplyCache.Waiter waiter) {
+        transmitTo(ctx, waiter.address, waiter.port, waiter.source,
+                   waiter.lane, ctx.reply_length);
+    }
+
+    /* Sends the send buffer somewhere other than back to the requester */
+    private boolean transmitTo(RequestContext ctx, InetAddress to_address,
+                               int to_port, InetSocketAddress to_source,
+                               int to_lane, int length) {
+        InetAddress address = ctx.address;
+        int port = ctx.port;
+        InetSocketAddress source = ctx.source;
+        int lane = ctx.lane;
+
+        ctx.address = to_address;
+        ctx.port = to_port;
+        ctx.source = to_source;
+        ctx.lane = to_lane;
+        boolean sent = transmit(ctx, length);
+
+        ctx.address = address;
+        ctx.port = port;
+        ctx.source = source;
+        ctx.lane = lane;
+        return sent;
+    }
+
+    /**
+     * Hands a request over to the node that owns its key. The envelope is
+     * passed on as is, along with the client's address, so that the owner
+     * replies to the client directly and retransmissions are recognized by
+     * the owner's reply cache. Nothing is cached here.
+     * @param ctx context of the request to forward
+     * @param owner node to forward the request to
+     * @return true if the request was sent on
+     */
+    boolean forward(RequestContext ctx, InetSocketAddress owner) {
+        abandon(ctx);
+
+        int length;
         try {
-            /* Cache the reply */
-            r.response = payload;
-            msg_id_cache.refresh(r);
-
-            /* Create the CRC of the message */
-            CRC32 checksum = new CRC32();
-            checksum.update(r.message_id);
-            checksum.update(payload);
-
-            /* Create the message */
-            Message.Msg msg = Message.Msg.newBuilder()
-                    .setMessageID(ByteString.copyFrom(r.message_id))
-                    .setPayload(ByteString.copyFrom(payload))
-                    .setCheckSum(checksum.getValue())
-                    .build();
-
-            /* Now send the data packet */
-            send_buf = msg.toByteArray();
-            int len = msg.toByteArray().length;
-            send_packet = new DatagramPacket(
-                    send_buf, len, most_recent_address, most_recent_port);
-        } catch (OutOfMemoryError e) {
-            System.out.println("Error: Out of Memory!");
+            CodedOutputStream out = CodedOutputStream.newInstance(ctx.send_buf);
+            out.writeRawVarint32(MESSAGE_ID_TAG);
+            out.writeRawVarint32(ctx.id_length);
+            out.writeRawBytes(ctx.data, ctx.id_offset, ctx.id_length);
+            out.writeRawVarint32(PAYLOAD_TAG);
+            out.writeRawVarint32(ctx.payload_length);
+            out.writeRawBytes(ctx.data, ctx.payload_offset, ctx.payload_length);
+            out.writeFixed64(3, ctx.checksum);
+            out.writeBytes(4, ByteString.copyFrom(ctx.address.getAddress()));
+            out.writeUInt32(5, ctx.port);
+            length = ctx.send_buf.length - out.spaceLeft();
+        } catch (IOException e) {
+            Log.error("Request does not fit in a datagram");
             return false;
         }
 
+        /* Sent right away even in a batch, it is not a reply to flush */
+        return transmitTo(ctx, owner.getAddress(), owner.getPort(), owner,
+                          ctx.lane, length);
+    }
+
+    /**
+     * Sends a reply to the client without caching it, e.g. for replies that
+     * are already cached or that the client is expected to retry. Replies
+     * to a batched request are only encoded, flush() sends them.
+     * @param ctx context of the request being answered
+     * @param payload serialized KVResponse
+     * @return true if the reply was sent
+     */
+    boolean send(RequestContext ctx, byte[] payload) {
+        /* Create the CRC of the message */
+        ctx.crc.reset();
+        ctx.crc.update(ctx.data, ctx.id_offset, ctx.id_length);
+        ctx.crc.update(payload);
+
+        /* Encode the envelope straight into the send buffer */
+        int length;
         try {
-            sender_socket.send(send_packet);
+            CodedOutputStream out = CodedOutputStream.newInstance(ctx.send_buf);
+            out.writeRawVarint32(MESSAGE_ID_TAG);
+            out.writeRawVarint32(ctx.id_length);
+            out.writeRawBytes(ctx.data, ctx.id_offset, ctx.id_length);
+            out.writeRawVarint32(PAYLOAD_TAG);
+            out.writeRawVarint32(payload.length);
+            out.writeRawBytes(payload);
+            out.writeFixed64(3, ctx.crc.getValue());
+            length = ctx.send_buf.length - out.spaceLeft();
+        } catch (IOException e) {
+            Log.error("Reply does not fit in a datagram");
+            return false;
+        }
+
+        ctx.reply_length = length;
+        if (ctx.batched)
+            return true;
+        return transmit(ctx, length);
+    }
+
+    private boolean transmit(RequestContext ctx, int length) {
+        try {
+            if (!transport.send(ctx, length)) {
+                Log.error("Reply dropped, send buffer full");
+                return false;
+            }
         } catch(IOException ioe) {
-            System.out.println("Error: Could not send reply");
+            Log.error("Could not send reply");
             return false;
         }
         return true;
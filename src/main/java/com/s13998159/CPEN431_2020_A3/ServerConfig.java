@@ -0,0 +1,238 @@
+package com.s13998159.CPEN431_2020_A3;
+
+/**
+ * Startup options of the key-value server. Every option can be overridden on
+ * the command line as --name=value, e.g. --workers=8
+ */
+public class ServerConfig {
+    /* Port the server listens on for client requests */
+    int port = 18159;
+
+    /*
+     * Number of threads that parse, execute and reply to requests. With a
+     * single worker everything runs on the receiving thread.
+     */
+    int workers = 1;
+
+    /* How datagrams are received and sent: "socket" or "channel" */
+    String transport = "socket";
+
+    /*
+     * Number of channels bound to the port with SO_REUSEPORT when using the
+     * channel transport, each with its own receiving thread
+     */
+    int channels = 1;
+
+    /*
+     * Most datagrams drained from a lane before they are serviced and their
+     * replies are sent, and the longest a batch may take to fill. Batching
+     * only applies without a worker pool.
+     */
+    int batch_size = 1;
+    long batch_latency = 200000; //ns
+
+    /*
+     * Storage engine: "hashmap", "striped", "offheap" or "compact". Defaults
+     * to the unsynchronized hashmap for a single worker and to the striped
+     * engine otherwise.
+     */
+    String storage = null;
+
+    /* Bytes of values the off-heap engines may keep outside the heap */
+    long arena_capacity = 256L << 20;
+
+    /*
+     * Heap bytes that stored keys, values and cached replies may take up.
+     * The rest of the heap is left for request processing.
+     */
+    long memory_capacity = Runtime.getRuntime().maxMemory() / 4 * 3;
+
+    /* Part of memory_capacity held back for cached replies */
+    long cache_capacity = 16L << 20;
+
+    /*
+     * Directory of the write-ahead log that storage is rebuilt from on
+     * startup. Nothing is logged if it is not set.
+     */
+    String wal_dir = null;
+
+    /*
+     * When the log is synced to disk: "always" before replying, "interval"
+     * every wal_interval ms, or "never" and left to the OS
+     */
+    String wal_fsync = "always";
+    long wal_interval = 10; //ms
+
+    /*
+     * Time between snapshots of storage, which are written next to the log
+     * and let restarts skip most of it. 0 disables snapshots.
+     */
+    long snapshot_interval = 300; //s
+
+    /*
+     * Membership file of one host:port per line. Keys are partitioned over
+     * the listed nodes; a server not listed in it runs standalone.
+     */
+    String servers_file = "servers.list";
+
+    /* Virtual points of every node on the consistent hash ring */
+    int vnodes = 64;
+
+    /*
+     * Nodes every key is kept on, and how many of them have to answer a
+     * read or acknowledge a write by default. Requests may ask for another
+     * quorum. Limited to the number of members.
+     */
+    int replicas = 3;
+    int read_quorum = 2;
+    int write_quorum = 2;
+
+    /*
+     * Gossip port of every member relative to its client port, time between
+     * gossip rounds and time without news after which a member has failed
+     */
+    int gossip_offset = 1000;
+    long gossip_interval = 200; //ms
+    long fail_timeout = 2000; //ms
+
+    /* Requests that may wait for a worker before clients are told to back off */
+    int max_queue = 1024;
+
+    /* Bytes per second at most sent to other members when keys move */
+    double handoff_rate = 8 * 1024 * 1024;
+
+    /* TCP port of the plain-text metrics endpoint, 0 for none */
+    int metrics_port = 0;
+
+    /* Least severe log entries written: debug, info, error or off */
+    String log_level = "info";
+
+    /**
+     * @param members number of members in the servers file, this one included
+     * @return number of threads that may access storage at the same time:
+     * the workers, or every receiving thread if there is no worker pool, the
+     * thread writing or loading snapshots if there is a log, and in a ring
+     * the threads servicing other members' replica commands, the one moving
+     * keys away and one receiving keys from every other member
+     */
+    int concurrency(int members) {
+        int threads = 1;
+        if (workers > 1)
+            threads = workers;
+        else if (transport.equals("channel"))
+            threads = channels;
+        if (members > 1) {
+            if (workers > 1)
+                threads += workers;
+            threads += members;
+        }
+        return wal_dir != null ? threads + 1 : threads;
+    }
+
+    /**
+     * Parses the command line arguments into a configuration
+     * @param args arguments of the form --name=value
+     * @return configuration with defaults for any option not provided
+     */
+    static ServerConfig parse(String[] args) {
+        ServerConfig config = new ServerConfig();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException(
+                    "Options must be of the form --name=value: " + arg);
+            }
+
+            String name = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+            switch (name) {
+                case "port":
+                    config.port = Integer.parseInt(value);
+                    if (config.port < 0 || config.port > 0xFFFF) {
+                        throw new IllegalArgumentException(
+                            "Port must be between 0 and 65535: " + value);
+                    }
+                    break;
+                case "workers":
+                    config.workers = Math.max(1, Integer.parseInt(value));
+                    break;
+                case "transport":
+                    config.transport = value;
+                    break;
+                case "channels":
+                    config.channels = Math.max(1, Integer.parseInt(value));
+                    break;
+                case "batch":
+                    config.batch_size = Math.max(1, Integer.parseInt(value));
+                    break;
+                case "batch-latency-us":
+                    config.batch_latency = Long.parseLong(value) * 1000;
+                    break;
+                case "storage":
+                    config.storage = value;
+                    break;
+                case "arena-mb":
+                    config.arena_capacity = Long.parseLong(value) << 20;
+                    break;
+                case "memory-mb":
+                    config.memory_capacity = Long.parseLong(value) << 20;
+                    break;
+                case "cache-mb":
+                    config.cache_capacity = Long.parseLong(value) << 20;
+                    break;
+                case "wal-dir":
+                    config.wal_dir = value;
+                    break;
+                case "wal-fsync":
+                    config.wal_fsync = value;
+                    break;
+                case "wal-fsync-ms":
+                    config.wal_interval = Math.max(1, Long.parseLong(value));
+                    break;
+                case "snapshot-s":
+                    config.snapshot_interval = Long.parseLong(value);
+                    break;
+                case "servers":
+                    config.servers_file = value;
+                    break;
+                case "vnodes":
+                    config.vnodes = Math.max(1, Integer.parseInt(value));
+                    break;
+                case "replicas":
+                    config.replicas = Math.max(1, Integer.parseInt(value));
+                    break;
+                case "read-quorum":
+                    config.read_quorum = Math.max(1, Integer.parseInt(value));
+                    break;
+                case "write-quorum":
+                    config.write_quorum = Math.max(1, Integer.parseInt(value));
+                    break;
+                case "gossip-offset":
+                    config.gossip_offset = Integer.parseInt(value);
+                    break;
+                case "gossip-ms":
+                    config.gossip_interval = Math.max(1, Long.parseLong(value));
+                    break;
+                case "fail-ms":
+                    config.fail_timeout = Math.max(1, Long.parseLong(value));
+                    break;
+                case "max-queue":
+                    config.max_queue = Math.max(1, Integer.parseInt(value));
+                    break;
+                case "handoff-mbps":
+                    config.handoff_rate =
+                        Double.parseDouble(value) * 1024 * 1024;
+                    break;
+                case "metrics-port":
+                    config.metrics_port = Integer.parseInt(value);
+                    break;
+                case "log":
+                    config.log_level = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException(
+                        "Unknown option: " + name);
+            }
+        }
+        return config;
+    }
+}
@@ -0,0 +1,170 @@
+package com.s13998159.CPEN431_2020_A3;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Off-heap memory for stored values. Memory is reserved from the OS in slabs
+ * of direct ByteBuffers; every slab is dedicated to one size class and cut
+ * into chunks of that size. A chunk is identified by a handle packing the
+ * slab index into the high and the offset into the low 32 bits, so callers
+ * only ever keep a long per value instead of a byte[] on the heap.
+ *
+ * Freed chunks go on a per size class free list and are reused before any
+ * new slab is reserved. Slabs are never returned, the arena only grows up to
+ * its capacity.
+ */
+class SlabArena {
+    static final int SLAB_SIZE = 1 << 20; // bytes
+    static final long NO_SPACE = -1;
+
+    /* Chunk sizes alternate between x1.5 and x1.33 steps, which bounds the
+     * internal fragmentation to a third of a chunk */
+    private static final int[] SIZE_CLASSES;
+    static {
+        int[] classes = new int[32];
+        int count = 0;
+        for (int size = 16; size <= 16384; size <<= 1) {
+            classes[count++] = size;
+            if (size < 16384)
+                classes[count++] = size + size / 2;
+        }
+        SIZE_CLASSES = Arrays.copyOf(classes, count);
+    }
+
+    /* Chunks of one size class that are free to hand out */
+    private static class SizeClass {
+        final int chunk_size;
+        long[] free = new long[64];
+        int free_count = 0;
+        /* Slab currently being carved up, or -1 */
+        int slab = -1;
+        int next_offset = 0;
+
+        SizeClass(int chunk_size) {
+            this.chunk_size = chunk_size;
+        }
+    }
+
+    private final ByteBuffer[] slabs;
+    private final int[] slab_class;
+    private int slab_count = 0;
+    private final SizeClass[] classes;
+
+    /* Bytes of chunks currently handed out */
+    private final AtomicLong used = new AtomicLong();
+
+    /**
+     * @param capacity maximum number of bytes to reserve off-heap
+     */
+    SlabArena(long capacity) {
+        int max_slabs = (int) Math.max(1, capacity / SLAB_SIZE);
+        slabs = new ByteBuffer[max_slabs];
+        slab_class = new int[max_slabs];
+        classes = new SizeClass[SIZE_CLASSES.length];
+        for (int i = 0; i < classes.length; i++)
+            classes[i] = new SizeClass(SIZE_CLASSES[i]);
+    }
+
+    private static int classOf(int length) {
+        int i = Arrays.binarySearch(SIZE_CLASSES, Math.max(length, 1));
+        return i >= 0 ? i : -i - 1;
+    }
+
+    private static long handle(int slab, int offset) {
+        return ((long) slab << 32) | offset;
+    }
+
+    private static int slabOf(long handle) {
+        return (int) (handle >>> 32);
+    }
+
+    private static int offsetOf(long handle) {
+        return (int) handle;
+    }
+
+    /**
+     * Reserves a fresh slab for a size class
+     * @return index of the slab, or -1 if the arena is at capacity
+     */
+    private synchronized int newSlab(int size_class) {
+        if (slab_count == slabs.length)
+            return -1;
+        slabs[slab_count] = ByteBuffer.allocateDirect(SLAB_SIZE);
+        slab_class[slab_count] = size_class;
+        return slab_count++;
+    }
+
+    /**
+     * Allocates a chunk large enough to hold length bytes
+     * @param length number of bytes the chunk has to hold
+     * @return handle of the chunk, or NO_SPACE if the arena is full
+     */
+    long allocate(int length) {
+        int c = classOf(length);
+        if (c == SIZE_CLASSES.length) {
+            throw new IllegalArgumentException(
+                "Value of " + length + " bytes is larger than any chunk");
+        }
+
+        SizeClass size_class = classes[c];
+        long handle;
+        synchronized (size_class) {
+            if (size_class.free_count > 0) {
+                handle = size_class.free[--size_class.free_count];
+            } else {
+                if (size_class.slab == -1 ||
+                    size_class.next_offset + size_class.chunk_size > SLAB_SIZE) {
+                    size_class.slab = newSlab(c);
+                    size_class.next_offset = 0;
+                    if (size_class.slab == -1)
+                        return NO_SPACE;
+                }
+                handle = handle(size_class.slab, size_class.next_offset);
+                size_class.next_offset += size_class.chunk_size;
+            }
+        }
+        used.addAndGet(size_class.chunk_size);
+        return handle;
+    }
+
+    /**
+     * Returns a chunk to its size class. The handle must not be used again.
+     */
+    void free(long handle) {
+        SizeClass size_class = classes[slab_class[slabOf(handle)]];
+        synchronized (size_class) {
+            if (size_class.free_count == size_class.free.length) {
+                size_class.free = Arrays.copyOf(
+                    size_class.free, 2 * size_class.free.length);
+            }
+            size_class.free[size_class.free_count++] = handle;
+        }
+        used.addAndGet(-size_class.chunk_size);
+    }
+
+    void write(long handle, byte[] src) {
+        /* Absolute bulk access needs a private view of the shared slab */
+        ByteBuffer view = slabs[slabOf(handle)].duplicate();
+        view.position(offsetOf(handle));
+        view.put(src);
+    }
+
+    byte[] read(long handle, int length) {
+        byte[] dst = new byte[length];
+        ByteBuffer view = slabs[slabOf(handle)].duplicate();
+        view.position(offsetOf(handle));
+        view.get(dst);
+        return dst;
+    }
+
+    /* Bytes of chunks currently in use, including rounding to the chunk size */
+    long usedBytes() {
+        return used.get();
+    }
+
+    long capacity() {
+        return (long) slabs.length * SLAB_SIZE;
+    }
+}
@@ -0,0 +1,243 @@
+package com.s13998159.CPEN431_2020_A3;
+
+import com.google.protobuf.ByteString;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Image of storage on disk that restarts are served from, so that startup
+ * does not have to replay the whole write-ahead log.
+ *
+ * The file is laid out to be used in place once memory mapped: a header,
+ * every entry as a record, then an open addressing index of where each
+ * record is. A lookup costs a few reads of the mapping, so the server can
+ * answer GETs from the snapshot before a single entry is loaded into memory.
+ *
+ * A snapshot is written from a scan of live storage, which is not a
+ * consistent image. Before the scan the log is rotated, and the snapshot
+ * names the first segment that may hold updates the scan missed. Replaying
+ * the log from there over the snapshot gives the exact state, since every
+ * record sets a key to what it was after the update.
+ */
+class Snapshot {
+    static final String FILE_NAME = "snapshot";
+    private static final long MAGIC = 0x4B56534E41500001L;
+
+    /* magic, log segment, index offset, slot count, entry count */
+    private static final int HEADER_LENGTH = 8 + 8 + 8 + 4 + 4;
+    /* Index slot of no record */
+    private static final long EMPTY = 0;
+
+    private final MappedByteBuffer map;
+    private final long wal_segment;
+    private final int index_offset;
+    private final int mask;
+    private final int count;
+
+    private Snapshot(MappedByteBuffer map) throws IOException {
+        this.map = map;
+        if (map.capacity() < HEADER_LENGTH || map.getLong(0) != MAGIC)
+            throw new IOException("Not a snapshot");
+        wal_segment = map.getLong(8);
+        index_offset = (int) map.getLong(16);
+        mask = map.getInt(24) - 1;
+        count = map.getInt(28);
+    }
+
+    /**
+     * Maps the latest snapshot in a directory
+     * @param dir directory the snapshots are written to
+     * @return the snapshot, or null if there is none
+     */
+    static Snapshot open(File dir) throws IOException {
+        File file = new File(dir, FILE_NAME);
+        if (!file.isFile())
+            return null;
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if (raf.length() > Integer.MAX_VALUE)
+                throw new IOException("Snapshot too large to map");
+            /* The mapping stays valid after the file is closed */
+            return new Snapshot(raf.getChannel().map(
+                FileChannel.MapMode.READ_ONLY, 0, raf.length()));
+        }
+    }
+
+    /* Hash of a key, the same on every run */
+    private static long hash(ByteString key) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < key.size(); i++)
+            h = (h ^ (key.byteAt(i) & 0xFF)) * 0x100000001B3L;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        return h ^ (h >>> 33);
+    }
+
+    /* Index slot of a record: the high half of the hash and the offset */
+    private static long slot(long hash, long offset) {
+        return (hash & 0xFFFFFFFF00000000L) | offset;
+    }
+
+    /**
+     * Writes a snapshot of storage. It only replaces the previous snapshot
+     * once it is completely on disk.
+     * @param dir directory to write the snapshot to
+     * @param storage storage to scan
+     * @param wal_segment first log segment to replay over the snapshot
+     * @return number of entries written
+     */
+    static int write(File dir, KVStorage storage, long wal_segment)
+            throws IOException {
+        File tmp = new File(dir, FILE_NAME + ".tmp");
+        final DataOutputStream out = new DataOutputStream(
+            new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16));
+        /* Slot of every record, placed in the index once all are written */
+        final long[][] slots = {new long[1024]};
+        final int[] written = {0};
+        try {
+            out.write(new byte[HEADER_LENGTH]);
+            storage.scan(new KVStorage.Visitor() {
+                @Override
+                public void visit(ByteString key, KVStorageValue value) {
+                    int offset = out.size();
+                    if (offset + 12L + key.size() + value.value.length >
+                            Integer.MAX_VALUE) {
+                        throw new UncheckedIOException(
+                            new IOException("Snapshot too large to map"));
+                    }
+
+                    try {
+                        out.writeInt(key.size());
+                        key.writeTo(out);
+                        out.writeInt(value.version);
+                        out.writeInt(value.value.length);
+                        out.write(value.value);
+                    } catch (IOException io) {
+                        throw new UncheckedIOException(io);
+                    }
+
+                    if (written[0] == slots[0].length) {
+                        long[] bigger = new long[2 * slots[0].length];
+                        System.arraycopy(slots[0], 0, bigger, 0, written[0]);
+                        slots[0] = bigger;
+                    }
+                    slots[0][written[0]++] = slot(hash(key), offset);
+                }
+            });
+
+            /* At most half full, so probe sequences stay short */
+            int count = written[0];
+            int capacity = Integer.highestOneBit(Math.max(2, 2 * count) - 1) << 1;
+            long[] index = new long[capacity];
+            for (int i = 0; i < count; i++) {
+                long entry = slots[0][i];
+                int s = (int) (entry >>> 32) & (capacity - 1);
+                while (index[s] != EMPTY)
+                    s = (s + 1) & (capacity - 1);
+                index[s] = entry;
+            }
+
+            long index_offset = out.size();
+            for (long entry : index)
+                out.writeLong(entry);
+            out.close();
+
+            try (RandomAccessFile raf = new RandomAccessFile(tmp, "rw")) {
+                raf.writeLong(MAGIC);
+                raf.writeLong(wal_segment);
+                raf.writeLong(index_offset);
+                raf.writeInt(capacity);
+                raf.writeInt(count);
+                raf.getChannel().force(true);
+            }
+            Files.move(tmp.toPath(), new File(dir, FILE_NAME).toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+            return count;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            out.close();
+        }
+    }
+
+    /* First log segment that has to be replayed over the snapshot */
+    long walSegment() {
+        return wal_segment;
+    }
+
+    /* Number of entries in the snapshot */
+    int size() {
+        return count;
+    }
+
+    /**
+     * Looks a key up in the mapped index
+     * @return the value, or null if the key is not in the snapshot
+     */
+    KVStorageValue get(ByteString key) {
+        long h = hash(key);
+        int high = (int) (h >>> 32);
+        for (int s = high & mask; ; s = (s + 1) & mask) {
+            long entry = map.getLong(index_offset + 8 * s);
+            if (entry == EMPTY)
+                return null;
+            if ((int) (entry >>> 32) == high && matches((int) entry, key))
+                return read((int) entry + 4 + key.size());
+        }
+    }
+
+    private boolean matches(int offset, ByteString key) {
+        if (map.getInt(offset) != key.size())
+            return false;
+        for (int i = 0; i < key.size(); i++) {
+            if (map.get(offset + 4 + i) != key.byteAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    /* The mapping is shared, bulk reads go through a view of their own */
+    private void copy(int offset, byte[] dst) {
+        ByteBuffer view = map.duplicate();
+        view.position(offset);
+        view.get(dst);
+    }
+
+    /* Reads the version and value at the given offset of a record */
+    private KVStorageValue read(int offset) {
+        int version = map.getInt(offset);
+        byte[] value = new byte[map.getInt(offset + 4)];
+        copy(offset + 8, value);
+        return new KVStorageValue(value, version);
+    }
+
+    /**
+     * Visits every entry in the order they were written
+     * @param visitor called once for every entry
+     */
+    void forEach(KVStorage.Visitor visitor) {
+        int offset = HEADER_LENGTH;
+        while (offset < index_offset) {
+            int key_length = map.getInt(offset);
+            byte[] key = new byte[key_length];
+            copy(offset + 4, key);
+            offset += 4 + key_length;
+
+            KVStorageValue value = read(offset);
+            offset += 8 + value.value.length;
+            visitor.visit(ByteString.copyFrom(key), value);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.s13998159.CPEN431_2020_A3;
+
+import java.io.IOException;
+import java.net.DatagramSocket;
+
+/**
+ * Transport over blocking java.net.DatagramSockets: requests are received on
+ * the server port and replies are sent from a separate, ephemeral port.
+ *
+ * A blocking socket cannot tell whether a datagram is waiting without
+ * waiting for it, so batches over this transport hold a single datagram.
+ */
+class SocketTransport implements Transport {
+    /* Workers may reply concurrently; DatagramSocket.send is thread-safe */
+    private DatagramSocket server_socket;
+    private DatagramSocket sender_socket;
+
+    SocketTransport(int port) throws IOException {
+        server_socket = new DatagramSocket(port);
+        sender_socket = new DatagramSocket();
+    }
+
+    @Override
+    public int lanes() {
+        return 1;
+    }
+
+    @Override
+    public void receive(int lane, RequestContext ctx) throws IOException {
+        ctx.packet.setLength(ctx.data.length);
+        server_socket.receive(ctx.packet);
+        ctx.length = ctx.packet.getLength();
+        ctx.address = ctx.packet.getAddress();
+        ctx.port = ctx.packet.getPort();
+        ctx.lane = lane;
+    }
+
+    @Override
+    public boolean poll(int lane, RequestContext ctx) {
+        return false;
+    }
+
+    @Override
+    public boolean send(RequestContext ctx, int length) throws IOException {
+        ctx.send_packet.setData(ctx.send_buf, 0, length);
+        ctx.send_packet.setAddress(ctx.address);
+        ctx.send_packet.setPort(ctx.port);
+        sender_socket.send(ctx.send_packet);
+        return true;
+    }
+}
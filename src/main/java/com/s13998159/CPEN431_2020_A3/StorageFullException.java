@@ -0,0 +1,13 @@
+package com.s13998159.CPEN431_2020_A3;
+
+/**
+ * Thrown by a storage engine that cannot make room for another value. The
+ * server answers the request with ErrCode.NoSpace.
+ */
+class StorageFullException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    StorageFullException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,152 @@
+package com.s13998159.CPEN431_2020_A3;
+
+import com.google.protobuf.ByteString;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Storage engine for multi-threaded servers. Keys are spread over a number of
+ * independent stripes, each a HashMap guarded by its own read-write lock, so
+ * a write only ever blocks requests for keys in the same stripe and reads of
+ * the same stripe proceed in parallel.
+ */
+class StripedStorage implements KVStorage {
+    private final HashMap<ByteString,KVStorageValue>[] stripes;
+    private final ReadWriteLock[] locks;
+    private final int mask;
+    private final MemoryBudget budget;
+
+    /**
+     * @param concurrency expected number of threads accessing the storage.
+     *                    The stripe count is rounded up to a power of two.
+     * @param budget accounts for the bytes of every stored key
+     */
+    @SuppressWarnings("unchecked")
+    StripedStorage(int concurrency, MemoryBudget budget) {
+        this.budget = budget;
+        /* Several stripes per thread keeps the chance of two threads
+         * contending on the same stripe low */
+        int count = Integer.highestOneBit(Math.max(1, concurrency * 4) - 1) << 1;
+        stripes = (HashMap<ByteString,KVStorageValue>[])
+                new HashMap<?,?>[count];
+        locks = new ReadWriteLock[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new HashMap<>();
+            locks[i] = new ReentrantReadWriteLock();
+        }
+        mask = count - 1;
+    }
+
+    private int stripeOf(ByteString key) {
+        /* ByteString caches its hash, spread the high bits into the index */
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    @Override
+    public KVStorageValue get(ByteString key) {
+        int i = stripeOf(key);
+        locks[i].readLock().lock();
+        try {
+            return stripes[i].get(key);
+        } finally {
+            locks[i].readLock().unlock();
+        }
+    }
+
+    @Override
+    public void put(ByteString key, KVStorageValue value) {
+        int i = stripeOf(key);
+        locks[i].writeLock().lock();
+        try {
+            KVStorageValue old = stripes[i].get(key);
+            long delta = MemoryBudget.entryBytes(key.size(), value.value.length);
+            if (old != null)
+                delta -= MemoryBudget.entryBytes(key.size(), old.value.length);
+
+            if (delta > 0 && !budget.reserveStorage(delta))
+                throw new StorageFullException("Memory budget exhausted");
+            if (delta < 0)
+                budget.releaseStorage(-delta);
+            stripes[i].put(key, value);
+        } finally {
+            locks[i].writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(ByteString key) {
+        int i = stripeOf(key);
+        locks[i].writeLock().lock();
+        try {
+            KVStorageValue old = stripes[i].remove(key);
+            if (old == null)
+                return false;
+            budget.releaseStorage(
+                MemoryBudget.entryBytes(key.size(), old.value.length));
+            return true;
+        } finally {
+            locks[i].writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < stripes.length; i++) {
+            locks[i].writeLock().lock();
+            try {
+                long bytes = 0;
+                for (Map.Entry<ByteString,KVStorageValue> entry :
+                        stripes[i].entrySet()) {
+                    bytes += MemoryBudget.entryBytes(
+                        entry.getKey().size(), entry.getValue().value.length);
+                }
+                stripes[i].clear();
+                budget.releaseStorage(bytes);
+            } finally {
+                locks[i].writeLock().unlock();
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (int i = 0; i < stripes.length; i++) {
+            locks[i].readLock().lock();
+            try {
+                size += stripes[i].size();
+            } finally {
+                locks[i].readLock().unlock();
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public void scan(Visitor visitor) {
+        for (int i = 0; i < stripes.length; i++) {
+            ByteString[] keys;
+            KVStorageValue[] values;
+            locks[i].readLock().lock();
+            try {
+                /* Values are never modified in place, references will do */
+                keys = new ByteString[stripes[i].size()];
+                values = new KVStorageValue[keys.length];
+                int n = 0;
+                for (Map.Entry<ByteString,KVStorageValue> entry :
+                        stripes[i].entrySet()) {
+                    keys[n] = entry.getKey();
+                    values[n++] = entry.getValue();
+                }
+            } finally {
+                locks[i].readLock().unlock();
+            }
+            for (int n = 0; n < keys.length; n++)
+                visitor.visit(keys[n], values[n]);
+        }
+    }
+}
@@ -1,12 +1,466 @@
 package com.s13998159.CPEN431_2020_A3;
 
+import ca.NetSysLab.ProtocolBuffers.KeyValueRequest;
+import ca.NetSysLab.ProtocolBuffers.KeyValueResponse;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+
+/**
+ * Load generator for the key-value servers, on top of SerializerClient.
+ *
+ * A closed loop keeps a fixed number of requests outstanding, sending the
+ * next one as soon as one is answered; its latencies are those of single
+ * requests. An open loop sends at a fixed rate whatever the servers do, and
+ * measures every request from the time it was due to be sent rather than the
+ * time it actually went out, so a stalled server or a generator falling
+ * behind shows up in the latencies instead of being hidden by the requests
+ * that were never sent (coordinated omission).
+ *
+ * Latencies are kept in HdrHistograms, reported every second and for the
+ * whole run, along with the replies by error code, timeouts and resends.
+ *
+ *     java -cp A3.jar com.s13998159.CPEN431_2020_A3.TestKVClient \
+ *         --servers=host:port,... [--name=value ...]
+ */
 public class TestKVClient {
+    private static final long REPORT_INTERVAL = 1000; //ms
+    /* Requests of a preload batch, so that it travels unfragmented */
+    private static final int BATCH_PAYLOAD = 1400; //B
+
+    /* Options, see parse() */
+    private final List<InetSocketAddress> servers = new ArrayList<>();
+    private String mode = "closed";
+    private int concurrency = 64;
+    private double rate = 1000; //requests per second
+    private long duration = 10; //s
+    private int keys = 10000;
+    private String distribution = "uniform";
+    private double zipf_s = 0.99;
+    private double hot_fraction = 0.2;
+    private double hot_requests = 0.8;
+    private double reads = 0.9;
+    private double removes = 0;
+    private int value_size = 100; //B
+    private int sockets = 1;
+    private boolean preload = false;
+
+    private SerializerClient[] clients;
+    private KeyDistribution chooser;
+    private byte[] value;
+    private final AtomicLong sent = new AtomicLong();
+    /* Versions of the puts, increasing so that later puts win; one that is
+     * overtaken by a later put of the same key still comes back Stale */
+    private final AtomicInteger versions = new AtomicInteger();
+
+    /* Latencies in microseconds */
+    private final Recorder latencies = new Recorder(3);
+    private final Histogram total = new Histogram(3);
+
+    private final AtomicLong ok = new AtomicLong();
+    private final AtomicLong no_key = new AtomicLong();
+    private final AtomicLong overload = new AtomicLong();
+    private final AtomicLong stale = new AtomicLong();
+    private final AtomicLong other_errors = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    public static void main(String[] args) throws Exception {
+        TestKVClient test = parse(args);
+        test.run();
+        System.exit(0);
+    }
+
+    /**
+     * Parses the command line arguments of a load test
+     * @param args arguments of the form --name=value
+     */
+    static TestKVClient parse(String[] args) {
+        TestKVClient test = new TestKVClient();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException(
+                    "Options must be of the form --name=value: " + arg);
+            }
+
+            String name = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+            switch (name) {
+                case "servers":
+                    for (String server : value.split(",")) {
+                        int colon = server.lastIndexOf(':');
+                        test.servers.add(new InetSocketAddress(
+                            server.substring(0, colon),
+                            Integer.parseInt(server.substring(colon + 1))));
+                    }
+                    break;
+                case "mode":
+                    test.mode = value;
+                    break;
+                case "concurrency":
+                    test.concurrency = Math.max(1, Integer.parseInt(value));
+                    break;
+                case "rate":
+                    test.rate = Double.parseDouble(value);
+                    break;
+                case "duration-s":
+                    test.duration = Long.parseLong(value);
+                    break;
+                case "keys":
+                    test.keys = Math.max(1, Integer.parseInt(value));
+                    break;
+                case "dist":
+                    test.distribution = value;
+                    break;
+                case "zipf-s":
+                    test.zipf_s = Double.parseDouble(value);
+                    break;
+                case "hot-keys":
+                    test.hot_fraction = Double.parseDouble(value);
+                    break;
+                case "hot-requests":
+                    test.hot_requests = Double.parseDouble(value);
+                    break;
+                case "reads":
+                    test.reads = Double.parseDouble(value);
+                    break;
+                case "removes":
+                    test.removes = Double.parseDouble(value);
+                    break;
+                case "value-size":
+                    test.value_size = Integer.parseInt(value);
+                    break;
+                case "sockets":
+                    test.sockets = Math.max(1, Integer.parseInt(value));
+                    break;
+                case "preload":
+                    test.preload = Boolean.parseBoolean(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException(
+                        "Unknown option: " + name);
+            }
+        }
+        if (test.servers.isEmpty())
+            throw new IllegalArgumentException("No --servers to test");
+        if (!test.mode.equals("closed") && !test.mode.equals("open"))
+            throw new IllegalArgumentException("Unknown mode: " + test.mode);
+        return test;
+    }
+
+    private void run() throws SocketException, InterruptedException {
+        clients = new SerializerClient[sockets];
+        for (int i = 0; i < sockets; i++)
+            clients[i] = new SerializerClient();
+        chooser = KeyDistribution.create(
+            distribution, keys, zipf_s, hot_fraction, hot_requests);
+        value = new byte[value_size];
+        new Random().nextBytes(value);
+
+        if (preload)
+            preload();
+
+        System.out.println("Debugging: " + mode + " loop against " +
+            servers + " for " + duration + "s");
+        ScheduledExecutorService reporter =
+                Executors.newSingleThreadScheduledExecutor();
+        final long start = System.nanoTime();
+        reporter.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                report(start);
+            }
+        }, REPORT_INTERVAL, REPORT_INTERVAL, TimeUnit.MILLISECONDS);
+
+        long end = start + TimeUnit.SECONDS.toNanos(duration);
+        if (mode.equals("open"))
+            openLoop(start, end);
+        else
+            closedLoop(end);
+
+        reporter.shutdownNow();
+        reporter.awaitTermination(1, TimeUnit.SECONDS);
+        summarize(System.nanoTime() - start);
+        for (SerializerClient client : clients)
+            client.close();
+    }
+
     /**
-     * Client needs to test extensively in server robustness, ability to
-     * handle multiple client concurrently, and correct implementation of
-     * at-most-once semantics.
+     * Stores every key once, so that reads find them. Keys go out in
+     * MultiPuts of as many as fit in a datagram that is not fragmented.
      */
-    TestKVClient() {
+    private void preload() throws InterruptedException {
+        System.out.println("Debugging: Preloading " + keys + " keys");
+        ByteString preload_value = ByteString.copyFrom(value);
+        List<KeyValueRequest.KVRequest> batches = new ArrayList<>();
+        KeyValueRequest.KVRequest.Builder batch = newBatch();
+        int length = 0;
+        for (int k = 0; k < keys; k++) {
+            KeyValueRequest.KVRequest.Entry entry =
+                    KeyValueRequest.KVRequest.Entry.newBuilder()
+                    .setKey(keyOf(k))
+                    .setValue(preload_value)
+                    .setVersion(versions.incrementAndGet())
+                    .build();
+            int entry_length = CodedOutputStream.computeMessageSize(
+                KeyValueRequest.KVRequest.ENTRIES_FIELD_NUMBER, entry);
+            if (batch.getEntriesCount() > 0 &&
+                length + entry_length > BATCH_PAYLOAD) {
+                batches.add(batch.build());
+                batch = newBatch();
+                length = 0;
+            }
+            batch.addEntries(entry);
+            length += entry_length;
+        }
+        batches.add(batch.build());
+
+        final CountDownLatch done = new CountDownLatch(batches.size());
+        final AtomicLong failed = new AtomicLong();
+        for (int b = 0; b < batches.size(); b++) {
+            final int entries = batches.get(b).getEntriesCount();
+            send(batches.get(b).toByteArray()).whenComplete(
+                new BiConsumer<byte[],Throwable>() {
+                    @Override
+                    public void accept(byte[] reply, Throwable failure) {
+                        failed.addAndGet(failedPuts(reply, failure, entries));
+                        done.countDown();
+                    }
+                });
+            /* Keep the preload from overrunning the servers */
+            while (batches.size() - done.getCount() < b - concurrency)
+                Thread.sleep(1);
+        }
+        done.await();
+        System.out.println("Debugging: Preloaded in " + batches.size() +
+            " batches, " + failed.get() + " keys failed");
+    }
+
+    private static KeyValueRequest.KVRequest.Builder newBatch() {
+        return KeyValueRequest.KVRequest.newBuilder()
+                .setCommand(Commands.MultiPut);
+    }
+
+    /* Number of keys of a preload batch that were not stored */
+    private static int failedPuts(byte[] reply, Throwable failure,
+                                  int entries) {
+        if (failure == null) {
+            try {
+                KeyValueResponse.KVResponse response =
+                        KeyValueResponse.KVResponse.parseFrom(reply);
+                int failed = 0;
+                for (KeyValueResponse.KVResponse.Result result :
+                        response.getResultsList()) {
+                    if (result.getErrCode() != ErrCode.Success)
+                        failed++;
+                }
+                return failed;
+            } catch (InvalidProtocolBufferException e) {
+                /* Counted as a batch lost entirely */
+            }
+        }
+        return entries;
+    }
+
+    private static ByteString keyOf(int k) {
+        return ByteString.copyFrom(ByteBuffer.allocate(8).putLong(k).array());
+    }
+
+    private byte[] request(int command, int k) {
+        KeyValueRequest.KVRequest.Builder request =
+                KeyValueRequest.KVRequest.newBuilder()
+                .setCommand(command)
+                .setKey(keyOf(k));
+        if (command == Commands.Put) {
+            request.setValue(ByteString.copyFrom(value))
+                   .setVersion(versions.incrementAndGet());
+        }
+        return request.build().toByteArray();
+    }
+
+    /* Next request of the configured mix */
+    private byte[] nextRequest() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int k = chooser.next(random);
+        double op = random.nextDouble();
+        if (op < reads)
+            return request(Commands.Get, k);
+        if (op < reads + removes)
+            return request(Commands.Remove, k);
+        return request(Commands.Put, k);
+    }
+
+    /* Sends a request to any of the servers, which route it on */
+    private CompletableFuture<byte[]> send(byte[] payload) {
+        long n = sent.getAndIncrement();
+        InetSocketAddress server = servers.get((int) (n % servers.size()));
+        return clients[(int) (n % clients.length)].requestAsync(payload, server);
+    }
+
+    /* Counts a reply and its latency since the given time */
+    private void record(long since, byte[] reply, Throwable failure) {
+        if (failure != null) {
+            if (failure.getCause() instanceof SocketTimeoutException ||
+                failure instanceof SocketTimeoutException)
+                timeouts.incrementAndGet();
+            else
+                failures.incrementAndGet();
+            return;
+        }
+        latencies.recordValue(
+            Math.max(1, (System.nanoTime() - since) / 1000));
+
+        int code;
+        try {
+            code = KeyValueResponse.KVResponse.parseFrom(reply).getErrCode();
+        } catch (InvalidProtocolBufferException e) {
+            failures.incrementAndGet();
+            return;
+        }
+        switch (code) {
+            case ErrCode.Success:
+                ok.incrementAndGet();
+                break;
+            case ErrCode.NoKey:
+                no_key.incrementAndGet();
+                break;
+            case ErrCode.Overload:
+                overload.incrementAndGet();
+                break;
+            case ErrCode.Stale:
+                stale.incrementAndGet();
+                break;
+            default:
+                other_errors.incrementAndGet();
+        }
+    }
+
+    /*
+     * Keeps concurrency requests outstanding until the end. Every request is
+     * followed up on the issuer, never from within the completion of the
+     * last one: a request that fails right away completes on the calling
+     * thread, which would otherwise recurse until the stack overflows.
+     */
+    private void closedLoop(long end) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(concurrency);
+        ExecutorService issuer = Executors.newSingleThreadExecutor();
+        for (int i = 0; i < concurrency; i++)
+            next(end, done, issuer);
+        done.await();
+        issuer.shutdown();
+    }
+
+    private void next(final long end, final CountDownLatch done,
+                      final ExecutorService issuer) {
+        final long start = System.nanoTime();
+        if (start >= end) {
+            done.countDown();
+            return;
+        }
+        send(nextRequest()).whenCompleteAsync(new BiConsumer<byte[],Throwable>() {
+            @Override
+            public void accept(byte[] reply, Throwable failure) {
+                record(start, reply, failure);
+                next(end, done, issuer);
+            }
+        }, issuer);
+    }
+
+    /*
+     * Sends every request at the time it is due, and measures it from then.
+     * If sending falls behind, requests go out back to back until caught up.
+     */
+    private void openLoop(long start, long end) throws InterruptedException {
+        double interval = 1e9 / rate;
+        final AtomicLong outstanding = new AtomicLong();
+        for (long i = 0; ; i++) {
+            final long due = start + (long) (i * interval);
+            if (due >= end)
+                break;
+            long wait;
+            while ((wait = due - System.nanoTime()) > 0)
+                LockSupport.parkNanos(wait);
+
+            outstanding.incrementAndGet();
+            send(nextRequest()).whenComplete(new BiConsumer<byte[],Throwable>() {
+                @Override
+                public void accept(byte[] reply, Throwable failure) {
+                    record(due, reply, failure);
+                    outstanding.decrementAndGet();
+                }
+            });
+        }
+        /* Wait for the stragglers, at most as long as a request can take */
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (outstanding.get() > 0 && System.nanoTime() < deadline)
+            Thread.sleep(10);
+    }
+
+    private synchronized void report(long start) {
+        Histogram interval = latencies.getIntervalHistogram();
+        total.add(interval);
+        System.out.println(String.format(
+            "t=%3ds %8d req/s  p50=%6dus p99=%6dus p99.9=%6dus max=%7dus  " +
+            "timeouts=%d resends=%d",
+            TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start),
+            interval.getTotalCount() * 1000 / REPORT_INTERVAL,
+            interval.getValueAtPercentile(50),
+            interval.getValueAtPercentile(99),
+            interval.getValueAtPercentile(99.9),
+            interval.getMaxValue(), timeouts.get(), resends()));
+    }
+
+    private long resends() {
+        long resends = 0;
+        for (SerializerClient client : clients)
+            resends += client.resends();
+        return resends;
+    }
+
+    private synchronized void summarize(long elapsed) {
+        total.add(latencies.getIntervalHistogram());
+        long overload_retries = 0;
+        for (SerializerClient client : clients)
+            overload_retries += client.overloadRetries();
 
+        double seconds = elapsed / 1e9;
+        System.out.println("Summary:");
+        System.out.println(String.format(
+            "  %d replies in %.1fs, %.0f req/s",
+            total.getTotalCount(), seconds, total.getTotalCount() / seconds));
+        System.out.println(String.format(
+            "  ok=%d nokey=%d overload=%d stale=%d other=%d timeouts=%d " +
+            "failures=%d",
+            ok.get(), no_key.get(), overload.get(), stale.get(),
+            other_errors.get(), timeouts.get(), failures.get()));
+        System.out.println(String.format(
+            "  resends=%d overload retries=%d", resends(), overload_retries));
+        for (double percentile : new double[] {50, 90, 99, 99.9, 99.99}) {
+            System.out.println(String.format("  p%-6s %8dus",
+                percentile, total.getValueAtPercentile(percentile)));
+        }
+        System.out.println(String.format(
+            "  max     %8dus", total.getMaxValue()));
     }
 }
@@ -0,0 +1,34 @@
+package com.s13998159.CPEN431_2020_A3;
+
+import java.io.IOException;
+
+/**
+ * Moves datagrams between the clients and SerializerServer. A transport has
+ * one or more lanes; each lane is received from by its own thread, and a
+ * reply always leaves through the lane its request arrived on.
+ */
+interface Transport {
+    /* Number of lanes, each needs its own receiving thread */
+    int lanes();
+
+    /**
+     * Blocks until the next datagram arrives on a lane and stores it, along
+     * with its sender and the lane, in the context
+     * @param lane lane to receive from, only ever used by one thread
+     * @param ctx context to receive into
+     */
+    void receive(int lane, RequestContext ctx) throws IOException;
+
+    /**
+     * Receives a datagram like receive(), but only if one is already waiting
+     * @return false if nothing was waiting on the lane
+     */
+    boolean poll(int lane, RequestContext ctx) throws IOException;
+
+    /**
+     * Sends the first length bytes of ctx.send_buf back to the sender of the
+     * request in ctx. May be called by several threads at once.
+     * @return false if the datagram was dropped
+     */
+    boolean send(RequestContext ctx, int length) throws IOException;
+}
@@ -0,0 +1,454 @@
+package com.s13998159.CPEN431_2020_A3;
+
+import com.google.protobuf.ByteString;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of every PUT, REMOVE and Wipeout applied to storage, so
+ * that the storage can be rebuilt after a restart.
+ *
+ * Appends only go into a memory buffer. A committer thread writes out
+ * everything appended since its last round with a single write, followed by
+ * at most one fsync, so any number of operations share the cost of an fsync
+ * (group commit). With the "always" policy a request is only answered once
+ * its record is on disk; "interval" syncs every few milliseconds and "never"
+ * leaves it to the OS, trading the last moments before a crash for latency.
+ *
+ * Every record carries a CRC32. Replay stops at the first record that is
+ * torn or corrupt, which can only be the tail of the log.
+ *
+ * The log is split into numbered segment files. Taking a snapshot rotates
+ * to a new segment, after which the segments before it are no longer needed.
+ */
+class WriteAheadLog {
+    /* Record types */
+    static final byte PUT = 1;
+    static final byte REMOVE = 2;
+    static final byte WIPEOUT = 3;
+
+    /* Fsync policies */
+    static final int FSYNC_ALWAYS = 0;
+    static final int FSYNC_INTERVAL = 1;
+    static final int FSYNC_NEVER = 2;
+
+    /* crc, type, key length, version, value length */
+    private static final int HEADER_LENGTH = 4 + 1 + 4 + 4 + 4;
+
+    private final File dir;
+    /* Segment appends go to, only touched by the committer once started */
+    private FileChannel channel;
+    private long segment = 0;
+    private final int policy;
+    private final long interval; //ms
+
+    /* Appended records not yet handed to the committer, guarded by this */
+    private ByteBuffer pending = ByteBuffer.allocate(1 << 20);
+    /* Records the committer is writing out */
+    private ByteBuffer writing = ByteBuffer.allocate(1 << 20);
+    private final CRC32 crc = new CRC32();
+
+    /* Sequence numbers of the last appended and the last durable record */
+    private long appended_seq = 0;
+    private long durable_seq = 0;
+    private boolean running = true;
+    /* Set once a write or fsync has failed; nothing appended since then, and
+     * possibly not the records before it, is on disk */
+    private boolean failed = false;
+    /* Set until the committer has moved on to a new segment */
+    private boolean rotating = false;
+    private final Thread committer;
+
+    /**
+     * Opens the log in a directory, creating it if needed. Nothing can be
+     * appended before replay().
+     * @param dir directory to keep the log in
+     * @param policy one of the FSYNC_ constants
+     * @param interval ms between fsyncs under FSYNC_INTERVAL
+     */
+    WriteAheadLog(File dir, int policy, long interval) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs())
+            throw new IOException("Could not create " + dir);
+
+        this.dir = dir;
+        this.policy = policy;
+        this.interval = interval;
+
+        committer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                commitLoop();
+            }
+        }, "wal-committer");
+        committer.setDaemon(true);
+    }
+
+    /* Parses a --wal-fsync value */
+    static int parsePolicy(String policy) {
+        switch (policy) {
+            case "always":
+                return FSYNC_ALWAYS;
+            case "interval":
+                return FSYNC_INTERVAL;
+            case "never":
+                return FSYNC_NEVER;
+            default:
+                throw new IllegalArgumentException(
+                    "Unknown fsync policy: " + policy);
+        }
+    }
+
+    private File segmentFile(long segment) {
+        return new File(dir, String.format("wal-%016x.log", segment));
+    }
+
+    /* Numbers of the segments in the directory, in order */
+    private long[] segments() {
+        File[] files = dir.listFiles();
+        long[] segments = new long[files == null ? 0 : files.length];
+        int count = 0;
+        for (int i = 0; i < segments.length; i++) {
+            String name = files[i].getName();
+            if (name.startsWith("wal-") && name.endsWith(".log")) {
+                segments[count++] = Long.parseLong(
+                    name.substring(4, name.length() - 4), 16);
+            }
+        }
+        segments = Arrays.copyOf(segments, count);
+        Arrays.sort(segments);
+        return segments;
+    }
+
+    /**
+     * Applies every intact record from a segment on to storage, cuts off a
+     * torn tail and starts accepting appends
+     * @param storage storage to rebuild
+     * @param from first segment to replay, see Snapshot.walSegment()
+     * @return number of records replayed
+     */
+    long replay(KVStorage storage, long from) throws IOException {
+        long replayed = 0;
+        segment = from;
+        for (long s : segments()) {
+            if (s < from)
+                continue;
+            if (channel != null)
+                channel.close();
+            segment = s;
+            channel = new RandomAccessFile(segmentFile(s), "rw").getChannel();
+            replayed += replaySegment(storage);
+        }
+
+        if (channel == null) {
+            channel = new RandomAccessFile(
+                segmentFile(segment), "rw").getChannel();
+        }
+        committer.start();
+        return replayed;
+    }
+
+    /* Replays the open segment and leaves its position at the end */
+    private long replaySegment(KVStorage storage) throws IOException {
+        long replayed = 0;
+        long end = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        channel.position(0);
+        while (true) {
+            header.clear();
+            if (!readFully(header))
+                break;
+            header.flip();
+            long expected_crc = header.getInt() & 0xFFFFFFFFL;
+            byte type = header.get();
+            int key_length = header.getInt();
+            int version = header.getInt();
+            int value_length = header.getInt();
+            if (key_length < 0 || value_length < 0 ||
+                (long) key_length + value_length >
+                    channel.size() - channel.position())
+                break;
+
+            ByteBuffer body = ByteBuffer.allocate(key_length + value_length);
+            if (!readFully(body))
+                break;
+
+            CRC32 check = new CRC32();
+            check.update(header.array(), 4, HEADER_LENGTH - 4);
+            check.update(body.array());
+            if (check.getValue() != expected_crc)
+                break;
+
+            ByteString key = ByteString.copyFrom(body.array(), 0, key_length);
+            try {
+                switch (type) {
+                    case PUT:
+                        byte[] value = new byte[value_length];
+                        System.arraycopy(body.array(), key_length,
+                                         value, 0, value_length);
+                        storage.put(key, new KVStorageValue(value, version));
+                        break;
+                    case REMOVE:
+                        storage.remove(key);
+                        break;
+                    case WIPEOUT:
+                        storage.clear();
+                        break;
+                }
+            } catch (StorageFullException e) {
+                Log.error("Storage full while replaying log");
+            }
+            replayed++;
+            end = channel.position();
+        }
+
+        if (end < channel.size()) {
+            Log.error("Dropping torn tail of the log");
+            channel.truncate(end);
+        }
+        channel.position(end);
+        return replayed;
+    }
+
+    private boolean readFully(ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            if (channel.read(buf) < 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Appends a record. Call this under whatever lock orders the operation
+     * itself, so the log has operations on a key in the order they were
+     * applied.
+     * @return sequence number of the record, for awaitDurable()
+     */
+    synchronized long append(byte type, ByteString key, byte[] value,
+                             int version) {
+        int key_length = key == null ? 0 : key.size();
+        int value_length = value == null ? 0 : value.length;
+        int length = HEADER_LENGTH + key_length + value_length;
+        if (pending.remaining() < length) {
+            ByteBuffer bigger = ByteBuffer.allocate(
+                Math.max(2 * pending.capacity(), pending.position() + length));
+            pending.flip();
+            bigger.put(pending);
+            pending = bigger;
+        }
+
+        int start = pending.position();
+        pending.putInt(0);
+        pending.put(type);
+        pending.putInt(key_length);
+        pending.putInt(version);
+        pending.putInt(value_length);
+        if (key != null)
+            key.copyTo(pending);
+        if (value != null)
+            pending.put(value);
+
+        crc.reset();
+        crc.update(pending.array(), start + 4, length - 4);
+        pending.putInt(start, (int) crc.getValue());
+
+        notifyAll();
+        return ++appended_seq;
+    }
+
+    /* Sequence number of the last record appended */
+    synchronized long appended() {
+        return appended_seq;
+    }
+
+    /**
+     * Moves appends on to a new segment
+     * @return the new segment. Every record appended before the call is in
+     * an earlier one.
+     */
+    synchronized long rotate() {
+        rotating = true;
+        notifyAll();
+        /* If the new segment cannot be created the current one is returned,
+         * which still holds every record a snapshot might miss */
+        while (rotating && running) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return segment;
+    }
+
+    /**
+     * Deletes the segments a snapshot has made redundant
+     * @param segment first segment still needed
+     */
+    void deleteBefore(long segment) {
+        for (long s : segments()) {
+            if (s < segment && !segmentFile(s).delete())
+                Log.error("Could not delete log segment " + s);
+        }
+    }
+
+    /**
+     * Blocks until a record is as durable as the fsync policy makes it
+     * @param seq sequence number returned by append(), 0 for none
+     * @return false if the record will never get there because the log
+     * could not be written
+     */
+    synchronized boolean awaitDurable(long seq) {
+        if (policy != FSYNC_ALWAYS)
+            return !failed || seq <= durable_seq;
+        while (durable_seq < seq && running && !failed) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return seq <= durable_seq;
+    }
+
+    private void commitLoop() {
+        long last_sync = System.currentTimeMillis();
+        boolean dirty = false;
+        while (true) {
+            long target;
+            boolean rotate;
+            boolean broken;
+            synchronized (this) {
+                while (pending.position() == 0 && running && !rotating) {
+                    try {
+                        /* Wake up to honour the sync interval */
+                        if (dirty && policy == FSYNC_INTERVAL)
+                            wait(Math.max(1, interval));
+                        else
+                            wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    if (dirty && policy == FSYNC_INTERVAL &&
+                        System.currentTimeMillis() - last_sync >= interval)
+                        break;
+                }
+                if (!running && pending.position() == 0 && !dirty)
+                    return;
+
+                ByteBuffer swap = writing;
+                writing = pending;
+                pending = swap;
+                target = appended_seq;
+                rotate = rotating;
+                broken = failed;
+            }
+
+            /* A failed log is not written to any more, whatever is on disk
+             * after the failure could not be replayed anyway */
+            if (broken) {
+                writing.clear();
+                dirty = false;
+            } else {
+                try {
+                    writing.flip();
+                    while (writing.hasRemaining())
+                        channel.write(writing);
+                    writing.clear();
+                    dirty = true;
+
+                    long now = System.currentTimeMillis();
+                    if (policy == FSYNC_ALWAYS || !running ||
+                        (policy == FSYNC_INTERVAL &&
+                         now - last_sync >= interval)) {
+                        channel.force(false);
+                        last_sync = now;
+                        dirty = false;
+                    }
+                } catch (IOException io) {
+                    Log.error("Could not write to the log, " +
+                        "updates fail from now on");
+                    broken = true;
+                    writing.clear();
+                }
+            }
+
+            long next = segment;
+            if (rotate && !broken) {
+                try {
+                    next = rotateSegment();
+                } catch (IOException io) {
+                    Log.error("Could not write to the log, " +
+                        "updates fail from now on");
+                    broken = true;
+                }
+            }
+
+            synchronized (this) {
+                if (broken)
+                    failed = true;
+                else
+                    durable_seq = target;
+                segment = next;
+                /* Only the round that took up the request has rotated */
+                if (rotate)
+                    rotating = false;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Moves on to the next segment. The old segment is complete, and stays
+     * on disk until a snapshot takes over from it; it is kept open if the
+     * new one cannot be created.
+     * @return the segment appends go to from now on
+     * @throws IOException if the old segment could not be synced
+     */
+    private long rotateSegment() throws IOException {
+        FileChannel next;
+        try {
+            next = new RandomAccessFile(
+                segmentFile(segment + 1), "rw").getChannel();
+        } catch (IOException io) {
+            Log.error("Could not rotate the log");
+            return segment;
+        }
+
+        try {
+            channel.force(false);
+        } catch (IOException io) {
+            next.close();
+            throw io;
+        }
+        try {
+            channel.close();
+        } catch (IOException io) {
+            Log.error("Could not close log segment " + segment);
+        }
+        channel = next;
+        return segment + 1;
+    }
+
+    /* Writes out and syncs everything appended so far, then stops */
+    void close() {
+        synchronized (this) {
+            running = false;
+            notifyAll();
+        }
+        try {
+            committer.join();
+            channel.force(false);
+            channel.close();
+        } catch (InterruptedException | IOException e) {
+            Log.error("Could not close the log");
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.s13998159.CPEN431_2020_A3;
+
+import com.google.protobuf.ByteString;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class HashRingTest {
+    private static final int VNODES = 64;
+    private static final int KEYS = 20000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<HashRing.Node> nodes(int count) {
+        List<HashRing.Node> nodes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            nodes.add(new HashRing.Node(
+                new InetSocketAddress("10.0.0." + (i + 1), 13000), i == 0));
+        }
+        return nodes;
+    }
+
+    private static ByteString key(int k) {
+        return ByteString.copyFromUtf8("key-" + k);
+    }
+
+    @Test
+    public void placementDoesNotDependOnMemberOrder() {
+        List<HashRing.Node> nodes = nodes(5);
+        HashRing ring = new HashRing(nodes, VNODES);
+        List<HashRing.Node> shuffled = new ArrayList<>(nodes);
+        Collections.reverse(shuffled);
+        HashRing other = new HashRing(shuffled, VNODES);
+        for (int k = 0; k < KEYS; k++)
+            assertSame(ring.owner(key(k)), other.owner(key(k)));
+    }
+
+    @Test
+    public void replicasAreDistinctAndLedByTheOwner() {
+        HashRing ring = new HashRing(nodes(5), VNODES);
+        for (int k = 0; k < KEYS; k++) {
+            HashRing.Node[] replicas = ring.replicas(key(k), 3);
+            assertEquals(3, replicas.length);
+            assertSame(ring.owner(key(k)), replicas[0]);
+            assertEquals(3, new HashSet<>(Arrays.asList(replicas)).size());
+        }
+        assertEquals(5, ring.replicas(key(0), 8).length);
+    }
+
+    @Test
+    public void keysSpreadEvenly() {
+        HashRing ring = new HashRing(nodes(4), VNODES);
+        Map<HashRing.Node,Integer> counts = new HashMap<>();
+        for (int k = 0; k < KEYS; k++) {
+            HashRing.Node owner = ring.owner(key(k));
+            Integer count = counts.get(owner);
+            counts.put(owner, count == null ? 1 : count + 1);
+        }
+        assertEquals(4, counts.size());
+        for (int count : counts.values()) {
+            assertTrue("share of " + count,
+                count > KEYS / 4 / 2 && count < KEYS / 4 * 2);
+        }
+    }
+
+    @Test
+    public void removingANodeOnlyMovesItsOwnKeys() {
+        List<HashRing.Node> nodes = nodes(4);
+        HashRing before = new HashRing(nodes, VNODES);
+        HashRing.Node gone = nodes.remove(3);
+        HashRing after = new HashRing(nodes, VNODES);
+
+        int moved = 0;
+        for (int k = 0; k < KEYS; k++) {
+            HashRing.Node owner = before.owner(key(k));
+            if (owner == gone)
+                moved++;
+            else
+                assertSame(owner, after.owner(key(k)));
+            assertNotSame(gone, after.owner(key(k)));
+        }
+        assertTrue(moved > 0);
+    }
+
+    @Test
+    public void loadRecognizesThisServer() throws IOException {
+        File file = folder.newFile("servers.list");
+        Files.write(file.toPath(), Arrays.asList(
+            "# test cluster", "",
+            "127.0.0.1:13001", " 127.0.0.1:13002 ", "127.0.0.1:13003"),
+            StandardCharsets.UTF_8);
+
+        HashRing ring = HashRing.load(file, 13002, VNODES);
+        assertEquals(3, ring.size());
+        assertTrue(ring.self().local);
+        assertEquals(13002, ring.self().address.getPort());
+        Set<Integer> locals = new HashSet<>();
+        for (HashRing.Node node : ring.nodes()) {
+            if (node.local)
+                locals.add(node.address.getPort());
+        }
+        assertEquals(Collections.singleton(13002), locals);
+    }
+
+    @Test
+    public void unlistedServersRunStandalone() throws IOException {
+        File file = folder.newFile("servers.list");
+        Files.write(file.toPath(), Arrays.asList("127.0.0.1:13001"),
+            StandardCharsets.UTF_8);
+
+        HashRing ring = HashRing.load(file, 13005, VNODES);
+        assertEquals(1, ring.size());
+        assertEquals(13005, ring.self().address.getPort());
+        assertSame(ring.self(), ring.owner(key(0)));
+
+        ring = HashRing.load(new File(folder.getRoot(), "missing"), 13005, VNODES);
+        assertEquals(1, ring.size());
+    }
+}
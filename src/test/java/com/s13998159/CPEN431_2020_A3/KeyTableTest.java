@@ -0,0 +1,145 @@
+package com.s13998159.CPEN431_2020_A3;
+
+import com.google.protobuf.ByteString;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class KeyTableTest {
+    private MemoryBudget budget;
+    private KeyTable table;
+
+    @Before
+    public void setUp() {
+        budget = new MemoryBudget(1L << 30, 0);
+        table = new KeyTable(budget);
+    }
+
+    private static ByteString key(int k) {
+        return ByteString.copyFromUtf8("key-" + k);
+    }
+
+    private long chunkOf(ByteString key) {
+        int ref = table.find(new KeyTable.Key(key));
+        return ref == KeyTable.ABSENT ? KeyTable.ABSENT : table.chunk(ref);
+    }
+
+    /* Every key of the model is found with its handle, and nothing else */
+    private void assertHolds(Map<ByteString,Long> model) {
+        assertEquals(model.size(), table.size());
+        for (Map.Entry<ByteString,Long> entry : model.entrySet()) {
+            int ref = table.find(new KeyTable.Key(entry.getKey()));
+            assertNotEquals("lost " + entry.getKey().toStringUtf8(),
+                KeyTable.ABSENT, ref);
+            assertEquals((long) entry.getValue(), table.chunk(ref));
+            assertEquals(entry.getValue() * 3, table.value(ref));
+        }
+
+        final Map<ByteString,Long> visited = new HashMap<>();
+        table.forEach(new KeyTable.Visitor() {
+            @Override
+            public void visit(ByteString key, long chunk, long value) {
+                visited.put(key, chunk);
+            }
+        });
+        assertEquals(model, visited);
+    }
+
+    @Test
+    public void putReplacesAndReturnsThePreviousChunk() {
+        assertEquals(KeyTable.ABSENT, table.put(new KeyTable.Key(key(1)), 10, 30));
+        assertEquals(10, table.put(new KeyTable.Key(key(1)), 11, 33));
+        assertEquals(1, table.size());
+        assertEquals(11, chunkOf(key(1)));
+        assertEquals(KeyTable.ABSENT, chunkOf(key(2)));
+    }
+
+    @Test
+    public void keysOfEveryLengthRoundTrip() {
+        Map<ByteString,Long> model = new HashMap<>();
+        for (int length = 0; length <= KeyTable.KEY_BYTES; length++) {
+            byte[] bytes = new byte[length];
+            for (int i = 0; i < length; i++)
+                bytes[i] = (byte) (0xF0 + i);
+            ByteString key = ByteString.copyFrom(bytes);
+            table.put(new KeyTable.Key(key), length, length * 3L);
+            model.put(key, (long) length);
+        }
+        assertHolds(model);
+    }
+
+    @Test
+    public void removalShiftsProbedKeysBack() {
+        /* A full small table is made of long probe runs, removing from
+         * anywhere in a run must leave the rest of it reachable */
+        Map<ByteString,Long> model = new HashMap<>();
+        for (int k = 0; k < 40; k++) {
+            table.put(new KeyTable.Key(key(k)), k, k * 3L);
+            model.put(key(k), (long) k);
+        }
+        for (int k = 0; k < 40; k += 3) {
+            assertEquals(k, table.remove(new KeyTable.Key(key(k))));
+            model.remove(key(k));
+            assertHolds(model);
+        }
+        assertEquals(KeyTable.ABSENT, table.remove(new KeyTable.Key(key(0))));
+    }
+
+    @Test
+    public void keysSurviveGrowingWhileWritesGoOn() {
+        /* Random puts and removes across many resizes, so that keys are
+         * found, replaced and removed while still in the old table */
+        Random random = new Random(431);
+        Map<ByteString,Long> model = new HashMap<>();
+        for (int i = 0; i < 50000; i++) {
+            ByteString key = key(random.nextInt(20000));
+            KeyTable.Key k = new KeyTable.Key(key);
+            Long expected = model.get(key);
+            long previous;
+            if (random.nextInt(4) == 0) {
+                previous = table.remove(k);
+                model.remove(key);
+            } else {
+                long chunk = random.nextInt(1 << 30);
+                previous = table.put(k, chunk, chunk * 3);
+                model.put(key, chunk);
+            }
+            assertEquals(expected == null ? KeyTable.ABSENT : expected, previous);
+            if (i % 5000 == 0)
+                assertHolds(model);
+        }
+        assertHolds(model);
+    }
+
+    @Test
+    public void tablesAreAccountedForInTheBudget() {
+        long empty = budget.used();
+        assertTrue(empty > 0);
+        for (int k = 0; k < 10000; k++)
+            table.put(new KeyTable.Key(key(k)), k, 3L * k);
+        assertTrue(budget.used() > empty);
+
+        table.clear();
+        assertEquals(0, table.size());
+        assertEquals(empty, budget.used());
+    }
+
+    @Test(expected = StorageFullException.class)
+    public void growingPastTheBudgetThrows() {
+        table = new KeyTable(new MemoryBudget(64 * 1024, 0));
+        List<KeyTable.Key> keys = new ArrayList<>();
+        for (int k = 0; k < 100000; k++)
+            keys.add(new KeyTable.Key(key(k)));
+        for (KeyTable.Key k : keys)
+            table.put(k, 1, 3);
+    }
+}
@@ -0,0 +1,165 @@
+package com.s13998159.CPEN431_2020_A3;
+
+import ca.NetSysLab.ProtocolBuffers.KeyValueRequest;
+import ca.NetSysLab.ProtocolBuffers.KeyValueResponse;
+import com.google.protobuf.ByteString;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ReplicatorTest {
+    private static final ByteString KEY = ByteString.copyFromUtf8("key");
+
+    private Replicator replicator;
+
+    @Before
+    public void setUp() {
+        /* Three members, this one first; no client, so nothing can be sent */
+        List<HashRing.Node> nodes = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            nodes.add(new HashRing.Node(
+                new InetSocketAddress("10.0.0." + (i + 1), 13000), i == 0));
+        }
+        replicator = new Replicator(new HashRing(nodes, 64), 3, 2, 2, null);
+    }
+
+    private static KeyValueResponse.KVResponse.Builder response(int err_code) {
+        return KeyValueResponse.KVResponse.newBuilder().setErrCode(err_code);
+    }
+
+    private static byte[] reply(int err_code, int version) {
+        return response(err_code).setVersion(version).build().toByteArray();
+    }
+
+    /* A coordination whose replicas replied with the given replies */
+    private static Replicator.Coordination replied(
+            KeyValueResponse.KVResponse.Builder local, boolean read,
+            int quorum, byte[]... replies) {
+        Replicator.Coordination coordination =
+                new Replicator.Coordination(local, read);
+        coordination.quorum = quorum;
+        for (byte[] reply : replies) {
+            coordination.replies.add(reply);
+            coordination.sent++;
+        }
+        return coordination;
+    }
+
+    @Test
+    public void stampsOnlyEverIncrease() {
+        long last = replicator.stamp();
+        for (int i = 0; i < 10000; i++) {
+            long stamp = replicator.stamp();
+            assertTrue(stamp > last);
+            last = stamp;
+        }
+    }
+
+    @Test
+    public void firstPutsFollowTheStoredVersion() {
+        KVStorageValue stored = new KVStorageValue(new byte[0], 5);
+        assertFalse(replicator.admitPut(KEY, 4, 100, stored));
+        assertTrue(replicator.admitPut(KEY, 5, 100, stored));
+        assertTrue(replicator.admitPut(
+            ByteString.copyFromUtf8("other"), 0, 100, null));
+    }
+
+    @Test
+    public void higherVersionsWinWhateverTheirStamp() {
+        assertTrue(replicator.admitPut(KEY, 2, 100, null));
+        assertFalse(replicator.admitPut(KEY, 1, 200, null));
+        assertTrue(replicator.admitPut(KEY, 3, 50, null));
+    }
+
+    @Test
+    public void equalVersionsAreOrderedByStamp() {
+        assertTrue(replicator.admitPut(KEY, 1, 100, null));
+        assertFalse(replicator.admitPut(KEY, 1, 100, null));
+        assertFalse(replicator.admitPut(KEY, 1, 50, null));
+        assertTrue(replicator.admitPut(KEY, 1, 200, null));
+    }
+
+    @Test
+    public void putsOvertakenByARemoveAreStale() {
+        assertTrue(replicator.admitPut(KEY, 1, 100, null));
+        assertFalse(replicator.admitRemove(KEY, 50));
+        assertTrue(replicator.admitRemove(KEY, 200));
+        /* Late to this replica, whatever its version */
+        assertFalse(replicator.admitPut(KEY, 9, 150, null));
+        assertFalse(replicator.admitRemove(KEY, 200));
+        assertTrue(replicator.admitPut(KEY, 0, 300, null));
+    }
+
+    @Test
+    public void failedRequestsAreNotReplicated() {
+        KeyValueRequest.KVRequest request = KeyValueRequest.KVRequest
+                .newBuilder()
+                .setCommand(Commands.Put)
+                .setKey(KEY)
+                .build();
+        Replicator.Coordination coordination =
+                replicator.start(request, response(ErrCode.InvalVal));
+        assertEquals(0, coordination.sent);
+        assertEquals(ErrCode.InvalVal,
+            replicator.finish(coordination).getErrCode());
+    }
+
+    @Test
+    public void writesWaitForTheirQuorum() {
+        KeyValueResponse.KVResponse.Builder local = response(ErrCode.Success);
+        /* An unreachable replica and one that has a newer update */
+        assertSame(local, replicator.finish(replied(local, false, 2,
+            new byte[0], reply(ErrCode.Stale, 0))));
+
+        assertEquals(ErrCode.Overload, replicator.finish(replied(local, false, 3,
+            new byte[0], reply(ErrCode.Stale, 0))).getErrCode());
+        assertEquals(ErrCode.Overload, replicator.finish(replied(local, false, 2,
+            reply(ErrCode.NoSpace, 0), new byte[] {1, 2, 3})).getErrCode());
+    }
+
+    @Test
+    public void removesSucceedIfAnyReplicaHadTheKey() {
+        KeyValueResponse.KVResponse.Builder response =
+                replicator.finish(replied(response(ErrCode.NoKey), false, 3,
+                    reply(ErrCode.NoKey, 0), reply(ErrCode.Success, 0)));
+        assertEquals(ErrCode.Success, response.getErrCode());
+    }
+
+    @Test
+    public void readsReturnTheHighestVersion() {
+        KeyValueResponse.KVResponse.Builder local =
+                response(ErrCode.Success).setVersion(2);
+        byte[] newest = response(ErrCode.Success).setVersion(4)
+                .setValue(ByteString.copyFromUtf8("newest")).build()
+                .toByteArray();
+        KeyValueResponse.KVResponse.Builder response = replicator.finish(
+            replied(local, true, 3, reply(ErrCode.Success, 1), newest));
+        assertEquals(4, response.getVersion());
+        assertEquals("newest", response.getValue().toStringUtf8());
+
+        /* A replica that missed the put does not hide the ones that got it */
+        response = replicator.finish(replied(response(ErrCode.NoKey), true, 2,
+            reply(ErrCode.Success, 3)));
+        assertEquals(ErrCode.Success, response.getErrCode());
+        assertEquals(3, response.getVersion());
+    }
+
+    @Test
+    public void repliesBeyondTheQuorumAreNotAwaited() {
+        KeyValueResponse.KVResponse.Builder local =
+                response(ErrCode.Success).setVersion(1);
+        /* Only one of the two replicas has replied */
+        Replicator.Coordination coordination =
+                replied(local, true, 2, reply(ErrCode.Success, 1));
+        coordination.sent = 2;
+        assertSame(local, replicator.finish(coordination));
+    }
+}
@@ -0,0 +1,130 @@
+package com.s13998159.CPEN431_2020_A3;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ReplyCacheTest {
+    /* Entries live between TTL and TTL plus a 250 ms tick */
+    private static final long TTL = 250; //ms
+    private static final long EXPIRED = 700; //ms
+
+    private MemoryBudget budget;
+    private ReplyCache cache;
+    private final RequestContext ctx = new RequestContext();
+
+    @Before
+    public void setUp() {
+        budget = new MemoryBudget(1L << 30, 1L << 20);
+        cache = new ReplyCache(1L << 20, TTL, budget);
+    }
+
+    /* Caches a reply the way SerializerServer does, budget included */
+    private ReplyCache.Waiter complete(long hi, long lo, byte[] reply) {
+        assertTrue(budget.reserveCache(MemoryBudget.cacheBytes(reply.length)));
+        return cache.complete(hi, lo, reply);
+    }
+
+    private static int count(ReplyCache.Waiter waiters) {
+        int count = 0;
+        for (; waiters != null; waiters = waiters.next)
+            count++;
+        return count;
+    }
+
+    @Test
+    public void retransmissionsGetTheCachedReply() {
+        byte[] reply = {1, 2, 3};
+        assertNull(cache.begin(1, 2, ctx));
+        assertNull(complete(1, 2, reply));
+        assertSame(reply, cache.begin(1, 2, ctx));
+        assertNull(cache.begin(2, 1, ctx));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void retransmissionsInFlightAreParkedUntilTheReply() {
+        assertNull(cache.begin(1, 2, ctx));
+        assertSame(ReplyCache.IN_FLIGHT, cache.begin(1, 2, ctx));
+        assertSame(ReplyCache.IN_FLIGHT, cache.begin(1, 2, ctx));
+
+        byte[] reply = {4};
+        assertEquals(2, count(complete(1, 2, reply)));
+        assertSame(reply, cache.begin(1, 2, ctx));
+    }
+
+    @Test
+    public void cancelledRequestsAreServicedAgain() {
+        assertNull(cache.begin(1, 2, ctx));
+        assertSame(ReplyCache.IN_FLIGHT, cache.begin(1, 2, ctx));
+        cache.cancel(1, 2);
+        assertEquals(0, cache.size());
+        assertNull(cache.begin(1, 2, ctx));
+    }
+
+    @Test
+    public void repliesExpireAndGiveBackTheirBytes() throws InterruptedException {
+        assertNull(cache.begin(1, 2, ctx));
+        complete(1, 2, new byte[100]);
+        assertEquals(MemoryBudget.cacheBytes(100), budget.used());
+        assertEquals(MemoryBudget.cacheBytes(100), cache.bytes());
+
+        Thread.sleep(EXPIRED);
+        /* The wheel moves on when the shard is next used */
+        assertNull(cache.begin(1, 2, ctx));
+        assertEquals(0, budget.used());
+        assertEquals(0, cache.bytes());
+    }
+
+    @Test
+    public void accessKeepsRepliesAlive() throws InterruptedException {
+        byte[] reply = {5};
+        assertNull(cache.begin(1, 2, ctx));
+        complete(1, 2, reply);
+        for (int i = 0; i < 4; i++) {
+            Thread.sleep(TTL / 2);
+            assertSame(reply, cache.begin(1, 2, ctx));
+        }
+    }
+
+    @Test
+    public void requestsInFlightOutliveTheWheel() throws InterruptedException {
+        assertNull(cache.begin(1, 2, ctx));
+        assertSame(ReplyCache.IN_FLIGHT, cache.begin(1, 2, ctx));
+
+        Thread.sleep(EXPIRED);
+        /* Still in flight, so parked again rather than serviced twice */
+        assertSame(ReplyCache.IN_FLIGHT, cache.begin(1, 2, ctx));
+        Thread.sleep(EXPIRED);
+        assertSame(ReplyCache.IN_FLIGHT, cache.begin(1, 2, ctx));
+
+        byte[] reply = {6};
+        assertEquals(3, count(complete(1, 2, reply)));
+        assertArrayEquals(reply, cache.begin(1, 2, ctx));
+    }
+
+    @Test
+    public void trimmingKeepsTheCacheWithinItsCapacity() {
+        long capacity = 16 * 2000;
+        cache = new ReplyCache(capacity, 60000, budget);
+        byte[] reply = new byte[100];
+        for (long id = 0; id < 2000; id++) {
+            assertNull(cache.begin(id, id, ctx));
+            complete(id, id, reply);
+        }
+        assertTrue(cache.bytes() <= capacity);
+        assertTrue(cache.size() < 2000);
+        /* Whatever was evicted gave its bytes back */
+        assertEquals(cache.bytes(), budget.used());
+        /* The newest reply is the last to go */
+        assertNotNull(cache.begin(1999, 1999, ctx));
+        assertNotSame(ReplyCache.IN_FLIGHT, cache.begin(1999, 1999, ctx));
+    }
+}
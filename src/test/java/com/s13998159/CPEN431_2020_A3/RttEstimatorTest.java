@@ -0,0 +1,76 @@
+package com.s13998159.CPEN431_2020_A3;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RttEstimatorTest {
+    private static final long MS = 1000000; //ns
+
+    private RttEstimator estimator;
+
+    @Before
+    public void setUp() {
+        estimator = new RttEstimator(100 * MS, MS, 1000 * MS);
+    }
+
+    @Test
+    public void initialTimeoutHoldsUntilTheFirstRoundTrip() {
+        assertEquals(100 * MS, estimator.timeout());
+    }
+
+    @Test
+    public void firstRoundTripAllowsForHalfOfItAsDeviation() {
+        estimator.sample(10 * MS);
+        /* srtt + 4 * srtt / 2 */
+        assertEquals(30 * MS, estimator.timeout());
+        estimator.sample(10 * MS);
+        /* The deviation decays by a quarter */
+        assertEquals(25 * MS, estimator.timeout());
+    }
+
+    @Test
+    public void steadyRoundTripsConvergeOnTheRoundTrip() {
+        for (int i = 0; i < 200; i++)
+            estimator.sample(10 * MS);
+        assertTrue(estimator.timeout() >= 10 * MS);
+        assertTrue(estimator.timeout() < 11 * MS);
+    }
+
+    @Test
+    public void jitterWidensTheTimeout() {
+        for (int i = 0; i < 200; i++)
+            estimator.sample(10 * MS);
+        long steady = estimator.timeout();
+        estimator.sample(50 * MS);
+        assertTrue(estimator.timeout() > steady + 4 * 10 * MS);
+    }
+
+    @Test
+    public void timeoutsBackOffOnceUntilTheNextRoundTrip() {
+        estimator.sample(10 * MS);
+        long expired = estimator.timeout();
+        /* Every request sent under the same timeout expires with it */
+        estimator.backoff(expired);
+        estimator.backoff(expired);
+        assertEquals(2 * expired, estimator.timeout());
+        estimator.backoff(estimator.timeout());
+        assertEquals(4 * expired, estimator.timeout());
+
+        estimator.sample(10 * MS);
+        assertTrue(estimator.timeout() < expired);
+    }
+
+    @Test
+    public void timeoutStaysWithinItsBounds() {
+        estimator.sample(MS / 100);
+        assertEquals(MS, estimator.timeout());
+        for (int i = 0; i < 20; i++)
+            estimator.backoff(estimator.timeout());
+        assertEquals(1000 * MS, estimator.timeout());
+        estimator.sample(10000 * MS);
+        assertEquals(1000 * MS, estimator.timeout());
+    }
+}
@@ -0,0 +1,173 @@
+package com.s13998159.CPEN431_2020_A3;
+
+import com.google.protobuf.ByteString;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class WriteAheadLogTest {
+    /* crc, type, key length, version, value length */
+    private static final int HEADER_LENGTH = 17;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File dir;
+
+    @Before
+    public void setUp() {
+        dir = new File(folder.getRoot(), "wal");
+    }
+
+    private static ByteString key(String key) {
+        return ByteString.copyFromUtf8(key);
+    }
+
+    private static KVStorage storage() {
+        return new HashMapStorage(new MemoryBudget(1L << 30, 0));
+    }
+
+    private File segmentFile(long segment) {
+        return new File(dir, String.format("wal-%016x.log", segment));
+    }
+
+    /* Opens the log, replays it into fresh storage and checks the count */
+    private WriteAheadLog open(KVStorage storage, long from, long expected)
+            throws IOException {
+        WriteAheadLog wal = new WriteAheadLog(
+            dir, WriteAheadLog.FSYNC_ALWAYS, 0);
+        assertEquals(expected, wal.replay(storage, from));
+        return wal;
+    }
+
+    private static void put(WriteAheadLog wal, String key, String value,
+                            int version) {
+        long seq = wal.append(WriteAheadLog.PUT, key(key),
+                              value.getBytes(), version);
+        assertTrue(wal.awaitDurable(seq));
+    }
+
+    @Test
+    public void replayRebuildsTheStorage() throws IOException {
+        WriteAheadLog wal = open(storage(), 0, 0);
+        put(wal, "a", "1", 1);
+        put(wal, "b", "2", 1);
+        assertTrue(wal.awaitDurable(
+            wal.append(WriteAheadLog.REMOVE, key("a"), null, 0)));
+        put(wal, "b", "3", 7);
+        assertEquals(4, wal.appended());
+        wal.close();
+
+        KVStorage storage = storage();
+        open(storage, 0, 4).close();
+        assertEquals(1, storage.size());
+        assertNull(storage.get(key("a")));
+        KVStorageValue b = storage.get(key("b"));
+        assertArrayEquals("3".getBytes(), b.value);
+        assertEquals(7, b.version);
+    }
+
+    @Test
+    public void wipeoutClearsWhatCameBefore() throws IOException {
+        WriteAheadLog wal = open(storage(), 0, 0);
+        put(wal, "a", "1", 0);
+        wal.append(WriteAheadLog.WIPEOUT, null, null, 0);
+        put(wal, "c", "2", 0);
+        wal.close();
+
+        KVStorage storage = storage();
+        open(storage, 0, 3).close();
+        assertEquals(1, storage.size());
+        assertArrayEquals("2".getBytes(), storage.get(key("c")).value);
+    }
+
+    @Test
+    public void tornTailIsCutOff() throws IOException {
+        WriteAheadLog wal = open(storage(), 0, 0);
+        put(wal, "a", "1", 0);
+        put(wal, "b", "2", 0);
+        wal.close();
+        long intact = segmentFile(0).length();
+
+        /* A crash halfway through writing a record */
+        try (RandomAccessFile file = new RandomAccessFile(segmentFile(0), "rw")) {
+            file.seek(intact);
+            file.write(new byte[HEADER_LENGTH - 3]);
+        }
+
+        KVStorage storage = storage();
+        wal = open(storage, 0, 2);
+        assertEquals(intact, segmentFile(0).length());
+        /* Appends carry on where the intact records end */
+        put(wal, "c", "3", 0);
+        wal.close();
+
+        storage = storage();
+        open(storage, 0, 3).close();
+        assertEquals(3, storage.size());
+    }
+
+    @Test
+    public void replayStopsAtACorruptRecord() throws IOException {
+        WriteAheadLog wal = open(storage(), 0, 0);
+        put(wal, "a", "1", 0);
+        put(wal, "b", "2", 0);
+        put(wal, "c", "3", 0);
+        wal.close();
+
+        /* Flip the value byte of the second record */
+        long offset = 2L * (HEADER_LENGTH + 2) - 1;
+        try (RandomAccessFile file = new RandomAccessFile(segmentFile(0), "rw")) {
+            file.seek(offset);
+            file.write('x');
+        }
+
+        KVStorage storage = storage();
+        open(storage, 0, 1).close();
+        assertEquals(1, storage.size());
+        assertNull(storage.get(key("b")));
+        assertNull(storage.get(key("c")));
+    }
+
+    @Test
+    public void rotationMovesAppendsToTheNextSegment() throws IOException {
+        WriteAheadLog wal = open(storage(), 0, 0);
+        put(wal, "a", "1", 0);
+        put(wal, "b", "2", 0);
+        assertEquals(1, wal.rotate());
+        put(wal, "c", "3", 0);
+        wal.close();
+        assertTrue(segmentFile(0).exists());
+        assertTrue(segmentFile(1).exists());
+
+        /* A snapshot taken at the rotation only needs the new segment */
+        KVStorage storage = storage();
+        open(storage, 1, 1).close();
+        assertEquals(1, storage.size());
+        assertArrayEquals("3".getBytes(), storage.get(key("c")).value);
+
+        storage = storage();
+        wal = open(storage, 0, 3);
+        assertEquals(3, storage.size());
+        /* Replaying every segment leaves appends going to the last one */
+        put(wal, "d", "4", 0);
+        wal.deleteBefore(1);
+        wal.close();
+        assertFalse(segmentFile(0).exists());
+
+        storage = storage();
+        open(storage, 1, 2).close();
+        assertEquals(2, storage.size());
+    }
+}